@@ -0,0 +1,13 @@
+-- Expand step of book search (user-005, GET /books/search): the GIN index over the searched text and the btree
+-- indexes behind the genre, price and author filters. Built without blocking book writes; CREATE INDEX CONCURRENTLY
+-- cannot run inside a transaction, so run this file with psql in its default autocommit mode:
+--   psql "$DATABASE_URL" -f db/migrations/005-1-expand-book-search-indexes.sql
+-- The text index is on the same expression BookSearchRepositoryImpl matches against, so there is no column to add or
+-- backfill; until it is built, searches still work but scan the table. A failed build leaves an INVALID index that
+-- IF NOT EXISTS would then skip; drop it and run the file again, e.g.:
+--   DROP INDEX CONCURRENTLY IF EXISTS idx_book_search_text;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_search_text ON book
+    USING GIN (to_tsvector('english', coalesce(title, '') || ' ' || coalesce(genre, '')));
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_genre ON book (genre);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_price ON book (price);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_book_author_id ON book (author_id);
@@ -0,0 +1,9 @@
+-- Contract step of book search (user-005). Earlier builds added a generated book.search_vector column and its GIN
+-- index at startup; search now matches the indexed expression from 005-1 instead. Run only after 005-1 and once
+-- every instance runs a release that no longer reads search_vector. Skip it on databases that never had the column.
+--   psql "$DATABASE_URL" -f db/migrations/005-2-contract-drop-book-search-vector.sql
+-- The index goes first without blocking book writes. Dropping the column then only changes the catalog, but needs an
+-- exclusive lock on book; give up rather than queue behind a long transaction.
+DROP INDEX CONCURRENTLY IF EXISTS idx_book_search_vector;
+SET lock_timeout = '5s';
+ALTER TABLE book DROP COLUMN IF EXISTS search_vector;
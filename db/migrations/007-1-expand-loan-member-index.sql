@@ -0,0 +1,8 @@
+-- Expand step of the member_loans removal (user-007): index loan.member_id, from which a member's loans and the
+-- checkout limit are now read. Built without blocking loan writes; CREATE INDEX CONCURRENTLY cannot run inside a
+-- transaction, so run this file with psql in its default autocommit mode:
+--   psql "$DATABASE_URL" -f db/migrations/007-1-expand-loan-member-index.sql
+-- A failed build leaves an INVALID index that IF NOT EXISTS would then skip; drop it and run the file again:
+--   DROP INDEX CONCURRENTLY IF EXISTS idx_loan_member_id;
+-- member_loans is left in place: instances of the previous release keep writing it until they are replaced.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_member_id ON loan (member_id);
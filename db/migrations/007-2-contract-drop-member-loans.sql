@@ -0,0 +1,5 @@
+-- Contract step of the member_loans removal (user-007). Run only after 007-1 and once every instance runs a release
+-- without the Member.loanIds element collection; nothing reads or writes the table after that.
+-- DROP TABLE needs an exclusive lock on member_loans alone; give up rather than queue behind a straggling writer.
+SET lock_timeout = '5s';
+DROP TABLE IF EXISTS member_loans;
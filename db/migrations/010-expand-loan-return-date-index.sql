@@ -0,0 +1,8 @@
+-- Expand step of the overdue scan (user-010): index loan by (return_date, id), the keyset order OverdueLoanScanner
+-- and GET /loans/overdue walk. Built without blocking checkouts and returns; CREATE INDEX CONCURRENTLY cannot run
+-- inside a transaction, so run this file with psql in its default autocommit mode:
+--   psql "$DATABASE_URL" -f db/migrations/010-expand-loan-return-date-index.sql
+-- Until it is built, each scan batch reads the whole loan table. A failed build leaves an INVALID index that
+-- IF NOT EXISTS would then skip; drop it and run the file again:
+--   DROP INDEX CONCURRENTLY IF EXISTS idx_loan_return_date_id;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_return_date_id ON loan (return_date, id);
@@ -0,0 +1,39 @@
+-- One-off (user-011): sets book.available_copies, which was added with the default of 1 for every existing book, to
+-- the copies the book has minus its open loans. Until it runs, a lent-out book still shows its copy on the shelf
+-- and can be checked out again.
+--   psql "$DATABASE_URL" -v chunk=10000 -f db/migrations/011-backfill-book-available-copies.sql
+-- Books are done :chunk ids at a time, each chunk in its own transaction. The chunk's rows are locked before
+-- counting, which waits for checkouts and returns of those books still committing and holds off new ones until the
+-- chunk commits. Run it with write-behind checkouts disabled (library.loans.write-behind.enabled=false) or their
+-- queues flushed: a queued loan has taken its copy but is not in loan yet. Safe to run again.
+\set ON_ERROR_STOP on
+\if :{?chunk}
+\else
+\set chunk 10000
+\endif
+
+CREATE PROCEDURE pg_temp.backfill_available_copies(chunk INT) LANGUAGE plpgsql AS $$
+DECLARE
+    after_id BIGINT := 0;
+    last_id  BIGINT;
+BEGIN
+    LOOP
+        SELECT max(id) INTO last_id FROM (SELECT id FROM book WHERE id > after_id ORDER BY id LIMIT chunk) ids;
+        EXIT WHEN last_id IS NULL;
+        PERFORM 1 FROM book WHERE id > after_id AND id <= last_id ORDER BY id FOR UPDATE;
+        -- Never below zero, like BookRepository.reconcileAvailableCopies: a book can have more open loans than
+        -- copies if its copies were lowered while it was out
+        UPDATE book b
+        SET available_copies = counted.available, version = b.version + 1, last_modified = now()
+        FROM (SELECT id, greatest(0, copies - coalesce(l.loans, 0)) AS available
+              FROM book
+              LEFT JOIN (SELECT book_id, count(*) AS loans FROM loan
+                         WHERE book_id > after_id AND book_id <= last_id GROUP BY book_id) l ON l.book_id = id
+              WHERE id > after_id AND id <= last_id) counted
+        WHERE b.id = counted.id AND b.available_copies <> counted.available;
+        COMMIT;
+        after_id := last_id;
+    END LOOP;
+END $$;
+
+CALL pg_temp.backfill_available_copies(:chunk);
@@ -0,0 +1,5 @@
+-- One-off (user-019): drops the (loan_count DESC, id) index that earlier builds created at startup. Every checkout
+-- changes loan_count, and an indexed column rules out heap-only (HOT) updates, so each checkout also wrote a new
+-- entry to every index on book. The top-books rollup sorts the catalog instead, once per statistics refresh.
+--   psql "$DATABASE_URL" -f db/migrations/019-1-drop-book-loan-count-index.sql
+DROP INDEX CONCURRENTLY IF EXISTS idx_book_loan_count;
@@ -0,0 +1,39 @@
+-- One-off (user-019): sets book.loan_count, which started at zero when the column was added, to the number of
+-- loans each book has had: its open loans plus its returned ones.
+--   psql "$DATABASE_URL" -v chunk=10000 -f db/migrations/019-2-backfill-book-loan-count.sql
+-- Books are done :chunk ids at a time, each chunk in its own transaction. The chunk's rows are locked before
+-- counting, which waits for checkouts of those books still committing and holds off new ones until the chunk
+-- commits, so no checkout's increment is lost or counted twice. Run it with write-behind checkouts disabled
+-- (library.loans.write-behind.enabled=false) or their queues flushed: a queued loan is counted by its checkout but
+-- is not in loan yet. Safe to run again.
+\set ON_ERROR_STOP on
+\if :{?chunk}
+\else
+\set chunk 10000
+\endif
+
+CREATE PROCEDURE pg_temp.backfill_loan_count(chunk INT) LANGUAGE plpgsql AS $$
+DECLARE
+    after_id BIGINT := 0;
+    last_id  BIGINT;
+BEGIN
+    LOOP
+        SELECT max(id) INTO last_id FROM (SELECT id FROM book WHERE id > after_id ORDER BY id LIMIT chunk) ids;
+        EXIT WHEN last_id IS NULL;
+        PERFORM 1 FROM book WHERE id > after_id AND id <= last_id ORDER BY id FOR UPDATE;
+        UPDATE book b
+        SET loan_count = counted.loans, version = b.version + 1, last_modified = now()
+        FROM (SELECT id, coalesce(l.loans, 0) + coalesce(h.loans, 0) AS loans
+              FROM book
+              LEFT JOIN (SELECT book_id, count(*) AS loans FROM loan
+                         WHERE book_id > after_id AND book_id <= last_id GROUP BY book_id) l ON l.book_id = id
+              LEFT JOIN (SELECT book_id, count(*) AS loans FROM loan_history
+                         WHERE book_id > after_id AND book_id <= last_id GROUP BY book_id) h ON h.book_id = id
+              WHERE id > after_id AND id <= last_id) counted
+        WHERE b.id = counted.id AND b.loan_count <> counted.loans;
+        COMMIT;
+        after_id := last_id;
+    END LOOP;
+END $$;
+
+CALL pg_temp.backfill_loan_count(:chunk);
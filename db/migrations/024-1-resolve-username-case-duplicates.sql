@@ -0,0 +1,42 @@
+-- One-off, before 024-2 (user-024): renames members whose username differs from an older member's only in letter
+-- case, so the case-insensitive unique index can be built. The oldest member (lowest id) of each group keeps its
+-- name; each of the others gets "-<id>" appended, with the name cut short to stay within 50 characters. Every
+-- rename is kept in member_username_rename, so the members concerned can be told their new name.
+--   psql "$DATABASE_URL" -f db/migrations/024-1-resolve-username-case-duplicates.sql
+-- Safe to run again; the final check rolls everything back if any duplicates are left, e.g. because an appended
+-- name collided with an existing one. Rename those members by hand and run it again.
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS member_username_rename (
+    member_id    BIGINT      PRIMARY KEY,
+    old_username VARCHAR(50) NOT NULL,
+    new_username VARCHAR(50) NOT NULL,
+    renamed_at   TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+WITH duplicates AS (
+    SELECT id, username, left(username, 49 - length(id::text)) || '-' || id AS new_username
+    FROM (SELECT id, username, row_number() OVER (PARTITION BY lower(username) ORDER BY id) AS position
+          FROM member) ranked
+    WHERE position > 1
+), renamed AS (
+    UPDATE member m
+    SET username = d.new_username, version = m.version + 1, last_modified = now()
+    FROM duplicates d
+    WHERE m.id = d.id
+    RETURNING m.id, d.username AS old_username, m.username AS new_username
+)
+INSERT INTO member_username_rename (member_id, old_username, new_username)
+SELECT id, old_username, new_username FROM renamed
+ON CONFLICT (member_id) DO UPDATE SET new_username = excluded.new_username, renamed_at = now();
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM member GROUP BY lower(username) HAVING count(*) > 1) THEN
+        RAISE EXCEPTION 'Some usernames still differ only in letter case; rename them and run this file again';
+    END IF;
+END $$;
+
+COMMIT;
@@ -0,0 +1,8 @@
+-- One-off, after 024-1 (user-024): the case-insensitive unique index that registration (MemberService.createMember)
+-- relies on to reject a taken username. Built without blocking member writes, so run it with psql in its default
+-- autocommit mode:
+--   psql "$DATABASE_URL" -f db/migrations/024-2-unique-username-index.sql
+-- If a member registered a case duplicate after 024-1 ran, the build fails and leaves an INVALID index that
+-- IF NOT EXISTS would then skip. Drop it, run 024-1 again, then this file:
+--   DROP INDEX CONCURRENTLY IF EXISTS idx_member_username_lower;
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_member_username_lower ON member (lower(username));
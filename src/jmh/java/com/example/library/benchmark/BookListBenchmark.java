@@ -0,0 +1,88 @@
+package com.example.library.benchmark;
+
+import com.example.library.controller.BookController;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.web.KeysetPagination;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code BookController.getAllBooks} read plus Jackson serialization of one full page, and serialization
+ * alone of catalog-sized lists, to separate database time from serialization time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookListBenchmark {
+
+    @Param({"1000", "10000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private BookController bookController;
+    private ObjectMapper objectMapper;
+    private List<Book> prebuilt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = LibraryContext.start("book-list-" + books);
+        bookController = context.getBean(BookController.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        Author author = new Author();
+        author.setName("Benchmark Author");
+        author.setDateOfBirth(LocalDate.of(1970, 1, 1));
+        long authorId = context.getBean(AuthorRepository.class).save(author).getId();
+
+        List<Object[]> rows = new ArrayList<>();
+        prebuilt = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            rows.add(new Object[]{"Book " + i, "Genre " + (i % 20), BigDecimal.valueOf(5 + i % 50, 0), authorId});
+            Book book = new Book();
+            book.setId((long) i + 1);
+            book.setTitle("Book " + i);
+            book.setGenre("Genre " + (i % 20));
+            book.setPrice(BigDecimal.valueOf(5 + i % 50, 0));
+            book.setAuthorId(authorId);
+            prebuilt.add(book);
+        }
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("INSERT INTO book (title, genre, price, author_id) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] readAndSerializeFirstPage() throws JsonProcessingException {
+        List<Book> page = bookController.getAllBooks(null, KeysetPagination.MAX_LIMIT).getBody();
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(prebuilt);
+    }
+}
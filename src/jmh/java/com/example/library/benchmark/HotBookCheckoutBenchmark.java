@@ -0,0 +1,112 @@
+package com.example.library.benchmark;
+
+import com.example.library.controller.LoanController;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.model.Member;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checkout and return of one hot book at 1, 4 and 16 threads: each operation is a {@code LoanController.createLoan}
+ * followed by {@code deleteLoan} on the same book, so every thread contends for its row. The book has a copy for
+ * each thread and every thread lends as its own member, so no checkout is refused and the only shared lock is the
+ * book's. Compare the three scores to see how throughput scales with contention on a single title.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HotBookCheckoutBenchmark {
+
+    private static final int MAX_THREADS = 16;
+
+    private ConfigurableApplicationContext context;
+    private LoanController loanController;
+    private long bookId;
+    private final AtomicInteger members = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = LibraryContext.start("hot-book-checkout");
+        loanController = context.getBean(LoanController.class);
+
+        Author author = new Author();
+        author.setName("Benchmark Author");
+        author.setDateOfBirth(LocalDate.of(1970, 1, 1));
+        author = context.getBean(AuthorRepository.class).save(author);
+
+        Book book = new Book();
+        book.setTitle("Hot Book");
+        book.setGenre("Benchmark");
+        book.setPrice(BigDecimal.TEN);
+        book.setAuthorId(author.getId());
+        book.setCopies(MAX_THREADS);
+        book.setAvailableCopies(MAX_THREADS);
+        bookId = context.getBean(BookRepository.class).save(book).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        private long memberId;
+
+        @Setup(Level.Trial)
+        public void setUp(HotBookCheckoutBenchmark benchmark) {
+            Member member = new Member();
+            member.setUsername("hot-book-member-" + benchmark.members.getAndIncrement());
+            memberId = benchmark.context.getBean(MemberRepository.class).save(member).getId();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1(Borrower borrower) {
+        return checkoutAndReturn(borrower);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4(Borrower borrower) {
+        return checkoutAndReturn(borrower);
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public Object threads16(Borrower borrower) {
+        return checkoutAndReturn(borrower);
+    }
+
+    private Object checkoutAndReturn(Borrower borrower) {
+        Loan loan = new Loan();
+        loan.setMemberId(borrower.memberId);
+        loan.setBookId(bookId);
+        ResponseEntity<Object> response = loanController.createLoan(loan);
+        if (!(response.getBody() instanceof Loan saved)) {
+            throw new IllegalStateException("Checkout of the hot book was refused: " + response.getStatusCode());
+        }
+        return loanController.deleteLoan(saved.getId());
+    }
+}
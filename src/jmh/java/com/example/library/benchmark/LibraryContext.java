@@ -0,0 +1,31 @@
+package com.example.library.benchmark;
+
+import com.example.library.LibraryApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the application once per benchmark trial without a web server, against an in-memory H2 database
+ * in PostgreSQL mode, so controller and repository paths run through the same proxies, transactions and
+ * caches as in production without needing a database server.
+ */
+final class LibraryContext {
+
+    private LibraryContext() {
+    }
+
+    static ConfigurableApplicationContext start(String name) {
+        return new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                                + "DEFAULT_NULL_ORDERING=HIGH;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.sql.init.platform=h2",
+                        "--logging.level.root=WARN");
+    }
+}
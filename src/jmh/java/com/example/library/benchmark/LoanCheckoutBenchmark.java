@@ -0,0 +1,100 @@
+package com.example.library.benchmark;
+
+import com.example.library.controller.LoanController;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.model.Member;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code LoanController.createLoan} followed by {@code deleteLoan}, spread over many members so the
+ * 5-loan cap is never hit; {@code contended} runs the same path from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoanCheckoutBenchmark {
+
+    private static final int MEMBERS = 256;
+
+    private ConfigurableApplicationContext context;
+    private LoanController loanController;
+    private long[] memberIds;
+    private long bookId;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = LibraryContext.start("loan-checkout");
+        loanController = context.getBean(LoanController.class);
+
+        Author author = new Author();
+        author.setName("Benchmark Author");
+        author.setDateOfBirth(LocalDate.of(1970, 1, 1));
+        author = context.getBean(AuthorRepository.class).save(author);
+
+        Book book = new Book();
+        book.setTitle("Benchmark Book");
+        book.setGenre("Benchmark");
+        book.setPrice(BigDecimal.TEN);
+        book.setAuthorId(author.getId());
+        book.setCopies(MEMBERS);
+        book.setAvailableCopies(MEMBERS);
+        bookId = context.getBean(BookRepository.class).save(book).getId();
+
+        MemberRepository memberRepository = context.getBean(MemberRepository.class);
+        memberIds = new long[MEMBERS];
+        for (int i = 0; i < MEMBERS; i++) {
+            Member member = new Member();
+            member.setUsername("bench-member-" + i);
+            memberIds[i] = memberRepository.save(member).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object checkoutAndReturn() {
+        return checkout();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object contended() {
+        return checkout();
+    }
+
+    private Object checkout() {
+        Loan loan = new Loan();
+        loan.setMemberId(memberIds[(int) (sequence.getAndIncrement() % MEMBERS)]);
+        loan.setBookId(bookId);
+        ResponseEntity<Object> response = loanController.createLoan(loan);
+        if (response.getBody() instanceof Loan saved) {
+            loanController.deleteLoan(saved.getId());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.library.benchmark;
+
+import com.example.library.controller.MemberController;
+import com.example.library.model.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code MemberController.createMember} with a fresh username per call, covering the username lookup
+ * and the insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberCreateBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private MemberController memberController;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = LibraryContext.start("member-create");
+        memberController = context.getBean(MemberController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object createMember() {
+        Member member = new Member();
+        member.setUsername("bench-" + sequence.getAndIncrement());
+        member.setEmail("bench@example.com");
+        member.setAddress("1 Bench St");
+        member.setPhoneNumber("5550100");
+        return memberController.createMember(member);
+    }
+}
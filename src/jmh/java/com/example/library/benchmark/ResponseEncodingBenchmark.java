@@ -0,0 +1,138 @@
+package com.example.library.benchmark;
+
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding of a 10k-row {@code GET /books} or {@code GET /loans} body in each response format the API offers,
+ * with and without gzip, using the application's own mappers. The time is the serialization (and compression)
+ * CPU per response; the encoded size of each combination is reported next to it as the {@code bytesOnWire}
+ * secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseEncodingBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"books", "loans"})
+    public String payload;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"none", "gzip"})
+    public String compression;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper mapper;
+    private List<?> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = LibraryContext.start("response-encoding");
+        mapper = switch (format) {
+            case "json" -> context.getBean(ObjectMapper.class);
+            case "smile" -> context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+            case "cbor" -> context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        rows = payload.equals("books") ? books() : loans();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encode(WireSize wire) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        if (compression.equals("gzip")) {
+            try (OutputStream out = new GZIPOutputStream(bytes, 8192)) {
+                mapper.writeValue(out, rows);
+            }
+        } else {
+            mapper.writeValue(bytes, rows);
+        }
+        byte[] encoded = bytes.toByteArray();
+        wire.bytesOnWire = encoded.length;
+        return encoded;
+    }
+
+    /**
+     * The size of the last encoded response. Every invocation encodes the same rows, so the value read at the end
+     * of an iteration is the size of any of them; it is set rather than summed, and JMH averages it over iterations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+
+        public long bytesOnWire;
+    }
+
+    private static List<Book> books() {
+        List<Book> books = new ArrayList<>(ROWS);
+        Instant modified = Instant.parse("2026-01-01T00:00:00Z");
+        for (int i = 0; i < ROWS; i++) {
+            Book book = new Book();
+            book.setId((long) i + 1);
+            book.setTitle("Book " + i);
+            book.setGenre("Genre " + (i % 20));
+            book.setPrice(BigDecimal.valueOf(500 + i % 5000, 2));
+            book.setAuthorId((long) (i % 500) + 1);
+            book.setCopies(3);
+            book.setAvailableCopies(i % 4);
+            book.setLoanCount((long) i % 97);
+            book.setVersion((long) i % 7);
+            book.setLastModified(modified.plusSeconds(i));
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static List<Loan> loans() {
+        List<Loan> loans = new ArrayList<>(ROWS);
+        LocalDate lent = LocalDate.of(2026, 1, 1);
+        Instant modified = Instant.parse("2026-01-01T00:00:00Z");
+        for (int i = 0; i < ROWS; i++) {
+            Loan loan = new Loan();
+            loan.setId((long) i + 1);
+            loan.setMemberId((long) (i % 2000) + 1);
+            loan.setBookId((long) (i % 5000) + 1);
+            loan.setLendDate(lent.plusDays(i % 365));
+            loan.setReturnDate(lent.plusDays(i % 365 + 7));
+            loan.setVersion((long) i % 3);
+            loan.setLastModified(modified.plusSeconds(i));
+            loans.add(loan);
+        }
+        return loans;
+    }
+}
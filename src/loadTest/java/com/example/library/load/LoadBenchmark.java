@@ -0,0 +1,257 @@
+package com.example.library.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load generator for comparing request-handling modes (for example platform threads against
+ * the {@code virtual-threads} profile) on the same hardware.
+ *
+ * Each of {@code load.concurrency} workers issues requests back to back for {@code load.durationSeconds}
+ * after a warm-up, and the run reports throughput and latency percentiles to stdout and as JSON under
+ * {@code build/reports/load}. Scenarios:
+ * <ul>
+ *     <li>{@code books} - {@code GET /books?limit=100}, the catalog read path</li>
+ *     <li>{@code checkout} - {@code POST /loans} followed by {@code DELETE /loans/{id}}, one member per worker,
+ *     so every iteration takes the member row lock and writes two rows</li>
+ *     <li>{@code slow-readers} - long streaming reads drained slowly, for comparing the reactive and servlet
+ *     read paths by the threads and connections they hold (see {@link SlowReaderBenchmark})</li>
+ * </ul>
+ * Run with {@code ./gradlew loadBenchmark -Pload.scenario=checkout -Pload.concurrency=400 -Pload.label=virtual}.
+ */
+public final class LoadBenchmark {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final HttpClient client;
+    private final String baseUrl;
+
+    private LoadBenchmark(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("load.baseUrl", "http://localhost:8080");
+        String scenario = System.getProperty("load.scenario", "books");
+        int concurrency = Integer.getInteger("load.concurrency", 200);
+        int durationSeconds = Integer.getInteger("load.durationSeconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        String label = System.getProperty("load.label", "run");
+        Path reportDir = Path.of(System.getProperty("load.reportDir", "build/reports/load"));
+
+        if (scenario.equals("slow-readers")) {
+            SlowReaderBenchmark.run(baseUrl, concurrency, durationSeconds, label, reportDir);
+            return;
+        }
+
+        LoadBenchmark benchmark = new LoadBenchmark(baseUrl);
+        List<Worker> workers = benchmark.prepare(scenario, concurrency);
+        Result result = benchmark.run(workers, warmupSeconds, durationSeconds);
+
+        String json = result.toJson(label, scenario, concurrency);
+        System.out.println(result.summary(label, scenario, concurrency));
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve(label + "-" + scenario + ".json"), json);
+    }
+
+    private List<Worker> prepare(String scenario, int concurrency) throws IOException, InterruptedException {
+        List<Worker> workers = new ArrayList<>();
+        switch (scenario) {
+            case "books" -> {
+                for (int i = 0; i < concurrency; i++) {
+                    workers.add(recorder -> recorder.time(() -> expect(get("/books?limit=100"), 200)));
+                }
+            }
+            case "checkout" -> {
+                long authorId = id(post("/authors", "{\"name\":\"Load Author\",\"dateOfBirth\":\"1970-01-01\"}"));
+                long bookId = id(post("/books", "{\"title\":\"Load Book\",\"genre\":\"Benchmark\",\"price\":10,\"authorId\":"
+                        + authorId + ",\"copies\":" + concurrency + "}"));
+                String run = Long.toString(System.currentTimeMillis(), 36);
+                for (int i = 0; i < concurrency; i++) {
+                    long memberId = id(post("/members", "{\"username\":\"load-" + run + "-" + i
+                            + "\",\"email\":\"load@example.com\",\"address\":\"1 Bench St\",\"phoneNumber\":\"5550100\"}"));
+                    String loan = "{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}";
+                    workers.add(recorder -> {
+                        long[] loanId = new long[1];
+                        recorder.time(() -> loanId[0] = id(post("/loans", loan)));
+                        recorder.time(() -> expect(delete("/loans/" + loanId[0]), 204));
+                    });
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+        return workers;
+    }
+
+    private Result run(List<Worker> workers, int warmupSeconds, int durationSeconds) throws Exception {
+        long measureFrom = System.nanoTime() + Duration.ofSeconds(warmupSeconds).toNanos();
+        long stopAt = measureFrom + Duration.ofSeconds(durationSeconds).toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            List<Future<Recorder>> futures = new ArrayList<>();
+            for (Worker worker : workers) {
+                futures.add(executor.submit(() -> {
+                    Recorder recorder = new Recorder(measureFrom);
+                    while (System.nanoTime() < stopAt) {
+                        worker.iterate(recorder);
+                    }
+                    return recorder;
+                }));
+            }
+            Result result = new Result(durationSeconds);
+            for (Future<Recorder> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+    }
+
+    private HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)));
+    }
+
+    private HttpResponse<String> delete(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).DELETE());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> expect(HttpResponse<String> response, int status) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException(response.request().method() + " " + response.uri() + " returned "
+                    + response.statusCode() + ": " + response.body());
+        }
+        return response;
+    }
+
+    private static long id(HttpResponse<String> response) {
+        Matcher matcher = ID.matcher(expect(response, 200).body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("No id in response " + response.body());
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        void iterate(Recorder recorder);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    /**
+     * Per-worker latency log; only requests that start after the warm-up are recorded.
+     */
+    private static final class Recorder {
+        private final long measureFrom;
+        private long[] latencies = new long[4096];
+        private int count;
+        private long errors;
+
+        private Recorder(long measureFrom) {
+            this.measureFrom = measureFrom;
+        }
+
+        private void time(Call call) {
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                call.run();
+            } catch (Exception e) {
+                failed = true;
+            }
+            if (start < measureFrom) {
+                return;
+            }
+            if (failed) {
+                errors++;
+                return;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+    }
+
+    private static final class Result {
+        private final int durationSeconds;
+        private long[] latencies = new long[0];
+        private long errors;
+
+        private Result(int durationSeconds) {
+            this.durationSeconds = durationSeconds;
+        }
+
+        private void add(Recorder recorder) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + recorder.count);
+            System.arraycopy(recorder.latencies, 0, latencies, offset, recorder.count);
+            errors += recorder.errors;
+        }
+
+        private double throughput() {
+            return (double) latencies.length / durationSeconds;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100.0 * sorted.length) - 1);
+            return sorted[Math.max(index, 0)] / 1_000_000.0;
+        }
+
+        private String summary(String label, String scenario, int concurrency) {
+            return String.format(Locale.ROOT,
+                    "%s/%s concurrency=%d requests=%d errors=%d throughput=%.1f req/s p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                    label, scenario, concurrency, latencies.length, errors, throughput(),
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9),
+                    percentileMillis(100));
+        }
+
+        private String toJson(String label, String scenario, int concurrency) {
+            return String.format(Locale.ROOT,
+                    "{\"label\":\"%s\",\"scenario\":\"%s\",\"concurrency\":%d,\"durationSeconds\":%d,\"requests\":%d,"
+                            + "\"errors\":%d,\"throughput\":%.2f,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,"
+                            + "\"p999Ms\":%.3f,\"maxMs\":%.3f}%n",
+                    label, scenario, concurrency, durationSeconds, latencies.length, errors, throughput(),
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(99.9),
+                    percentileMillis(100));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.library.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Holds {@code load.concurrency} streaming reads open at once, each consuming its response slowly, and samples the
+ * server's threads and connections while they run.
+ *
+ * Every client reads one buffer, waits {@code load.readDelayMillis}, then asks for the next, so the server can only
+ * send as fast as the client drains its socket; a finished stream is restarted until {@code load.durationSeconds}
+ * have passed. Once a second the actuator at {@code load.metricsUrl} is asked for live JVM threads, the reactive
+ * server's open connections, and the acquired R2DBC and Hikari connections, and the peaks are reported with the
+ * stream count and stream-duration percentiles. Point it at both read paths to compare them:
+ * <ul>
+ *     <li>reactive: {@code -Pload.baseUrl=http://localhost:8081 -Pload.path=/books}</li>
+ *     <li>servlet: {@code -Pload.baseUrl=http://localhost:8080 -Pload.path=/books?stream=true}</li>
+ * </ul>
+ */
+final class SlowReaderBenchmark {
+
+    private static final Pattern VALUE = Pattern.compile("\"value\"\\s*:\\s*([-0-9.Ee]+)");
+
+    private static final Map<String, String> GAUGES = new LinkedHashMap<>();
+
+    static {
+        GAUGES.put("jvmThreads", "/actuator/metrics/jvm.threads.live");
+        GAUGES.put("reactiveServerConnections", "/actuator/metrics/reactor.netty.http.server.connections.active");
+        GAUGES.put("r2dbcAcquired", "/actuator/metrics/library.reactive.pool.connections?tag=state:acquired");
+        GAUGES.put("r2dbcPending", "/actuator/metrics/library.reactive.pool.connections?tag=state:pending");
+        GAUGES.put("hikariActive", "/actuator/metrics/hikaricp.connections.active");
+        GAUGES.put("hikariPending", "/actuator/metrics/hikaricp.connections.pending");
+    }
+
+    private final HttpClient client;
+    private final URI streamUri;
+    private final String metricsUrl;
+    private final long readDelayMillis;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ConcurrentLinkedQueue<Long> durations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Map<String, Double> peaks = new LinkedHashMap<>();
+
+    private SlowReaderBenchmark(URI streamUri, String metricsUrl, long readDelayMillis) {
+        this.streamUri = streamUri;
+        this.metricsUrl = metricsUrl;
+        this.readDelayMillis = readDelayMillis;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    static void run(String baseUrl, int concurrency, int durationSeconds, String label, Path reportDir) throws Exception {
+        String path = System.getProperty("load.path", "/books");
+        String metricsUrl = System.getProperty("load.metricsUrl", "http://localhost:8080");
+        long readDelayMillis = Long.getLong("load.readDelayMillis", 500);
+
+        SlowReaderBenchmark benchmark = new SlowReaderBenchmark(URI.create(baseUrl + path), metricsUrl, readDelayMillis);
+        try {
+            benchmark.drive(concurrency, durationSeconds);
+        } finally {
+            benchmark.scheduler.shutdownNow();
+        }
+
+        String scenario = "slow-readers";
+        System.out.println(benchmark.summary(label, concurrency, durationSeconds));
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve(label + "-" + scenario + ".json"),
+                benchmark.toJson(label, scenario, concurrency, durationSeconds));
+    }
+
+    private void drive(int concurrency, int durationSeconds) throws Exception {
+        long stopAt = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+        scheduler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = readUntil(stopAt);
+        }
+        CompletableFuture.allOf(clients).get(durationSeconds + 300L, TimeUnit.SECONDS);
+        sample();
+    }
+
+    private CompletableFuture<Void> readUntil(long stopAt) {
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder(streamUri)
+                .header("Accept", "application/x-ndjson, application/json")
+                .timeout(Duration.ofMinutes(5))
+                .GET()
+                .build();
+        return client.sendAsync(request, info -> HttpResponse.BodySubscribers.fromSubscriber(new SlowSubscriber()))
+                .handle((response, failure) -> {
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    } else {
+                        durations.add(System.nanoTime() - start);
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> System.nanoTime() < stopAt
+                        ? readUntil(stopAt)
+                        : CompletableFuture.completedFuture(null));
+    }
+
+    private void sample() {
+        GAUGES.forEach((name, path) -> {
+            try {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(metricsUrl + path))
+                        .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+                Matcher matcher = VALUE.matcher(response.body());
+                if (response.statusCode() == 200 && matcher.find()) {
+                    double value = Double.parseDouble(matcher.group(1));
+                    synchronized (peaks) {
+                        peaks.merge(name, value, Math::max);
+                    }
+                }
+            } catch (Exception e) {
+                // The gauge is missing on this server or the actuator is saturated; try again next second
+            }
+        });
+    }
+
+    private long[] sortedDurations() {
+        long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private String summary(String label, int concurrency, int durationSeconds) {
+        long[] sorted = sortedDurations();
+        String gauges;
+        synchronized (peaks) {
+            gauges = peaks.entrySet().stream()
+                    .map(entry -> String.format(Locale.ROOT, "%s=%.0f", entry.getKey(), entry.getValue()))
+                    .collect(Collectors.joining(" "));
+        }
+        return String.format(Locale.ROOT,
+                "%s/slow-readers concurrency=%d duration=%ds streams=%d errors=%d megabytes=%.1f p50=%.0fms p99=%.0fms max=%.0fms peak %s",
+                label, concurrency, durationSeconds, sorted.length, errors.get(), bytes.get() / 1_000_000.0,
+                percentileMillis(sorted, 50), percentileMillis(sorted, 99), percentileMillis(sorted, 100), gauges);
+    }
+
+    private String toJson(String label, String scenario, int concurrency, int durationSeconds) {
+        long[] sorted = sortedDurations();
+        String gauges;
+        synchronized (peaks) {
+            gauges = peaks.entrySet().stream()
+                    .map(entry -> String.format(Locale.ROOT, "\"%s\":%.0f", entry.getKey(), entry.getValue()))
+                    .collect(Collectors.joining(","));
+        }
+        return String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"scenario\":\"%s\",\"concurrency\":%d,\"durationSeconds\":%d,\"readDelayMillis\":%d,"
+                        + "\"streams\":%d,\"errors\":%d,\"bytes\":%d,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f,"
+                        + "\"peaks\":{%s}}%n",
+                label, scenario, concurrency, durationSeconds, readDelayMillis, sorted.length, errors.get(), bytes.get(),
+                percentileMillis(sorted, 50), percentileMillis(sorted, 99), percentileMillis(sorted, 100), gauges);
+    }
+
+    /**
+     * Requests one buffer at a time, each after the read delay, so the response drains at the client's pace.
+     */
+    private final class SlowSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            bytes.addAndGet(buffers.stream().mapToLong(ByteBuffer::remaining).sum());
+            scheduler.schedule(() -> subscription.request(1), readDelayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
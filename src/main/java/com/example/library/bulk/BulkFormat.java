@@ -0,0 +1,31 @@
+package com.example.library.bulk;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Stream formats accepted by the bulk import endpoints.
+ */
+public enum BulkFormat {
+    NDJSON,
+    CSV;
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    public static BulkFormat fromContentType(String contentType) {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new IllegalArgumentException("Unsupported bulk content type " + contentType, e);
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(CSV_VALUE))) {
+            return CSV;
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON_VALUE))) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported bulk content type " + contentType);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.library.bulk;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were read and stored, and why the rejected rows failed.
+ * Only the first {@value BulkImportService#MAX_REPORTED_ERRORS} errors are listed; {@code failed}
+ * always holds the full count.
+ */
+public record BulkImportResult(long received, long imported, long failed, List<RowError> errors) {
+
+    /**
+     * A rejected row, identified by its 1-based line number in the uploaded stream.
+     */
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.library.bulk;
+
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.index.TakenUsernames;
+import com.example.library.index.UsernameBloomFilter;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Member;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.MemberRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Imports large NDJSON or CSV uploads of books, authors and members.
+ *
+ * Rows are read and validated in batches of {@value #BATCH_SIZE}; references and unique keys are checked
+ * with one query per batch, and valid rows are written with a single JDBC batch insert in their own
+ * transaction (the entities use IDENTITY ids, which rules out Hibernate insert batching). If a batch
+ * insert is rejected by the database the batch is rolled back and retried row by row, so one bad row
+ * is reported without losing the rest of the batch.
+ *
+ * Imported books and members are recorded as created in the transaction that inserts them, like those created
+ * one at a time; their ids come back as the batch's generated keys, so the events cost one more batch insert
+ * rather than a statement per row. Authors have no change events.
+ */
+@Service
+public class BulkImportService {
+
+    static final int BATCH_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_BOOK = "INSERT INTO book (title, genre, price, author_id, copies, "
+            + "available_copies, loan_count, version, last_modified) VALUES (?, ?, ?, ?, ?, ?, 0, 0, ?)";
+    private static final String INSERT_AUTHOR =
+            "INSERT INTO author (name, date_of_birth) VALUES (?, ?)";
+    private static final String INSERT_MEMBER = "INSERT INTO member (username, email, address, phone_number, "
+            + "version, last_modified) VALUES (?, ?, ?, ?, 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private TakenUsernames takenUsernames;
+
+    @Autowired
+    private Outbox outbox;
+
+    @CacheEvict(cacheNames = "bookSearch", allEntries = true)
+    public BulkImportResult importBooks(InputStream in, String contentType) throws IOException {
+        return importRows(in, contentType, Book.class, this::validateBooks, INSERT_BOOK, (ps, book) -> {
+            ps.setString(1, book.getTitle());
+            ps.setString(2, book.getGenre());
+            ps.setBigDecimal(3, book.getPrice());
+            ps.setLong(4, book.getAuthorId());
+            int copies = book.getCopies() == null ? 1 : book.getCopies();
+            ps.setInt(5, copies);
+            ps.setInt(6, copies);
+            // Kept on the book, so its event carries the row as written
+            book.setCopies(copies);
+            book.setAvailableCopies(copies);
+            book.setLoanCount(0L);
+            book.setVersion(0L);
+            ps.setObject(7, written(book::setLastModified));
+        }, (book, id) -> {
+            book.setId(id);
+            outbox.record(ChangeEvent.Aggregate.BOOK, id, ChangeEvent.Type.CREATED, book);
+        });
+    }
+
+    public BulkImportResult importAuthors(InputStream in, String contentType) throws IOException {
+        return importRows(in, contentType, Author.class, this::validateAuthors, INSERT_AUTHOR, (ps, author) -> {
+            ps.setString(1, author.getName());
+            if (author.getDateOfBirth() == null) {
+                ps.setNull(2, Types.DATE);
+            } else {
+                ps.setDate(2, Date.valueOf(author.getDateOfBirth()));
+            }
+        }, (author, id) -> author.setId(id));
+    }
+
+    public BulkImportResult importMembers(InputStream in, String contentType) throws IOException {
+        return importRows(in, contentType, Member.class, this::validateMembers, INSERT_MEMBER, (ps, member) -> {
+            ps.setString(1, member.getUsername());
+            ps.setString(2, member.getEmail());
+            ps.setString(3, member.getAddress());
+            ps.setString(4, member.getPhoneNumber());
+            member.setVersion(0L);
+            ps.setObject(5, written(member::setLastModified));
+            // Added to the username filter only if the batch (or this row's retry) commits
+            takenUsernames.add(member.getUsername());
+        }, (member, id) -> {
+            member.setId(id);
+            outbox.record(ChangeEvent.Aggregate.MEMBER, id, ChangeEvent.Type.CREATED, member);
+        });
+    }
+
+    // The modification time of a row being inserted, at the precision the column keeps
+    private static OffsetDateTime written(Consumer<Instant> entity) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        entity.accept(now);
+        return now.atOffset(ZoneOffset.UTC);
+    }
+
+    private <T> BulkImportResult importRows(InputStream in, String contentType, Class<T> type,
+                                            BiFunction<List<BulkRecordReader.ParsedRow<T>>, Tally, List<BulkRecordReader.ParsedRow<T>>> validator,
+                                            String sql, ParameterizedPreparedStatementSetter<T> setter,
+                                            BiConsumer<T, Long> created) throws IOException {
+        BulkFormat format = BulkFormat.fromContentType(contentType);
+        Tally tally = new Tally();
+        try (BulkRecordReader<T> reader = new BulkRecordReader<>(in, format, type, objectMapper)) {
+            List<BulkRecordReader.ParsedRow<T>> batch = new ArrayList<>(BATCH_SIZE);
+            BulkRecordReader.ParsedRow<T> row;
+            while ((row = reader.next()) != null) {
+                tally.received++;
+                if (row.error() != null) {
+                    tally.reject(row.line(), row.error());
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == BATCH_SIZE) {
+                    insert(validator.apply(batch, tally), sql, setter, created, tally);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(validator.apply(batch, tally), sql, setter, created, tally);
+            }
+        }
+        return tally.toResult();
+    }
+
+    private <T> void insert(List<BulkRecordReader.ParsedRow<T>> rows, String sql,
+                            ParameterizedPreparedStatementSetter<T> setter, BiConsumer<T, Long> created,
+                            Tally tally) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<T> values = rows.stream().map(BulkRecordReader.ParsedRow::value).collect(Collectors.toList());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            transaction.executeWithoutResult(status -> write(sql, values, setter, created));
+            tally.imported += rows.size();
+        } catch (DataAccessException batchFailure) {
+            for (BulkRecordReader.ParsedRow<T> row : rows) {
+                try {
+                    transaction.executeWithoutResult(status -> write(sql, List.of(row.value()), setter, created));
+                    tally.imported++;
+                } catch (DataAccessException e) {
+                    tally.reject(row.line(), "Rejected by database: " + e.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    // One batch insert; each row is then handed to created with its generated id, in the same transaction
+    private <T> void write(String sql, List<T> values, ParameterizedPreparedStatementSetter<T> setter,
+                           BiConsumer<T, Long> created) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.setValues(ps, values.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return values.size();
+                    }
+                }, keys);
+        // The key maps are case-insensitive; PostgreSQL returns every column, H2 only the id
+        List<Map<String, Object>> ids = keys.getKeyList();
+        for (int i = 0; i < values.size(); i++) {
+            created.accept(values.get(i), ((Number) ids.get(i).get("id")).longValue());
+        }
+    }
+
+    private List<BulkRecordReader.ParsedRow<Book>> validateBooks(List<BulkRecordReader.ParsedRow<Book>> rows, Tally tally) {
+        Set<Long> authorIds = rows.stream()
+                .map(row -> row.value().getAuthorId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> existingAuthorIds = authorIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(authorRepository.findExistingIds(authorIds));
+
+        List<BulkRecordReader.ParsedRow<Book>> valid = new ArrayList<>(rows.size());
+        for (BulkRecordReader.ParsedRow<Book> row : rows) {
+            Book book = row.value();
+            String error = null;
+            if (isBlank(book.getTitle())) {
+                error = "Title is required";
+            } else if (isBlank(book.getGenre())) {
+                error = "Genre is required";
+            } else if (book.getPrice() == null || book.getPrice().compareTo(BigDecimal.ZERO) < 0) {
+                error = "Price must be zero or greater";
+            } else if (book.getCopies() != null && book.getCopies() < 0) {
+                error = "Copies must be zero or greater";
+            } else if (book.getAuthorId() == null) {
+                error = "Author id is required";
+            } else if (!existingAuthorIds.contains(book.getAuthorId())) {
+                error = "Author not found with id " + book.getAuthorId();
+            }
+            accept(row, error, valid, tally);
+        }
+        return valid;
+    }
+
+    private List<BulkRecordReader.ParsedRow<Author>> validateAuthors(List<BulkRecordReader.ParsedRow<Author>> rows, Tally tally) {
+        List<BulkRecordReader.ParsedRow<Author>> valid = new ArrayList<>(rows.size());
+        for (BulkRecordReader.ParsedRow<Author> row : rows) {
+            accept(row, isBlank(row.value().getName()) ? "Name is required" : null, valid, tally);
+        }
+        return valid;
+    }
+
+    private List<BulkRecordReader.ParsedRow<Member>> validateMembers(List<BulkRecordReader.ParsedRow<Member>> rows, Tally tally) {
+        Set<String> usernames = rows.stream()
+                .map(row -> row.value().getUsername())
+                .filter(Objects::nonNull)
+                .map(UsernameBloomFilter::key)
+                .collect(Collectors.toSet());
+        Set<String> taken = usernames.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(memberRepository.findExistingUsernames(usernames));
+
+        List<BulkRecordReader.ParsedRow<Member>> valid = new ArrayList<>(rows.size());
+        for (BulkRecordReader.ParsedRow<Member> row : rows) {
+            String username = row.value().getUsername();
+            String error = null;
+            if (username == null || username.length() < 3 || username.length() > 50) {
+                error = "Username must be between 3 and 50 characters";
+            } else if (!taken.add(UsernameBloomFilter.key(username))) {
+                error = "Username already exists.";
+            }
+            accept(row, error, valid, tally);
+        }
+        return valid;
+    }
+
+    private static <T> void accept(BulkRecordReader.ParsedRow<T> row, String error,
+                                   List<BulkRecordReader.ParsedRow<T>> valid, Tally tally) {
+        if (error == null) {
+            valid.add(row);
+        } else {
+            tally.reject(row.line(), error);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static final class Tally {
+        private long received;
+        private long imported;
+        private long failed;
+        private final List<BulkImportResult.RowError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BulkImportResult.RowError(line, message));
+            }
+        }
+
+        private BulkImportResult toResult() {
+            errors.sort((a, b) -> Long.compare(a.line(), b.line()));
+            return new BulkImportResult(received, imported, failed, List.copyOf(errors));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.library.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an NDJSON or CSV upload one record at a time, so an import never holds more than the current
+ * batch in memory.
+ *
+ * CSV input needs a header row naming the entity properties (for example {@code title,genre,price,authorId}).
+ * Fields may be double-quoted; quoted fields spanning several lines are not supported. Blank lines are
+ * skipped in both formats.
+ */
+class BulkRecordReader<T> implements Closeable {
+
+    /**
+     * A record read from the stream, or the reason it could not be parsed.
+     */
+    record ParsedRow<T>(long line, T value, String error) {
+    }
+
+    private final BufferedReader reader;
+    private final BulkFormat format;
+    private final Class<T> type;
+    private final ObjectMapper objectMapper;
+    private List<String> header;
+    private long line;
+
+    BulkRecordReader(InputStream in, BulkFormat format, Class<T> type, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.format = format;
+        this.type = type;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the next record, or {@code null} once the stream is exhausted.
+     */
+    ParsedRow<T> next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            if (format == BulkFormat.CSV && header == null) {
+                header = splitCsv(text);
+                continue;
+            }
+            try {
+                return new ParsedRow<>(line, parse(text), null);
+            } catch (RuntimeException | IOException e) {
+                return new ParsedRow<>(line, null, "Invalid record: " + rootMessage(e));
+            }
+        }
+        return null;
+    }
+
+    private T parse(String text) throws IOException {
+        if (format == BulkFormat.NDJSON) {
+            return objectMapper.readValue(text, type);
+        }
+        List<String> fields = splitCsv(text);
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " fields but found " + fields.size());
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String value = fields.get(i);
+            values.put(header.get(i), value.isEmpty() ? null : value);
+        }
+        return objectMapper.convertValue(values, type);
+    }
+
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        String message = cause.getMessage();
+        int newline = message == null ? -1 : message.indexOf('\n');
+        return newline < 0 ? String.valueOf(message) : message.substring(0, newline);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
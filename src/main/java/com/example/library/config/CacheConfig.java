@@ -0,0 +1,40 @@
+package com.example.library.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.actuate.metrics.cache.CaffeineCacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers caches whose eviction policy differs from the default {@code spring.cache.caffeine.spec}, and keeps
+ * cache metrics working behind the decorators {@link CacheManagerPostProcessor} adds.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> bookSearchCacheCustomizer(
+            @Value("${library.cache.book-search.spec}") String spec) {
+        return cacheManager -> cacheManager.registerCustomCache("bookSearch", Caffeine.from(spec).build());
+    }
+
+    // Cache metrics see through the transaction-aware decorator, but not through the snapshot one beneath it
+    @Bean
+    public CacheMeterBinderProvider<SnapshotCache> snapshotCacheMeterBinderProvider() {
+        CaffeineCacheMeterBinderProvider caffeine = new CaffeineCacheMeterBinderProvider();
+        return new CacheMeterBinderProvider<>() {
+            @Override
+            public MeterBinder getMeterBinder(SnapshotCache cache, Iterable<Tag> tags) {
+                return cache.getTargetCache() instanceof CaffeineCache target
+                        ? caffeine.getMeterBinder(target, tags) : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.library.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the cache manager so every cache holds {@link SnapshotCache snapshots} and applies puts, evictions and
+ * clears only once the surrounding transaction has committed. A {@code @CachePut} or {@code @CacheEvict} inside a
+ * transaction that rolls back then leaves the cache as it was, and a concurrent read of the primary cannot cache a
+ * row between the eviction and the commit. Reads from a replica can lag past the commit; the repositories do not
+ * cache those. Outside a transaction, changes apply immediately.
+ */
+@Component
+public class CacheManagerPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof CacheManager cacheManager && !(bean instanceof TransactionAwareCacheManagerProxy)) {
+            return new TransactionAwareCacheManagerProxy(new SnapshotCacheManager(cacheManager));
+        }
+        return bean;
+    }
+
+    private static final class SnapshotCacheManager implements CacheManager {
+
+        private final CacheManager target;
+        private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+        private SnapshotCacheManager(CacheManager target) {
+            this.target = target;
+        }
+
+        @Override
+        public Cache getCache(String name) {
+            Cache cache = caches.get(name);
+            if (cache == null) {
+                Cache targetCache = target.getCache(name);
+                if (targetCache == null) {
+                    return null;
+                }
+                cache = caches.computeIfAbsent(name, key -> new SnapshotCache(targetCache));
+            }
+            return cache;
+        }
+
+        @Override
+        public Collection<String> getCacheNames() {
+            return target.getCacheNames();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.library.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Offers every JSON endpoint in two compact binary encodings, chosen with the Accept header:
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}).
+ *
+ * Both mappers are built from Boot's {@link Jackson2ObjectMapperBuilder}, so they share the JSON mapper's
+ * modules and settings. The beans replace Spring MVC's default CBOR and Smile converters in place, after
+ * the JSON converter, so clients that accept anything still get JSON.
+ */
+@Configuration
+public class MessageConverterConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
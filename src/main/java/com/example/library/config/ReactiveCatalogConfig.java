@@ -0,0 +1,87 @@
+package com.example.library.config;
+
+import com.example.library.reactive.ReactiveCatalogRepository;
+import com.example.library.reactive.ReactiveCatalogRoutes;
+import com.example.library.reactive.ReactiveCatalogServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Starts the reactive catalog read server when {@code library.reactive.enabled=true}.
+ *
+ * The server is a second listener on {@code library.reactive.port} serving WebFlux functional routes on Reactor
+ * Netty, beside the servlet container that keeps every other endpoint. Its R2DBC pool is not a bean, so Boot's
+ * R2DBC auto-configuration and script initialization stay off (see {@code LibraryApplication}) and the schema is
+ * still applied once, over JDBC.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.reactive", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReactiveCatalogProperties.class)
+public class ReactiveCatalogConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReactiveCatalogRepository reactiveCatalogRepository(ReactiveCatalogProperties properties,
+                                                               DataSourceProperties primaryProperties,
+                                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate();
+        String username = properties.getUsername() != null ? properties.getUsername() : primaryProperties.getUsername();
+        String password = properties.getPassword() != null ? properties.getPassword() : primaryProperties.getPassword();
+        if (username != null) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (password != null && !password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options.build()))
+                .name("reactive")
+                .initialSize(0)
+                .maxSize(properties.getMaxPoolSize())
+                .maxAcquireTime(properties.getMaxAcquireTime())
+                .build());
+        meterRegistry.ifAvailable(registry -> {
+            poolGauge(registry, pool, "acquired", PoolMetrics::acquiredSize);
+            poolGauge(registry, pool, "idle", PoolMetrics::idleSize);
+            poolGauge(registry, pool, "pending", PoolMetrics::pendingAcquireSize);
+        });
+        return new ReactiveCatalogRepository(pool, properties.getPageSize());
+    }
+
+    @Bean
+    public ReactiveCatalogServer reactiveCatalogServer(ReactiveCatalogProperties properties,
+                                                       ReactiveCatalogRepository repository,
+                                                       ObjectMapper objectMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper)))
+                .build();
+        return new ReactiveCatalogServer(
+                RouterFunctions.toHttpHandler(ReactiveCatalogRoutes.routes(repository), strategies),
+                properties.getPort());
+    }
+
+    private static void poolGauge(MeterRegistry registry, ConnectionPool pool, String state,
+                                  ToIntFunction<PoolMetrics> value) {
+        Gauge.builder("library.reactive.pool.connections", pool,
+                        p -> p.getMetrics().map(value::applyAsInt).orElse(0))
+                .tag("state", state)
+                .description("Connections of the reactive catalog's R2DBC pool")
+                .register(registry);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Reactive catalog read server, bound from {@code library.reactive.*} and started when
+ * {@code library.reactive.enabled=true}. Username and password default to those of the primary
+ * ({@code spring.datasource.*}).
+ */
+@ConfigurationProperties(prefix = "library.reactive")
+public class ReactiveCatalogProperties {
+
+    /**
+     * Port of the reactive server; it runs beside the servlet container, not in it. 0 picks a free port.
+     */
+    private int port = 8081;
+
+    /**
+     * R2DBC URL of the database to read from, for example {@code r2dbc:postgresql://replica:5432/librarydb}.
+     */
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * Connections shared by every open stream; a stream only holds one while it reads a page.
+     */
+    private int maxPoolSize = 10;
+
+    /**
+     * Rows read per query; also the most rows a stream buffers for a slow client.
+     */
+    private int pageSize = 256;
+
+    private Duration maxAcquireTime = Duration.ofSeconds(30);
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public Duration getMaxAcquireTime() {
+        return maxAcquireTime;
+    }
+
+    public void setMaxAcquireTime(Duration maxAcquireTime) {
+        this.maxAcquireTime = maxAcquireTime;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.library.config;
+
+import com.example.library.datasource.ReplicaHealthMonitor;
+import com.example.library.datasource.ReplicaRoutingDataSource;
+import com.example.library.web.PrimaryForWritesFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured pool with one that sends read-only transactions to read replicas when
+ * {@code library.datasource.replica.urls} is set.
+ *
+ * The application's {@link DataSource} is a {@link LazyConnectionDataSourceProxy} over the primary pool
+ * whose read-only side is a {@link ReplicaRoutingDataSource}. The proxy only fetches the physical
+ * connection at the first statement, after the transaction has marked it read-only, so the choice
+ * follows {@code @Transactional(readOnly = true)}. The pools themselves are not beans, which keeps the
+ * statement-counting wrapper on the outer data source only.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.datasource.replica", name = "urls")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaHealthMonitor replicaHealthMonitor(DataSourceProperties primaryProperties,
+                                                     ReplicaProperties replicaProperties,
+                                                     Environment environment,
+                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        List<String> urls = replicaProperties.getUrls();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            primary.copyStateTo(replica);
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i));
+            if (replicaProperties.getUsername() != null) {
+                replica.setUsername(replicaProperties.getUsername());
+                replica.setPassword(replicaProperties.getPassword());
+            }
+            if (replicaProperties.getMaximumPoolSize() != null) {
+                replica.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+            }
+            meterRegistry.ifAvailable(registry ->
+                    replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new ReplicaRoutingDataSource.Replica(replica.getPoolName(), replica));
+        }
+
+        return new ReplicaHealthMonitor(new ReplicaRoutingDataSource(primary, replicas),
+                replicaProperties.getValidationTimeout(), replicaProperties.getMaxLag(),
+                replicaProperties.getLagQuery());
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaHealthMonitor replicaHealthMonitor) {
+        ReplicaRoutingDataSource routing = replicaHealthMonitor.getDataSource();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing.getPrimary());
+        dataSource.setReadOnlyDataSource(routing);
+        return dataSource;
+    }
+
+    @Bean
+    public PrimaryForWritesFilter primaryForWritesFilter() {
+        return new PrimaryForWritesFilter();
+    }
+}
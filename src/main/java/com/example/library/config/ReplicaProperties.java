@@ -0,0 +1,105 @@
+package com.example.library.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas for {@code @Transactional(readOnly = true)} work, bound from {@code library.datasource.replica.*}.
+ * Username, password and pool size default to those of the primary ({@code spring.datasource.*}).
+ */
+@ConfigurationProperties(prefix = "library.datasource.replica")
+public class ReplicaProperties {
+
+    /**
+     * JDBC URLs of the replicas, comma separated.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    private String username;
+
+    private String password;
+
+    private Integer maximumPoolSize;
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    private Duration validationTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Replicas further behind the primary than this are taken out of rotation; unset disables the lag check.
+     */
+    private Duration maxLag;
+
+    /**
+     * Returns the replica's replication delay in seconds; the default is for PostgreSQL streaming replication.
+     */
+    private String lagQuery = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Integer getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(Integer maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public Duration getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    public void setValidationTimeout(Duration validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public String getLagQuery() {
+        return lagQuery;
+    }
+
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+}
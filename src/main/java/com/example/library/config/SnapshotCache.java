@@ -0,0 +1,87 @@
+package com.example.library.config;
+
+import com.example.library.model.Snapshottable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Stores a {@link Snapshottable#snapshot() snapshot} of every value put into the target cache and hands out a
+ * fresh snapshot on every hit. Cached entities are then never managed by a persistence context, and a caller that
+ * modifies what it got back changes neither the cache nor what other callers see. Other values pass through.
+ */
+public class SnapshotCache implements Cache {
+
+    private final Cache target;
+
+    public SnapshotCache(Cache target) {
+        this.target = target;
+    }
+
+    public Cache getTargetCache() {
+        return target;
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return target.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper wrapper = target.get(key);
+        return wrapper == null ? null : new SimpleValueWrapper(snapshot(wrapper.get()));
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return type.cast(snapshot(target.get(key, type)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) snapshot(target.get(key, () -> (T) snapshot(valueLoader.call())));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        target.put(key, snapshot(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = target.putIfAbsent(key, snapshot(value));
+        return existing == null ? null : new SimpleValueWrapper(snapshot(existing.get()));
+    }
+
+    @Override
+    public void evict(Object key) {
+        target.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return target.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        target.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return target.invalidate();
+    }
+
+    private static Object snapshot(Object value) {
+        return value instanceof Snapshottable<?> snapshottable ? snapshottable.snapshot() : value;
+    }
+}
@@ -1,17 +1,26 @@
 package com.example.library.controller;
 
-import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.bulk.BulkFormat;
+import com.example.library.bulk.BulkImportResult;
+import com.example.library.bulk.BulkImportService;
 import com.example.library.model.Author;
-import com.example.library.repository.AuthorRepository;
+import com.example.library.service.AuthorService;
+import com.example.library.web.EntityTags;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -19,9 +28,15 @@ import java.util.List;
 public class AuthorController {
 
     @Autowired
-    private AuthorRepository authorRepository;
+    private AuthorService authorService;
 
-    @Operation(summary = "Get a list of all authors")
+    @Autowired
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Operation(summary = "Get a page of authors ordered by ID, starting after the given cursor")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the authors",
                     content = {@Content(mediaType = "application/json",
@@ -30,9 +45,22 @@ public class AuthorController {
                     content = @Content)
     })
     @GetMapping
-    public ResponseEntity<List<Author>> getAllAuthors() {
-        List<Author> authors = authorRepository.findAll();
-        return ResponseEntity.ok(authors);
+    public ResponseEntity<List<Author>> getAllAuthors(@RequestParam(required = false) Long after,
+                                                      @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<Author> authors = authorService.getAuthors(KeysetPagination.after(after), KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(authors, pageSize, Author::getId);
+    }
+
+    @Operation(summary = "Stream all authors as a JSON array read from a database cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming the authors",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Author.class))})
+    })
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAuthors() {
+        return jsonStreamWriter.stream(authorService::streamAuthors);
     }
 
     @Operation(summary = "Get an author by ID")
@@ -45,9 +73,7 @@ public class AuthorController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<Author> getAuthorById(@PathVariable Long id) {
-        Author author = authorRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + id));
-        return ResponseEntity.ok(author);
+        return EntityTags.ok(authorService.getAuthor(id));
     }
 
     @Operation(summary = "Create a new author")
@@ -58,8 +84,19 @@ public class AuthorController {
     })
     @PostMapping
     public ResponseEntity<Author> createAuthor(@RequestBody Author author) {
-        Author savedAuthor = authorRepository.save(author);
-        return ResponseEntity.ok(savedAuthor);
+        return EntityTags.ok(authorService.createAuthor(author));
+    }
+
+    @Operation(summary = "Bulk import authors from an NDJSON or CSV stream")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished; rejected rows are reported by line number",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkImportResult.class))})
+    })
+    @PostMapping(value = "/bulk", consumes = {BulkFormat.NDJSON_VALUE, BulkFormat.CSV_VALUE})
+    public ResponseEntity<BulkImportResult> importAuthors(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                          InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkImportService.importAuthors(body, contentType));
     }
 
     @Operation(summary = "Update an existing author")
@@ -68,16 +105,14 @@ public class AuthorController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Author.class))}),
             @ApiResponse(responseCode = "404", description = "Author not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not match the current ETag",
                     content = @Content)
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Author> updateAuthor(@PathVariable Long id, @RequestBody Author authorDetails) {
-        Author author = authorRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + id));
-        author.setName(authorDetails.getName());
-        author.setDateOfBirth(authorDetails.getDateOfBirth());
-        Author updatedAuthor = authorRepository.save(author);
-        return ResponseEntity.ok(updatedAuthor);
+    public ResponseEntity<Author> updateAuthor(@PathVariable Long id, @RequestBody Author authorDetails,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return EntityTags.ok(authorService.updateAuthor(id, authorDetails, ifMatch));
     }
 
     @Operation(summary = "Delete an author by ID")
@@ -89,9 +124,7 @@ public class AuthorController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteAuthor(@PathVariable Long id) {
-        Author author = authorRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + id));
-        authorRepository.delete(author);
+        authorService.deleteAuthor(id);
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,18 +1,29 @@
 package com.example.library.controller;
 
-import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.bulk.BulkFormat;
+import com.example.library.bulk.BulkImportResult;
+import com.example.library.bulk.BulkImportService;
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
 import com.example.library.model.Book;
-import com.example.library.repository.BookRepository;
-import com.example.library.repository.AuthorRepository;
+import com.example.library.service.BookService;
+import com.example.library.web.EntityTags;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
 
 @RestController
@@ -20,12 +31,15 @@ import java.util.List;
 public class BookController {
 
     @Autowired
-    private BookRepository bookRepository;
+    private BookService bookService;
 
     @Autowired
-    private AuthorRepository authorRepository;
+    private JsonStreamWriter jsonStreamWriter;
 
-    @Operation(summary = "Get a list of all books")
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Operation(summary = "Get a page of books ordered by ID, starting after the given cursor")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the books",
                     content = {@Content(mediaType = "application/json",
@@ -34,9 +48,40 @@ public class BookController {
                     content = @Content)
     })
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = bookRepository.findAll();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<List<Book>> getAllBooks(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<Book> books = bookService.getBooks(KeysetPagination.after(after), KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(books, pageSize, Book::getId);
+    }
+
+    @Operation(summary = "Stream all books as a JSON array read from a database cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming the books",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Book.class))})
+    })
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamBooks() {
+        return jsonStreamWriter.stream(bookService::streamBooks);
+    }
+
+    @Operation(summary = "Search books by text, genre, price range and author, with genre and price facets")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Search results",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BookSearchResult.class))})
+    })
+    @GetMapping("/search")
+    public ResponseEntity<BookSearchResult> searchBooks(@RequestParam(required = false) String q,
+                                                        @RequestParam(required = false) String genre,
+                                                        @RequestParam(required = false) BigDecimal minPrice,
+                                                        @RequestParam(required = false) BigDecimal maxPrice,
+                                                        @RequestParam(required = false) Long authorId,
+                                                        @RequestParam(required = false) Integer page,
+                                                        @RequestParam(required = false) Integer size) {
+        BookSearchCriteria criteria = BookSearchCriteria.of(q, genre, minPrice, maxPrice, authorId, page, size);
+        return ResponseEntity.ok(bookService.searchBooks(criteria));
     }
 
     @Operation(summary = "Get a book by ID")
@@ -49,9 +94,7 @@ public class BookController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<Book> getBookById(@PathVariable Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
-        return ResponseEntity.ok(book);
+        return EntityTags.ok(bookService.getBook(id));
     }
 
     @Operation(summary = "Create a new book")
@@ -62,12 +105,19 @@ public class BookController {
     })
     @PostMapping
     public ResponseEntity<Book> createBook(@RequestBody Book book) {
-        // Check if the author exists before creating the book
-        authorRepository.findById(book.getAuthorId())
-                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + book.getAuthorId()));
+        return EntityTags.ok(bookService.createBook(book));
+    }
 
-        Book savedBook = bookRepository.save(book);
-        return ResponseEntity.ok(savedBook);
+    @Operation(summary = "Bulk import books from an NDJSON or CSV stream")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished; rejected rows are reported by line number",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkImportResult.class))})
+    })
+    @PostMapping(value = "/bulk", consumes = {BulkFormat.NDJSON_VALUE, BulkFormat.CSV_VALUE})
+    public ResponseEntity<BulkImportResult> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                        InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkImportService.importBooks(body, contentType));
     }
 
     @Operation(summary = "Update an existing book")
@@ -76,24 +126,16 @@ public class BookController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Book.class))}),
             @ApiResponse(responseCode = "404", description = "Book not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "More copies are on loan than the new number of copies",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not match the current ETag",
                     content = @Content)
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Book> updateBook(@PathVariable Long id, @RequestBody Book bookDetails) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
-
-        book.setTitle(bookDetails.getTitle());
-        book.setGenre(bookDetails.getGenre());
-        book.setPrice(bookDetails.getPrice());
-        book.setAuthorId(bookDetails.getAuthorId());
-
-        // Check if the author exists before updating the book
-        authorRepository.findById(book.getAuthorId())
-                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + book.getAuthorId()));
-
-        Book updatedBook = bookRepository.save(book);
-        return ResponseEntity.ok(updatedBook);
+    public ResponseEntity<Book> updateBook(@PathVariable Long id, @RequestBody Book bookDetails,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return EntityTags.ok(bookService.updateBook(id, bookDetails, ifMatch));
     }
 
     @Operation(summary = "Delete a book by ID")
@@ -105,9 +147,7 @@ public class BookController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteBook(@PathVariable Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
-        bookRepository.delete(book);
+        bookService.deleteBook(id);
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,89 @@
+package com.example.library.controller;
+
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.EventFeed;
+import com.example.library.web.KeysetPagination;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The change-event stream, for consumers that only want what changed since they last asked.
+ */
+@RestController
+@RequestMapping("/events")
+public class EventController {
+
+    static final int MAX_WAIT_SECONDS = 60;
+
+    @Autowired
+    private EventFeed eventFeed;
+
+    @Value("${library.events.sse.timeout:PT30M}")
+    private Duration sseTimeout;
+
+    @Operation(summary = "Get the change events after the given cursor; with wait=<seconds>, wait for one if there is none yet")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Events after the cursor, possibly none if the wait ran out; "
+                    + "X-Next-Cursor is the since value for the next request",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ChangeEvent.class))})
+    })
+    @GetMapping
+    public DeferredResult<ResponseEntity<List<ChangeEvent>>> getEvents(@RequestParam(required = false) Long since,
+                                                                       @RequestParam(required = false) Integer limit,
+                                                                       @RequestParam(required = false) Integer wait) {
+        long after = KeysetPagination.after(since);
+        int pageSize = KeysetPagination.pageSize(limit);
+        int waitSeconds = wait == null ? 0 : Math.max(0, Math.min(wait, MAX_WAIT_SECONDS));
+
+        DeferredResult<ResponseEntity<List<ChangeEvent>>> result =
+                new DeferredResult<>(Duration.ofSeconds(waitSeconds).toMillis() + 1000);
+        List<ChangeEvent> events = eventFeed.read(after, pageSize);
+        if (!events.isEmpty() || waitSeconds == 0) {
+            result.setResult(page(events, after));
+            return result;
+        }
+        Runnable cancel = eventFeed.await(after, pageSize, next -> result.setResult(page(next, after)));
+        result.onTimeout(() -> result.setResult(page(List.of(), after)));
+        result.onCompletion(cancel);
+        return result;
+    }
+
+    @Operation(summary = "Stream change events after the given cursor (or Last-Event-ID) as server-sent events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming events; each event's id is its cursor",
+                    content = {@Content(mediaType = "text/event-stream",
+                            schema = @Schema(implementation = ChangeEvent.class))})
+    })
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestParam(required = false) Long since,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        eventFeed.subscribe(lastEventId != null ? lastEventId : KeysetPagination.after(since), emitter);
+        return emitter;
+    }
+
+    private static ResponseEntity<List<ChangeEvent>> page(List<ChangeEvent> events, long after) {
+        long next = events.isEmpty() ? after : events.get(events.size() - 1).id();
+        return ResponseEntity.ok()
+                .header(KeysetPagination.NEXT_CURSOR_HEADER, Long.toString(next))
+                .body(events);
+    }
+}
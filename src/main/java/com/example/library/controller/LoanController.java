@@ -1,19 +1,26 @@
 package com.example.library.controller;
 
-import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.exception.LoanLimitExceededException;
 import com.example.library.model.Loan;
-import com.example.library.model.Member;
-import com.example.library.repository.LoanRepository;
-import com.example.library.repository.MemberRepository;
-import com.example.library.repository.BookRepository;
+import com.example.library.overdue.OverdueCursor;
+import com.example.library.service.LoanService;
+import com.example.library.web.EntityTags;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
+import com.example.library.writebehind.LoanWriteBehind;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -22,16 +29,25 @@ import java.util.List;
 @RequestMapping("/loans")
 public class LoanController {
 
+    private static final String LISTED_AFTER_FLUSH = "With write-behind checkouts on, a loan appears once it "
+            + "has been flushed (by default within 200ms of its checkout).";
+    private static final String FLUSHED_FIRST = "With write-behind checkouts on, a loan still queued on this "
+            + "instance is written first. One acknowledged by another instance is not found until that instance "
+            + "flushes it.";
+
     @Autowired
-    private LoanRepository loanRepository;
+    private LoanService loanService;
 
     @Autowired
-    private MemberRepository memberRepository;
+    private JsonStreamWriter jsonStreamWriter;
 
+    // Loans checked out with write-behind on are flushed before they are addressed by id, outside the transaction
+    // of the request. Only this instance's queue can be flushed; another instance's loans appear once it flushes
     @Autowired
-    private BookRepository bookRepository;
+    private LoanWriteBehind loanWriteBehind;
 
-    @Operation(summary = "Get a list of all loans")
+    @Operation(summary = "Get a page of loans ordered by ID, starting after the given cursor",
+            description = LISTED_AFTER_FLUSH)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the loans",
                     content = {@Content(mediaType = "application/json",
@@ -40,11 +56,49 @@ public class LoanController {
                     content = @Content)
     })
     @GetMapping
-    public List<Loan> getAllLoans() {
-        return loanRepository.findAll();
+    public ResponseEntity<List<Loan>> getAllLoans(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<Loan> loans = loanService.getLoans(KeysetPagination.after(after), KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(loans, pageSize, Loan::getId);
+    }
+
+    @Operation(summary = "Stream all loans as a JSON array read from a database cursor",
+            description = LISTED_AFTER_FLUSH)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming the loans",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Loan.class))})
+    })
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamLoans() {
+        return jsonStreamWriter.stream(loanService::streamLoans);
+    }
+
+    @Operation(summary = "Get a page of overdue loans, oldest return date first, starting after the given cursor",
+            description = LISTED_AFTER_FLUSH)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the overdue loans",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Loan.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor",
+                    content = @Content)
+    })
+    @GetMapping("/overdue")
+    public ResponseEntity<List<Loan>> getOverdueLoans(@RequestParam(required = false) String after,
+                                                      @RequestParam(required = false) Integer limit) {
+        OverdueCursor cursor;
+        try {
+            cursor = after == null ? null : OverdueCursor.parse(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<Loan> loans = loanService.getOverdueLoans(LocalDate.now(), cursor, KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(loans, pageSize, OverdueCursor::of);
     }
 
-    @Operation(summary = "Get a loan by ID")
+    @Operation(summary = "Get a loan by ID", description = FLUSHED_FIRST)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the loan",
                     content = {@Content(mediaType = "application/json",
@@ -54,71 +108,81 @@ public class LoanController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<Loan> getLoanById(@PathVariable Long id) {
-        Loan loan = loanRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
-        return ResponseEntity.ok(loan);
+        loanWriteBehind.awaitFlushed(id);
+        return EntityTags.ok(loanService.getLoan(id));
     }
 
     @Operation(summary = "Create a new loan")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Loan created",
                     content = {@Content(mediaType = "application/json",
-                            schema = @Schema(implementation = Loan.class))})
+                            schema = @Schema(implementation = Loan.class))}),
+            @ApiResponse(responseCode = "404", description = "Member or book not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "No copy of the book is available",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Write-behind is on and the loan could not be journaled",
+                    content = @Content)
     })
     @PostMapping
     public ResponseEntity<Object> createLoan(@RequestBody Loan loan) {
-        Member member = memberRepository.findById(loan.getMemberId())
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + loan.getMemberId()));
-
-        if (loanRepository.findByMemberId(member.getId()).size() >= 5) {
-            return ResponseEntity.badRequest().body("Member already has 5 loans");
-        }
-
-        bookRepository.findById(loan.getBookId())
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + loan.getBookId()));
-
-        // Set the lend date to today if not provided
-        if (loan.getLendDate() == null) {
-            loan.setLendDate(LocalDate.now());
+        try {
+            return ResponseEntity.ok(loanService.checkout(loan));
+        } catch (LoanLimitExceededException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
+    }
 
-        // Set the return date to one week from the lend date if not provided
-        if (loan.getReturnDate() == null) {
-            loan.setReturnDate(loan.getLendDate().plusWeeks(1));
-        }
+    @Operation(summary = "Return a basket of loans at once, putting their copies back on the shelf",
+            description = FLUSHED_FIRST)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-loan results; unknown IDs are reported as NOT_FOUND",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = LoanBatchResult.class))}),
+            @ApiResponse(responseCode = "400", description = "No loan IDs, or more than the batch limit",
+                    content = @Content)
+    })
+    @PostMapping("/return")
+    public ResponseEntity<LoanBatchResult> returnLoans(@RequestBody List<Long> loanIds) {
+        loanWriteBehind.awaitFlushed(loanIds);
+        return ResponseEntity.ok(loanService.returnLoans(loanIds));
+    }
 
-        Loan savedLoan = loanRepository.save(loan);
-        member.getLoanIds().add(savedLoan.getId());
-        memberRepository.save(member);
-        return ResponseEntity.ok(savedLoan);
+    @Operation(summary = "Renew a basket of loans at once, making each due one loan period from today",
+            description = FLUSHED_FIRST)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-loan results; unknown IDs are reported as NOT_FOUND",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = LoanBatchResult.class))}),
+            @ApiResponse(responseCode = "400", description = "No loan IDs, or more than the batch limit",
+                    content = @Content)
+    })
+    @PostMapping("/renew")
+    public ResponseEntity<LoanBatchResult> renewLoans(@RequestBody List<Long> loanIds) {
+        loanWriteBehind.awaitFlushed(loanIds);
+        return ResponseEntity.ok(loanService.renewLoans(loanIds));
     }
 
-    @Operation(summary = "Update an existing loan")
+    @Operation(summary = "Update an existing loan", description = FLUSHED_FIRST)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Loan updated",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Loan.class))}),
             @ApiResponse(responseCode = "404", description = "Loan not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409", description = "No copy of the new book is available",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not match the current ETag",
                     content = @Content)
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Loan> updateLoan(@PathVariable Long id, @RequestBody Loan loanDetails) {
-        Loan loan = loanRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
-        memberRepository.findById(loanDetails.getMemberId())
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + loanDetails.getMemberId()));
-        bookRepository.findById(loanDetails.getBookId())
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + loanDetails.getBookId()));
-
-        loan.setMemberId(loanDetails.getMemberId());
-        loan.setBookId(loanDetails.getBookId());
-        loan.setLendDate(loanDetails.getLendDate());
-        loan.setReturnDate(loanDetails.getReturnDate());
-        Loan updatedLoan = loanRepository.save(loan);
-        return ResponseEntity.ok(updatedLoan);
+    public ResponseEntity<Loan> updateLoan(@PathVariable Long id, @RequestBody Loan loanDetails,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        loanWriteBehind.awaitFlushed(id);
+        return EntityTags.ok(loanService.updateLoan(id, loanDetails, ifMatch));
     }
 
-    @Operation(summary = "Delete a loan by ID")
+    @Operation(summary = "Delete a loan by ID", description = FLUSHED_FIRST)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Loan deleted",
                     content = @Content),
@@ -127,15 +191,8 @@ public class LoanController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteLoan(@PathVariable Long id) {
-        Loan loan = loanRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
-
-        Member member = memberRepository.findById(loan.getMemberId())
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + loan.getMemberId()));
-        member.getLoanIds().remove(loan.getId());
-        memberRepository.save(member);
-
-        loanRepository.delete(loan);
+        loanWriteBehind.awaitFlushed(id);
+        loanService.returnLoan(id);
         return ResponseEntity.noContent().build();
     }
 }
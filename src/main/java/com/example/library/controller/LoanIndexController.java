@@ -0,0 +1,52 @@
+package com.example.library.controller;
+
+import com.example.library.dto.LoanIndexReport;
+import com.example.library.index.ActiveLoanIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Operations on the in-memory active-loan index: compare it with the loan table, or reload it.
+ */
+@RestController
+@RequestMapping("/admin/loan-index")
+public class LoanIndexController {
+
+    @Autowired
+    private ActiveLoanIndex activeLoanIndex;
+
+    @Operation(summary = "Compare the active-loan index with the loan table")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Comparison result",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = LoanIndexReport.class))}),
+            @ApiResponse(responseCode = "404", description = "The index is disabled",
+                    content = @Content)
+    })
+    @GetMapping
+    public ResponseEntity<LoanIndexReport> checkIndex() {
+        return ResponseEntity.ok(activeLoanIndex.check());
+    }
+
+    @Operation(summary = "Reload the active-loan index from the loan table, reporting the drift it corrected")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Index reloaded",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = LoanIndexReport.class))}),
+            @ApiResponse(responseCode = "404", description = "The index is disabled",
+                    content = @Content)
+    })
+    @PostMapping("/rebuild")
+    public ResponseEntity<LoanIndexReport> rebuildIndex() {
+        return ResponseEntity.ok(activeLoanIndex.rebuild());
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.library.controller;
 
-import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.bulk.BulkFormat;
+import com.example.library.bulk.BulkImportResult;
+import com.example.library.bulk.BulkImportService;
+import com.example.library.dto.MemberActiveLoans;
+import com.example.library.dto.MemberLoanView;
+import com.example.library.dto.UsernameAvailability;
+import com.example.library.exception.UsernameTakenException;
+import com.example.library.history.LoanHistoryEntry;
 import com.example.library.model.Member;
-import com.example.library.repository.MemberRepository;
-import com.example.library.repository.LoanRepository;
+import com.example.library.service.MemberService;
+import com.example.library.web.EntityTags;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
+import com.example.library.writebehind.LoanWriteBehind;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -12,24 +22,40 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/members")
 public class MemberController {
 
+    private static final String OWN_LOANS_FLUSHED = "With write-behind checkouts on, the member's loans still "
+            + "queued on this instance are written first. Loans acknowledged by another instance appear once it "
+            + "flushes them.";
+
+    @Autowired
+    private MemberService memberService;
+
     @Autowired
-    private MemberRepository memberRepository;
+    private JsonStreamWriter jsonStreamWriter;
 
     @Autowired
-    private LoanRepository loanRepository;
+    private BulkImportService bulkImportService;
 
+    // The member's write-behind loans queued on this instance are flushed before their loans are listed
+    @Autowired
+    private LoanWriteBehind loanWriteBehind;
 
-    @Operation(summary = "Get a list of all members")
+
+    @Operation(summary = "Get a page of members ordered by ID, starting after the given cursor")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found the members",
                     content = {@Content(mediaType = "application/json",
@@ -38,8 +64,35 @@ public class MemberController {
                     content = @Content)
     })
     @GetMapping
-    public List<Member> getAllMembers() {
-        return memberRepository.findAll();
+    public ResponseEntity<List<Member>> getAllMembers(@RequestParam(required = false) Long after,
+                                                      @RequestParam(required = false) Integer limit) {
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<Member> members = memberService.getMembers(KeysetPagination.after(after), KeysetPagination.limit(pageSize));
+        return KeysetPagination.page(members, pageSize, Member::getId);
+    }
+
+    @Operation(summary = "Stream all members as a JSON array read from a database cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Streaming the members",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Member.class))})
+    })
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamMembers() {
+        return jsonStreamWriter.stream(memberService::streamMembers);
+    }
+
+    @Operation(summary = "Check whether a username is free, ignoring letter case")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Checked the username",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = UsernameAvailability.class))}),
+            @ApiResponse(responseCode = "400", description = "Username shorter than 3 or longer than 50 characters",
+                    content = @Content)
+    })
+    @GetMapping("/username-available")
+    public ResponseEntity<UsernameAvailability> isUsernameAvailable(@RequestParam String username) {
+        return ResponseEntity.ok(new UsernameAvailability(username, memberService.isUsernameAvailable(username)));
     }
 
     @Operation(summary = "Get a member by ID")
@@ -52,32 +105,93 @@ public class MemberController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<Member> getMemberById(@PathVariable Long id) {
-        Member member = memberRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + id));
-        return ResponseEntity.ok(member);
+        return EntityTags.ok(memberService.getMember(id));
+    }
+
+    @Operation(summary = "Get a member's loans; expand=book,author adds book and author details from the same query",
+            description = OWN_LOANS_FLUSHED)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the member's loans",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MemberLoanView.class))}),
+            @ApiResponse(responseCode = "404", description = "Member not found",
+                    content = @Content)
+    })
+    @GetMapping("/{id}/loans")
+    public ResponseEntity<List<MemberLoanView>> getMemberLoans(@PathVariable Long id,
+                                                               @RequestParam(required = false) Set<String> expand) {
+        // Author details come from the lent book, so expanding the author also joins the book
+        boolean withAuthor = expand != null && expand.contains("author");
+        boolean withBook = withAuthor || (expand != null && expand.contains("book"));
+        loanWriteBehind.awaitFlushedForMember(id);
+        return ResponseEntity.ok(memberService.getMemberLoans(id, withBook, withAuthor));
+    }
+
+    @Operation(summary = "Get the IDs of a member's active loans and how many more they may borrow",
+            description = OWN_LOANS_FLUSHED)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the member's active loans",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = MemberActiveLoans.class))}),
+            @ApiResponse(responseCode = "404", description = "Member not found",
+                    content = @Content)
+    })
+    @GetMapping("/{id}/loans/active")
+    public ResponseEntity<MemberActiveLoans> getActiveLoans(@PathVariable Long id) {
+        loanWriteBehind.awaitFlushedForMember(id);
+        return ResponseEntity.ok(memberService.getActiveLoans(id));
+    }
+
+    @Operation(summary = "Get a page of a member's returned loans ordered by loan ID, optionally lent between from and to")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the member's loan history",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = LoanHistoryEntry.class))}),
+            @ApiResponse(responseCode = "404", description = "Member not found",
+                    content = @Content)
+    })
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<LoanHistoryEntry>> getMemberHistory(@PathVariable Long id,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) LocalDate from,
+                                                                   @RequestParam(required = false) LocalDate to) {
+        int pageSize = KeysetPagination.pageSize(limit);
+        List<LoanHistoryEntry> history = memberService.getMemberHistory(id, KeysetPagination.after(after), from, to, pageSize);
+        return KeysetPagination.immutablePage(history, pageSize, LoanHistoryEntry::loanId);
     }
 
     @Operation(summary = "Create a new member")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Member created",
                     content = {@Content(mediaType = "application/json",
-                            schema = @Schema(implementation = Member.class))})
+                            schema = @Schema(implementation = Member.class))}),
+            @ApiResponse(responseCode = "400", description = "Username taken (in any letter case) or invalid",
+                    content = @Content)
     })
     @PostMapping
     public ResponseEntity<?> createMember(@Valid @RequestBody Member member) {
-        Optional<Member> existingMember = memberRepository.findByUsername(member.getUsername());
-        if (existingMember.isPresent()) {
-            return ResponseEntity.badRequest().body("Username already exists.");
-        }
-
         try {
-            Member savedMember = memberRepository.save(member);
-            return ResponseEntity.ok(savedMember);
+            return EntityTags.ok(memberService.createMember(member));
+        } catch (UsernameTakenException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (DataIntegrityViolationException e) {
             return ResponseEntity.badRequest().body("Error saving member.");
         }
     }
 
+    @Operation(summary = "Bulk import members from an NDJSON or CSV stream")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished; rejected rows are reported by line number",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkImportResult.class))})
+    })
+    @PostMapping(value = "/bulk", consumes = {BulkFormat.NDJSON_VALUE, BulkFormat.CSV_VALUE})
+    public ResponseEntity<BulkImportResult> importMembers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                          InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkImportService.importMembers(body, contentType));
+    }
+
 
     @Operation(summary = "Update an existing member")
     @ApiResponses(value = {
@@ -85,19 +199,14 @@ public class MemberController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Member.class))}),
             @ApiResponse(responseCode = "404", description = "Member not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "412", description = "If-Match does not match the current ETag",
                     content = @Content)
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Member> updateMember(@PathVariable Long id, @RequestBody Member memberDetails) {
-        Member member = memberRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + id));
-        member.setUsername(memberDetails.getUsername());
-        member.setEmail(memberDetails.getEmail());
-        member.setAddress(memberDetails.getAddress());
-        member.setPhoneNumber(memberDetails.getPhoneNumber());
-        member.setLoanIds(memberDetails.getLoanIds());
-        Member updatedMember = memberRepository.save(member);
-        return ResponseEntity.ok(updatedMember);
+    public ResponseEntity<Member> updateMember(@PathVariable Long id, @RequestBody Member memberDetails,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return EntityTags.ok(memberService.updateMember(id, memberDetails, ifMatch));
     }
 
 
@@ -110,9 +219,7 @@ public class MemberController {
     })
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteMember(@PathVariable Long id) {
-        Member member = memberRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + id));
-        memberRepository.delete(member);
+        memberService.deleteMember(id);
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,74 @@
+package com.example.library.controller;
+
+import com.example.library.dto.CirculationStats;
+import com.example.library.stats.CirculationStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Circulation statistics. Responses come from a periodically refreshed snapshot; Last-Modified is the time
+ * it was taken.
+ */
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    @Autowired
+    private CirculationStatsService circulationStatsService;
+
+    @Operation(summary = "Get the most borrowed books")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the most borrowed books",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CirculationStats.BookCount.class))})
+    })
+    @GetMapping("/books")
+    public ResponseEntity<List<CirculationStats.BookCount>> getTopBooks(@RequestParam(required = false) Integer limit) {
+        CirculationStats stats = circulationStatsService.current();
+        return snapshot(stats, top(stats.books(), limit));
+    }
+
+    @Operation(summary = "Get loans per genre")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the loans per genre",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CirculationStats.GenreCount.class))})
+    })
+    @GetMapping("/genres")
+    public ResponseEntity<List<CirculationStats.GenreCount>> getGenres() {
+        CirculationStats stats = circulationStatsService.current();
+        return snapshot(stats, stats.genres());
+    }
+
+    @Operation(summary = "Get the most borrowed authors")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the most borrowed authors",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CirculationStats.AuthorCount.class))})
+    })
+    @GetMapping("/authors")
+    public ResponseEntity<List<CirculationStats.AuthorCount>> getTopAuthors(@RequestParam(required = false) Integer limit) {
+        CirculationStats stats = circulationStatsService.current();
+        return snapshot(stats, top(stats.authors(), limit));
+    }
+
+    private <T> List<T> top(List<T> rows, Integer limit) {
+        int size = limit == null || limit <= 0 ? circulationStatsService.topSize() : limit;
+        return rows.subList(0, Math.min(size, rows.size()));
+    }
+
+    private static <T> ResponseEntity<List<T>> snapshot(CirculationStats stats, List<T> body) {
+        return ResponseEntity.ok().lastModified(stats.asOf()).body(body);
+    }
+}
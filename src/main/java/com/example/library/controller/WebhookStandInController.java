@@ -0,0 +1,48 @@
+package com.example.library.controller;
+
+import com.example.library.events.ChangeEvent;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A local receiver for the webhook event sink, enabled with {@code library.events.webhook.stand-in=true}. It keeps
+ * the last {@value #KEPT_EVENTS} events it was sent, so the webhook can be tried without a downstream system.
+ */
+@RestController
+@RequestMapping("/stand-in/events")
+@ConditionalOnProperty(name = "library.events.webhook.stand-in", havingValue = "true")
+public class WebhookStandInController {
+
+    static final int KEPT_EVENTS = 1000;
+
+    private final Deque<ChangeEvent> received = new ArrayDeque<>();
+
+    @Operation(summary = "Receive a batch of change events, as a webhook consumer would")
+    @PostMapping
+    public synchronized ResponseEntity<Void> receive(@RequestBody List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            if (received.size() == KEPT_EVENTS) {
+                received.removeFirst();
+            }
+            received.addLast(event);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "Get the change events received so far, oldest first")
+    @GetMapping
+    public synchronized List<ChangeEvent> getReceived() {
+        return new ArrayList<>(received);
+    }
+}
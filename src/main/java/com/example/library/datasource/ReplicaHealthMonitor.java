@@ -0,0 +1,91 @@
+package com.example.library.datasource;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Periodically checks every replica of a {@link ReplicaRoutingDataSource} and marks it up or down.
+ *
+ * A replica is healthy when a connection can be taken and validated within the validation timeout and,
+ * if a maximum lag is set, when the lag query reports no more replication delay than that. The outcome
+ * is also published as a health component; the application stays UP with every
+ * replica down, since reads then go to the primary.
+ */
+public class ReplicaHealthMonitor implements HealthIndicator, AutoCloseable {
+
+    private final ReplicaRoutingDataSource dataSource;
+    private final Duration validationTimeout;
+    private final Duration maxLag;
+    private final String lagQuery;
+
+    public ReplicaHealthMonitor(ReplicaRoutingDataSource dataSource, Duration validationTimeout,
+                                Duration maxLag, String lagQuery) {
+        this.dataSource = dataSource;
+        this.validationTimeout = validationTimeout;
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+    }
+
+    public ReplicaRoutingDataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Scheduled(fixedDelayString = "${library.datasource.replica.health-check-interval:PT5S}")
+    public void checkReplicas() {
+        for (ReplicaRoutingDataSource.Replica replica : dataSource.getReplicas()) {
+            String problem = check(replica);
+            if (problem == null) {
+                replica.markUp();
+            } else {
+                replica.markDown(problem);
+            }
+        }
+    }
+
+    private String check(ReplicaRoutingDataSource.Replica replica) {
+        try (Connection connection = replica.dataSource().getConnection()) {
+            if (!connection.isValid((int) Math.max(1, validationTimeout.toSeconds()))) {
+                return "connection failed validation";
+            }
+            if (maxLag == null) {
+                return null;
+            }
+            Duration lag = lag(connection);
+            return lag.compareTo(maxLag) > 0 ? "replication lag " + lag + " exceeds " + maxLag : null;
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+    }
+
+    private Duration lag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout((int) Math.max(1, validationTimeout.toSeconds()));
+            try (ResultSet rs = statement.executeQuery(lagQuery)) {
+                double seconds = rs.next() ? rs.getDouble(1) : 0;
+                return Duration.ofMillis((long) (seconds * 1000));
+            }
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = Health.up();
+        for (ReplicaRoutingDataSource.Replica replica : dataSource.getReplicas()) {
+            health.withDetail(replica.name(), replica.isHealthy() ? "UP" : "DOWN: " + replica.downReason());
+        }
+        return health.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.library.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read-only side of the application's {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * it is only asked for connections whose transaction was declared {@code readOnly}, and hands them out
+ * round-robin from the replicas that are currently marked healthy.
+ *
+ * When no replica is healthy, when a replica refuses a connection, or while the current thread runs
+ * inside {@link #usePrimary()}, the connection comes from the primary instead. A replica that refuses a
+ * connection is marked down until {@link ReplicaHealthMonitor} finds it healthy again.
+ *
+ * A transaction served by a replica is marked as such until it completes (see {@link #isReadingFromReplica()}),
+ * because the rows it reads may be older than the primary's.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    // Transaction resource bound while the current transaction holds a replica connection
+    private static final Object READING_FROM_REPLICA = new Object();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * Sends every connection requested on this thread to the primary until the returned scope is closed,
+     * for requests that must read their own writes.
+     */
+    public static PrimaryScope usePrimary() {
+        boolean previous = PRIMARY_REQUIRED.get();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        return () -> PRIMARY_REQUIRED.set(previous);
+    }
+
+    /**
+     * Whether the current transaction reads from a replica. Replicas apply the primary's commits with a delay that
+     * is unbounded unless a max lag is configured, so what such a transaction reads must not be cached: it may be
+     * the row as it was before an update whose cache eviction has already happened.
+     */
+    public static boolean isReadingFromReplica() {
+        return TransactionSynchronizationManager.hasResource(READING_FROM_REPLICA);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(target -> target.getConnection(username, password));
+    }
+
+    private Connection connect(ConnectionSource source) throws SQLException {
+        if (!PRIMARY_REQUIRED.get()) {
+            Replica replica = nextHealthyReplica();
+            if (replica != null) {
+                try {
+                    Connection connection = source.open(replica.dataSource());
+                    markReadingFromReplica(replica);
+                    return connection;
+                } catch (SQLException e) {
+                    replica.markDown(e.getMessage());
+                }
+            }
+        }
+        return source.open(primary);
+    }
+
+    private static void markReadingFromReplica(Replica replica) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(READING_FROM_REPLICA)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(READING_FROM_REPLICA, replica.name());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(READING_FROM_REPLICA);
+            }
+        });
+    }
+
+    private Replica nextHealthyReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isHealthy()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // The pools are HikariDataSources, which are Closeable
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource() instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    @FunctionalInterface
+    public interface PrimaryScope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection open(DataSource target) throws SQLException;
+    }
+
+    /**
+     * A replica pool and the outcome of its last health check. Replicas start out down, so nothing is read
+     * from them before the first check has passed.
+     */
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile String downReason = "not checked yet";
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean isHealthy() {
+            return downReason == null;
+        }
+
+        public String downReason() {
+            return downReason;
+        }
+
+        public void markUp() {
+            if (downReason != null) {
+                log.info("Replica {} is healthy, routing read-only transactions to it", name);
+            }
+            downReason = null;
+        }
+
+        public void markDown(String reason) {
+            if (downReason == null) {
+                log.warn("Replica {} is down ({}), reading from the primary", name, reason);
+            }
+            downReason = reason;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.library.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Normalized filters for {@code GET /books/search}. Instances are used as cache keys, so blank
+ * strings are folded to {@code null} and paging is clamped before construction.
+ */
+public record BookSearchCriteria(String query, String genre, BigDecimal minPrice, BigDecimal maxPrice,
+                                 Long authorId, int page, int size) {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    public static BookSearchCriteria of(String query, String genre, BigDecimal minPrice, BigDecimal maxPrice,
+                                        Long authorId, Integer page, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_SIZE : Math.min(size, MAX_SIZE);
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        return new BookSearchCriteria(blankToNull(query), blankToNull(genre), minPrice, maxPrice,
+                authorId, pageNumber, pageSize);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.library.dto;
+
+import com.example.library.model.Book;
+import com.example.library.model.Snapshottable;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One page of search hits plus facet counts over every book matching the filters.
+ */
+public record BookSearchResult(List<Book> books, long total, int page, int size,
+                               List<FacetCount> genres, List<PriceBucket> prices)
+        implements Snapshottable<BookSearchResult> {
+
+    @Override
+    public BookSearchResult snapshot() {
+        return new BookSearchResult(books.stream().map(Book::snapshot).toList(), total, page, size,
+                List.copyOf(genres), List.copyOf(prices));
+    }
+
+    public record FacetCount(String value, long count) {
+    }
+
+    /**
+     * Books priced in {@code [from, to)}; {@code to} is {@code null} for the open-ended top bucket.
+     */
+    public record PriceBucket(BigDecimal from, BigDecimal to, long count) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A snapshot of how often books have been lent, overall and per genre and author, taken at {@code asOf}.
+ * Lists are ordered by loan count, highest first.
+ */
+public record CirculationStats(Instant asOf, List<BookCount> books, List<GenreCount> genres,
+                               List<AuthorCount> authors) {
+
+    public record BookCount(Long bookId, String title, Long authorId, long loans) {
+    }
+
+    public record GenreCount(String genre, long books, long loans) {
+    }
+
+    public record AuthorCount(Long authorId, String name, long books, long loans) {
+    }
+}
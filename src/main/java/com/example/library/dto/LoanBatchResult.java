@@ -0,0 +1,25 @@
+package com.example.library.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Outcome of a batch return or renewal, with one entry per requested loan ID in request order.
+ */
+public record LoanBatchResult(int succeeded, int failed, List<Item> items) {
+
+    public enum Status {
+        RETURNED, RENEWED, NOT_FOUND
+    }
+
+    /**
+     * {@code returnDate} is the new due date of a renewed loan and {@code null} otherwise.
+     */
+    public record Item(Long loanId, Status status, LocalDate returnDate) {
+    }
+
+    public static LoanBatchResult of(List<Item> items) {
+        int failed = (int) items.stream().filter(item -> item.status() == Status.NOT_FOUND).count();
+        return new LoanBatchResult(items.size() - failed, failed, List.copyOf(items));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.library.dto;
+
+import java.time.Instant;
+
+/**
+ * Outcome of comparing (or rebuilding) the in-memory active-loan index against the {@code loan} table.
+ * {@code missing} loans are in the table but not the index; {@code unexpected} ones are in the index only.
+ */
+public record LoanIndexReport(boolean consistent, long missing, long unexpected, int members, long loans,
+                              long memoryBytes, Instant checkedAt) {
+}
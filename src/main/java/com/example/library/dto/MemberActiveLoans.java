@@ -0,0 +1,9 @@
+package com.example.library.dto;
+
+import java.util.List;
+
+/**
+ * The ids of a member's loans that are out, and how many more the member may borrow.
+ */
+public record MemberActiveLoans(Long memberId, List<Long> loanIds, int remaining) {
+}
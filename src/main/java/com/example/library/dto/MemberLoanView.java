@@ -0,0 +1,39 @@
+package com.example.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A member's loan, optionally expanded with the lent book and its author, read in a single join
+ * query instead of one request per loan, book and author. Parts that were not expanded are omitted
+ * from the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MemberLoanView(Long id, Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate,
+                             BookSummary book, AuthorSummary author) {
+
+    public MemberLoanView(Long id, Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate) {
+        this(id, memberId, bookId, lendDate, returnDate, null, null);
+    }
+
+    public MemberLoanView(Long id, Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate,
+                          String title, String genre, BigDecimal price, Long authorId) {
+        this(id, memberId, bookId, lendDate, returnDate,
+                title == null ? null : new BookSummary(bookId, title, genre, price, authorId), null);
+    }
+
+    public MemberLoanView(Long id, Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate,
+                          String title, String genre, BigDecimal price, Long authorId, String authorName) {
+        this(id, memberId, bookId, lendDate, returnDate,
+                title == null ? null : new BookSummary(bookId, title, genre, price, authorId),
+                authorName == null ? null : new AuthorSummary(authorId, authorName));
+    }
+
+    public record BookSummary(Long id, String title, String genre, BigDecimal price, Long authorId) {
+    }
+
+    public record AuthorSummary(Long id, String name) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.dto;
+
+/**
+ * Whether a username can still be registered; names are compared regardless of letter case.
+ */
+public record UsernameAvailability(String username, boolean available) {
+}
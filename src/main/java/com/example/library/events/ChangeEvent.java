@@ -0,0 +1,23 @@
+package com.example.library.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+
+/**
+ * One committed change to a loan, book or member, as read from the outbox. {@code id} is the event's position
+ * in the stream and the cursor for {@code GET /events?since=}. {@code payload} is the entity as it was
+ * committed, or null for deletes; for a change in a book's copies on the shelf it is a {@link CopiesChanged}.
+ */
+public record ChangeEvent(long id, Aggregate aggregate, long aggregateId, Type type, Instant occurredAt,
+                          JsonNode payload) {
+
+    public enum Aggregate {
+        BOOK, MEMBER, LOAN
+    }
+
+    // COPIES_TAKEN and COPIES_RETURNED are book events whose payload is a CopiesChanged rather than the book
+    public enum Type {
+        CREATED, UPDATED, DELETED, RENEWED, RETURNED, COPIES_TAKEN, COPIES_RETURNED
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.library.events;
+
+import java.util.List;
+
+/**
+ * Application event carrying a batch of change events, published by the in-process sink.
+ */
+public record ChangeEventsPublished(List<ChangeEvent> events) {
+}
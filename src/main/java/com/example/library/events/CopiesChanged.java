@@ -0,0 +1,8 @@
+package com.example.library.events;
+
+/**
+ * Payload of a {@code COPIES_TAKEN} or {@code COPIES_RETURNED} book event: how many copies left or went back on the
+ * shelf. Returns never raise availability above the book's copies, so a returned copy may not add one.
+ */
+public record CopiesChanged(int copies) {
+}
@@ -0,0 +1,131 @@
+package com.example.library.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Serves {@code GET /events} consumers that wait for new events, either long-polling or on a server-sent
+ * event stream.
+ *
+ * Waiting consumers cost no query of their own: every {@code library.events.feed.poll-interval} one read after
+ * the oldest cursor among them is shared out, and nothing is read while nobody waits.
+ */
+@Component
+public class EventFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(EventFeed.class);
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Value("${library.events.feed.batch-size:1000}")
+    private int batchSize;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+
+    @Transactional(readOnly = true)
+    public List<ChangeEvent> read(long after, int limit) {
+        return outboxRepository.findSettledAfter(after, limit);
+    }
+
+    /**
+     * Hands the next events after {@code after} (at most {@code limit}) to {@code callback} once there are any.
+     * The returned handle cancels the wait.
+     */
+    public Runnable await(long after, int limit, Consumer<List<ChangeEvent>> callback) {
+        Waiter waiter = new Waiter(after, limit, callback);
+        waiters.add(waiter);
+        return () -> waiters.remove(waiter);
+    }
+
+    /**
+     * Sends every event after {@code after} to the emitter as it arrives, until the client disconnects or the
+     * emitter times out.
+     */
+    public void subscribe(long after, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, after);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+    }
+
+    @Scheduled(fixedDelayString = "${library.events.feed.poll-interval:PT0.5S}")
+    @Transactional(readOnly = true)
+    public void poll() {
+        if (waiters.isEmpty() && subscribers.isEmpty()) {
+            return;
+        }
+        long from = Long.MAX_VALUE;
+        for (Waiter waiter : waiters) {
+            from = Math.min(from, waiter.after);
+        }
+        for (Subscriber subscriber : subscribers) {
+            from = Math.min(from, subscriber.cursor);
+        }
+        List<ChangeEvent> events = outboxRepository.findSettledAfter(from, batchSize);
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Waiter waiter : waiters) {
+            List<ChangeEvent> next = after(events, waiter.after, waiter.limit);
+            if (!next.isEmpty() && waiters.remove(waiter)) {
+                waiter.callback.accept(next);
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            send(subscriber, after(events, subscriber.cursor, batchSize));
+        }
+    }
+
+    private void send(Subscriber subscriber, List<ChangeEvent> events) {
+        try {
+            for (ChangeEvent event : events) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.id()))
+                        .name(event.aggregate() + "_" + event.type())
+                        .data(event, MediaType.APPLICATION_JSON));
+                subscriber.cursor = event.id();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Event stream subscriber went away: {}", e.toString());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static List<ChangeEvent> after(List<ChangeEvent> events, long cursor, int limit) {
+        int start = 0;
+        while (start < events.size() && events.get(start).id() <= cursor) {
+            start++;
+        }
+        return events.subList(start, Math.min(events.size(), start + limit));
+    }
+
+    private record Waiter(long after, int limit, Consumer<List<ChangeEvent>> callback) {
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private volatile long cursor;
+
+        private Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
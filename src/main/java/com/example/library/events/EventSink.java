@@ -0,0 +1,18 @@
+package com.example.library.events;
+
+import java.util.List;
+
+/**
+ * Destination of the outbox, selected with {@code library.events.sink} ({@code in-process}, {@code file} or
+ * {@code webhook}). A batch is delivered at least once: if {@link #publish} throws, the same events are
+ * offered again on the next run.
+ */
+public interface EventSink {
+
+    /**
+     * Names this sink's position in the outbox, so switching sinks starts the new one from the beginning.
+     */
+    String name();
+
+    void publish(List<ChangeEvent> events) throws Exception;
+}
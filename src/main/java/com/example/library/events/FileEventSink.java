@@ -0,0 +1,48 @@
+package com.example.library.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends each event as one JSON line to {@code library.events.file.path}.
+ */
+@Component
+@ConditionalOnProperty(name = "library.events.sink", havingValue = "file")
+public class FileEventSink implements EventSink {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${library.events.file.path:events.ndjson}")
+    private Path path;
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> events) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ChangeEvent event : events) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.library.events;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Publishes each batch as a {@link ChangeEventsPublished} application event to listeners in this JVM.
+ */
+@Component
+@ConditionalOnProperty(name = "library.events.sink", havingValue = "in-process", matchIfMissing = true)
+public class InProcessEventSink implements EventSink {
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Override
+    public String name() {
+        return "in-process";
+    }
+
+    @Override
+    public void publish(List<ChangeEvent> events) {
+        applicationEventPublisher.publishEvent(new ChangeEventsPublished(events));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.library.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records change events in the transaction that makes the change (the transactional outbox), so an event is
+ * stored if and only if its change commits.
+ *
+ * Events recorded during a transaction are held until just before it commits. The persistence context is then
+ * flushed, so payloads carry the committed version and timestamps, and all of them are written with one JDBC
+ * batch, whatever their number. {@link OutboxPublisher} and {@code GET /events} read them from there.
+ */
+@Component
+public class Outbox {
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Records a change; {@code state} is serialized as it stands at commit, and may be null for deletes.
+     */
+    public void record(ChangeEvent.Aggregate aggregate, Long aggregateId, ChangeEvent.Type type, Object state) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Change events must be recorded in the transaction that makes the change");
+        }
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvents();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.changes.add(new PendingChange(aggregate, aggregateId, type, state));
+    }
+
+    private record PendingChange(ChangeEvent.Aggregate aggregate, Long aggregateId, ChangeEvent.Type type,
+                                 Object state) {
+    }
+
+    private final class PendingEvents implements TransactionSynchronization {
+
+        private final List<PendingChange> changes = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                entityManager.flush();
+            } catch (PersistenceException e) {
+                // Translate as the commit would have, so optimistic-lock failures still map to 409
+                DataAccessException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+                throw translated != null ? translated : e;
+            }
+            Instant now = Instant.now();
+            List<OutboxEntry> entries = new ArrayList<>(changes.size());
+            for (PendingChange change : changes) {
+                entries.add(new OutboxEntry(change.aggregate(), change.aggregateId(), change.type(),
+                        serialize(change.state()), now));
+            }
+            outboxRepository.append(entries);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(Outbox.this);
+        }
+
+        private String serialize(Object state) {
+            if (state == null) {
+                return null;
+            }
+            try {
+                return objectMapper.writeValueAsString(state);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot serialize change event payload", e);
+            }
+        }
+    }
+}
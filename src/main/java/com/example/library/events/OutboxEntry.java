@@ -0,0 +1,10 @@
+package com.example.library.events;
+
+import java.time.Instant;
+
+/**
+ * A change event about to be written to the outbox; {@code payload} is the entity's JSON, or null.
+ */
+public record OutboxEntry(ChangeEvent.Aggregate aggregate, long aggregateId, ChangeEvent.Type type, String payload,
+                          Instant occurredAt) {
+}
@@ -0,0 +1,108 @@
+package com.example.library.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Drains the outbox into the configured {@link EventSink} in batches of {@code library.events.publish.batch-size},
+ * every {@code library.events.publish.interval}.
+ *
+ * A run first takes the lease on the sink's offset for {@code library.events.publish.lease}, so with several
+ * instances only one delivers at a time. Each batch is then read, delivered and acknowledged (the offset moved past
+ * it, renewing the lease) without holding a transaction or a row lock across the delivery, which for a webhook can
+ * take as long as its timeout. A failed delivery leaves the offset where it was for the next run. The lease must
+ * outlast the slowest delivery: if it runs out, another instance may deliver the same batch again, and the late
+ * acknowledgement is dropped. Events are kept for {@code library.events.retention} so {@code GET /events}
+ * consumers can catch up, then deleted on {@code library.events.retention.cron}.
+ */
+@Component
+public class OutboxPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxPublisher.class);
+
+    // Identifies this instance as the holder of a sink's publishing lease
+    private final String owner = UUID.randomUUID().toString();
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private EventSink eventSink;
+
+    @Value("${library.events.publish.batch-size:500}")
+    private int batchSize;
+
+    @Value("${library.events.publish.lease:PT1M}")
+    private Duration lease;
+
+    @Value("${library.events.retention:P7D}")
+    private Duration retention;
+
+    @Scheduled(fixedDelayString = "${library.events.publish.interval:PT1S}")
+    public void scheduledPublish() {
+        try {
+            publishPending();
+        } catch (RuntimeException e) {
+            log.warn("Publishing change events to {} failed; retrying on the next run: {}", eventSink.name(), e.toString());
+        }
+    }
+
+    /**
+     * Publishes every settled event the sink has not yet acknowledged and returns how many were published, or 0 if
+     * another instance holds the lease. Runs on this instance take turns; the lease only keeps other instances out.
+     */
+    public synchronized int publishPending() {
+        String sink = eventSink.name();
+        OptionalLong claimed = outboxRepository.claimOffset(sink, owner, Instant.now().plus(lease));
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        try {
+            long offset = claimed.getAsLong();
+            int published = 0;
+            List<ChangeEvent> events;
+            do {
+                events = outboxRepository.findSettledAfter(offset, batchSize);
+                if (events.isEmpty()) {
+                    break;
+                }
+                deliver(events);
+                offset = events.get(events.size() - 1).id();
+                if (!outboxRepository.advanceOffset(sink, owner, offset, Instant.now().plus(lease))) {
+                    log.warn("Lost the {} publishing lease while delivering events up to {}; it may be delivered again",
+                            sink, offset);
+                    return published;
+                }
+                published += events.size();
+            } while (events.size() == batchSize);
+            return published;
+        } finally {
+            outboxRepository.releaseOffset(sink, owner);
+        }
+    }
+
+    private void deliver(List<ChangeEvent> events) {
+        try {
+            eventSink.publish(events);
+        } catch (Exception e) {
+            throw new IllegalStateException("Sink " + eventSink.name() + " rejected events " + events.get(0).id()
+                    + ".." + events.get(events.size() - 1).id(), e);
+        }
+    }
+
+    @Scheduled(cron = "${library.events.retention.cron:0 45 1 * * *}")
+    public void purgeExpired() {
+        int deleted = outboxRepository.deleteOccurredBefore(Instant.now().minus(retention));
+        log.info("Deleted {} change events older than {}", deleted, retention);
+    }
+}
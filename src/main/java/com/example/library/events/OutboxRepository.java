@@ -0,0 +1,171 @@
+package com.example.library.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes the change-event outbox ({@code outbox_event}) and the position each sink has published up to
+ * ({@code outbox_offset}).
+ *
+ * Event ids come from an identity column, so they are handed out in insert order but may become visible in a
+ * different commit order, and a rolled-back insert leaves a gap. A reader therefore only takes events up to the
+ * first gap this instance first saw less than {@code library.events.settle} ago: a recent gap may still be filled
+ * by a commit in flight, an older one is taken to be a rollback. Without this, a cursor could move past an event
+ * that commits a moment later and never deliver it. The age of the events around a gap says nothing about it, since
+ * the transaction filling it may have started long before they were written.
+ *
+ * A sink's offset row also holds a lease: the instance that holds it is the only one publishing to that sink, and
+ * no lock or transaction is kept open while it delivers.
+ */
+@Repository
+public class OutboxRepository {
+
+    private static final String INSERT = "INSERT INTO outbox_event (aggregate, aggregate_id, type, payload, occurred_at) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String FIND_AFTER = "SELECT id, aggregate, aggregate_id, type, payload, occurred_at "
+            + "FROM outbox_event WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String CLAIM_OFFSET = "UPDATE outbox_offset SET lease_owner = ?, lease_until = ? "
+            + "WHERE sink = ? AND (lease_owner IS NULL OR lease_owner = ? OR lease_until < ?)";
+    private static final String FIND_OFFSET = "SELECT last_event_id FROM outbox_offset WHERE sink = ?";
+    private static final String INSERT_OFFSET = "INSERT INTO outbox_offset (sink, last_event_id) VALUES (?, 0)";
+    private static final String ADVANCE_OFFSET = "UPDATE outbox_offset SET last_event_id = ?, lease_until = ? "
+            + "WHERE sink = ? AND lease_owner = ?";
+    private static final String RELEASE_OFFSET = "UPDATE outbox_offset SET lease_owner = NULL, lease_until = NULL "
+            + "WHERE sink = ? AND lease_owner = ?";
+    private static final String DELETE_BEFORE = "DELETE FROM outbox_event WHERE occurred_at < ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${library.events.settle:PT5S}")
+    private Duration settle;
+
+    @Value("${library.events.retention:P7D}")
+    private Duration retention;
+
+    // When this instance first saw each gap, keyed by the gap's first missing id; kept as long as events are
+    private final Map<Long, Instant> gapsFirstSeen = new ConcurrentHashMap<>();
+
+    private final RowMapper<ChangeEvent> eventMapper = (rs, rowNum) -> new ChangeEvent(
+            rs.getLong("id"),
+            ChangeEvent.Aggregate.valueOf(rs.getString("aggregate")),
+            rs.getLong("aggregate_id"),
+            ChangeEvent.Type.valueOf(rs.getString("type")),
+            rs.getObject("occurred_at", OffsetDateTime.class).toInstant(),
+            readPayload(rs.getString("payload")));
+
+    /**
+     * Inserts the events with one JDBC batch, in the caller's transaction.
+     */
+    public void append(List<OutboxEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.aggregate().name());
+            ps.setLong(2, entry.aggregateId());
+            ps.setString(3, entry.type().name());
+            ps.setString(4, entry.payload());
+            ps.setTimestamp(5, Timestamp.from(entry.occurredAt()));
+        });
+    }
+
+    /**
+     * Up to {@code limit} events after {@code after}, stopping at the first gap that may still be filled.
+     */
+    public List<ChangeEvent> findSettledAfter(long after, int limit) {
+        List<ChangeEvent> events = jdbcTemplate.query(FIND_AFTER, eventMapper, after, limit);
+        Instant now = Instant.now();
+        gapsFirstSeen.values().removeIf(seen -> seen.isBefore(now.minus(retention)));
+        return settled(events, after, now, settle, gapsFirstSeen);
+    }
+
+    /**
+     * The events up to the first gap in their ids that was first seen less than {@code settle} before {@code now}.
+     * Every gap among {@code events} is recorded in {@code gapsFirstSeen} the first time it is seen, so one wait
+     * covers all the gaps of a batch.
+     */
+    public static List<ChangeEvent> settled(List<ChangeEvent> events, long after, Instant now, Duration settle,
+                                            Map<Long, Instant> gapsFirstSeen) {
+        int end = events.size();
+        long previous = after;
+        for (int i = 0; i < events.size(); i++) {
+            long id = events.get(i).id();
+            if (id != previous + 1) {
+                Instant seen = gapsFirstSeen.computeIfAbsent(previous + 1, gap -> now);
+                if (end == events.size() && seen.isAfter(now.minus(settle))) {
+                    end = i;
+                }
+            }
+            previous = id;
+        }
+        return events.subList(0, end);
+    }
+
+    /**
+     * Takes or renews the lease on the sink's offset for {@code owner} until {@code leaseUntil}, creating the offset
+     * at 0 on first use. Returns the offset, or empty while another owner's lease has not yet expired.
+     */
+    public OptionalLong claimOffset(String sink, String owner, Instant leaseUntil) {
+        if (claim(sink, owner, leaseUntil) == 0) {
+            try {
+                jdbcTemplate.update(INSERT_OFFSET, sink);
+            } catch (DuplicateKeyException e) {
+                // Either the row was there and is leased to someone else, or another instance created it just now
+                return OptionalLong.empty();
+            }
+            if (claim(sink, owner, leaseUntil) == 0) {
+                return OptionalLong.empty();
+            }
+        }
+        return OptionalLong.of(jdbcTemplate.queryForObject(FIND_OFFSET, Long.class, sink));
+    }
+
+    /**
+     * Moves the sink's offset to {@code lastEventId} and extends the lease; returns false, changing nothing, if
+     * {@code owner} no longer holds the lease.
+     */
+    public boolean advanceOffset(String sink, String owner, long lastEventId, Instant leaseUntil) {
+        return jdbcTemplate.update(ADVANCE_OFFSET, lastEventId, Timestamp.from(leaseUntil), sink, owner) == 1;
+    }
+
+    public void releaseOffset(String sink, String owner) {
+        jdbcTemplate.update(RELEASE_OFFSET, sink, owner);
+    }
+
+    public int deleteOccurredBefore(Instant cutoff) {
+        return jdbcTemplate.update(DELETE_BEFORE, Timestamp.from(cutoff));
+    }
+
+    private int claim(String sink, String owner, Instant leaseUntil) {
+        return jdbcTemplate.update(CLAIM_OFFSET, owner, Timestamp.from(leaseUntil), sink, owner,
+                Timestamp.from(Instant.now()));
+    }
+
+    private JsonNode readPayload(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox payload", e);
+        }
+    }
+}
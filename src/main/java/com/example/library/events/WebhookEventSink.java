@@ -0,0 +1,45 @@
+package com.example.library.events;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * POSTs each batch as a JSON array to {@code library.events.webhook.url}; any non-2xx answer fails the batch,
+ * which is then retried. {@code WebhookStandInController} is a local receiver for trying it out.
+ */
+@Component
+@ConditionalOnProperty(name = "library.events.sink", havingValue = "webhook")
+public class WebhookEventSink implements EventSink {
+
+    private final RestClient restClient;
+
+    public WebhookEventSink(RestClient.Builder builder,
+                            @Value("${library.events.webhook.url}") String url,
+                            @Value("${library.events.webhook.timeout:PT10S}") Duration timeout) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = builder.baseUrl(url).requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void publish(List<ChangeEvent> events) {
+        restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(events)
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
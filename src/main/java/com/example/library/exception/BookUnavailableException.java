@@ -0,0 +1,11 @@
+package com.example.library.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class BookUnavailableException extends RuntimeException {
+    public BookUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.library.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class LoanLimitExceededException extends RuntimeException {
+    public LoanLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.library.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class UsernameTakenException extends RuntimeException {
+    public UsernameTakenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.library.history;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A returned loan as kept in {@code loan_history}; {@code returnDate} is the date it was due and
+ * {@code returnedAt} when it actually came back.
+ */
+public record LoanHistoryEntry(Long loanId, Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate,
+                               Instant returnedAt) {
+}
@@ -0,0 +1,120 @@
+package com.example.library.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of {@code loan_history} in place on PostgreSQL.
+ *
+ * At startup and on {@code library.history.partitions.cron} it creates the partitions for the current month
+ * and the next {@code library.history.partitions.months-ahead} months, so returns never land in the default
+ * partition. With {@code library.history.partitions.retention-months} above zero, partitions whose whole
+ * month is older than that are dropped, which removes old history without a large DELETE. Does nothing on
+ * databases where the table is not partitioned.
+ */
+@Component
+public class LoanHistoryPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanHistoryPartitions.class);
+
+    private static final String PREFIX = "loan_history_";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+    private static final Pattern NAME = Pattern.compile(PREFIX + "y(\\d{4})m(\\d{2})");
+
+    private static final String PARTITIONS = "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+            + "WHERE p.relname = 'loan_history'";
+    private static final String IS_PARTITIONED = "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table t "
+            + "JOIN pg_class c ON c.oid = t.partrelid WHERE c.relname = 'loan_history')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${library.history.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${library.history.partitions.retention-months:0}")
+    private int retentionMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${library.history.partitions.cron:0 30 1 * * *}")
+    public void maintain() {
+        if (!isPartitioned()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(PARTITIONS, String.class));
+        for (String statement : plan(YearMonth.now(), existing, monthsAhead, retentionMonths)) {
+            try {
+                jdbcTemplate.execute(statement);
+                log.info("Loan history partitions: {}", statement);
+            } catch (DataAccessException e) {
+                // Typically rows for that month already sit in the default partition; they stay queryable there
+                log.warn("Loan history partitions: {} failed: {}", statement, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * The DDL that brings the existing partitions in line with the window around {@code current}.
+     */
+    public static List<String> plan(YearMonth current, Collection<String> existing, int monthsAhead, int retentionMonths) {
+        List<String> statements = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            if (!existing.contains(name)) {
+                statements.add("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF loan_history FOR VALUES FROM ('"
+                        + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            }
+        }
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            existing.stream()
+                    .filter(name -> {
+                        YearMonth month = monthOf(name);
+                        return month != null && month.isBefore(oldestKept);
+                    })
+                    .sorted()
+                    .forEach(name -> statements.add("DROP TABLE IF EXISTS " + name));
+        }
+        return statements;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PREFIX + SUFFIX.format(month);
+    }
+
+    public static YearMonth monthOf(String partitionName) {
+        Matcher matcher = NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    private boolean isPartitioned() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product)
+                && Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED, Boolean.class));
+    }
+}
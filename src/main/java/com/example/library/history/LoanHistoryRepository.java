@@ -0,0 +1,73 @@
+package com.example.library.history;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes {@code loan_history}, the archive of returned loans.
+ *
+ * On PostgreSQL the table is partitioned by lend-date month (see schema-postgresql.sql and
+ * {@link LoanHistoryPartitions}), which Hibernate cannot create, so it is not a JPA entity and is accessed
+ * with plain SQL inside the caller's transaction.
+ */
+@Repository
+public class LoanHistoryRepository {
+
+    private static final String ARCHIVE =
+            "INSERT INTO loan_history (id, member_id, book_id, lend_date, return_date, returned_at) "
+                    + "SELECT id, member_id, book_id, COALESCE(lend_date, CURRENT_DATE), return_date, CURRENT_TIMESTAMP "
+                    + "FROM loan WHERE id IN (:ids)";
+
+    private static final RowMapper<LoanHistoryEntry> ENTRY = (rs, rowNum) -> new LoanHistoryEntry(
+            rs.getLong("id"),
+            rs.getLong("member_id"),
+            rs.getLong("book_id"),
+            rs.getObject("lend_date", LocalDate.class),
+            rs.getObject("return_date", LocalDate.class),
+            rs.getObject("returned_at", OffsetDateTime.class).toInstant());
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Copies the given loans into the history in one statement; the caller deletes them afterwards in the
+     * same transaction.
+     */
+    public int archive(Collection<Long> loanIds) {
+        if (loanIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(ARCHIVE, new MapSqlParameterSource("ids", loanIds));
+    }
+
+    /**
+     * A page of a member's returned loans ordered by loan id. {@code from} and {@code to} bound the lend date
+     * (inclusive, exclusive) and let PostgreSQL skip the partitions outside that range.
+     */
+    public List<LoanHistoryEntry> findByMemberId(Long memberId, long after, LocalDate from, LocalDate to, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, member_id, book_id, lend_date, return_date, returned_at "
+                + "FROM loan_history WHERE member_id = :memberId AND id > :after");
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("memberId", memberId)
+                .addValue("after", after)
+                .addValue("limit", limit);
+        if (from != null) {
+            sql.append(" AND lend_date >= :from");
+            params.addValue("from", from);
+        }
+        if (to != null) {
+            sql.append(" AND lend_date < :to");
+            params.addValue("to", to);
+        }
+        sql.append(" ORDER BY id LIMIT :limit");
+        return jdbcTemplate.query(sql.toString(), params, ENTRY);
+    }
+}
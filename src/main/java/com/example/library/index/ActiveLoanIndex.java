@@ -0,0 +1,308 @@
+package com.example.library.index;
+
+import com.example.library.dto.LoanIndexReport;
+import com.example.library.writebehind.JournaledLoan;
+import com.example.library.writebehind.LoanWriteBehind;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory index of every member's active loans, so the checkout limit and "my loans" lookups need no query.
+ *
+ * The index is loaded from the {@code loan} table when the application is ready and then follows the loan writes
+ * of this instance: a loan opened in a transaction is added just before it commits, while the member's row lock
+ * is still held, and taken out again if the commit fails; a closed loan is removed after its transaction commits.
+ * The index can therefore briefly over-count a member, never under-count one, which keeps the limit check safe.
+ *
+ * Lookups are optimistic reads that fall back to a read lock, and answer empty (callers then query the database)
+ * until the first load has finished or while a rebuild holds the lock. Writes by other instances are not seen, so
+ * the index is off by default and only belongs in deployments where a single instance writes loans
+ * ({@code library.loans.index.enabled=true}); with it off, callers count in the database.
+ */
+@Component
+public class ActiveLoanIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveLoanIndex.class);
+
+    private static final String LOAD = "SELECT member_id, id FROM loan";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LoanWriteBehind loanWriteBehind;
+
+    @Value("${library.loans.index.enabled:false}")
+    private boolean enabled;
+
+    private final StampedLock lock = new StampedLock();
+    private MemberLoanTable table = new MemberLoanTable();
+    // Loans added by transactions that have not completed yet; carried over when the index is rebuilt
+    private final Set<IndexedLoan> uncommitted = new HashSet<>();
+    private volatile boolean ready;
+
+    @PostConstruct
+    void registerMetrics() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("library.loans.index.memory", this, index -> index.table.memoryBytes())
+                .baseUnit("bytes")
+                .description("Estimated heap used by the active-loan index")
+                .register(meterRegistry);
+        Gauge.builder("library.loans.index.members", this, index -> index.table.members())
+                .description("Members with at least one active loan in the index")
+                .register(meterRegistry);
+        Gauge.builder("library.loans.index.loans", this, index -> index.table.loans())
+                .description("Active loans in the index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            LoanIndexReport report = rebuild();
+            log.info("Loaded {} active loans of {} members into the loan index ({} bytes)",
+                    report.loans(), report.members(), report.memoryBytes());
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * The member's number of active loans, or empty if the index cannot answer right now.
+     */
+    public OptionalInt countActive(long memberId) {
+        long[] loans = read(memberId);
+        return loans == null ? OptionalInt.empty() : OptionalInt.of(loans.length);
+    }
+
+    /**
+     * The ids of the member's active loans in ascending order, or empty if the index cannot answer right now.
+     */
+    public Optional<List<Long>> activeLoans(long memberId) {
+        long[] loans = read(memberId);
+        if (loans == null) {
+            return Optional.empty();
+        }
+        List<Long> ids = new ArrayList<>(loans.length);
+        for (long id : loans) {
+            ids.add(id);
+        }
+        return Optional.of(ids);
+    }
+
+    /**
+     * Records a loan checked out in the current transaction; it is indexed when the transaction commits.
+     */
+    public void loanOpened(Long memberId, Long loanId) {
+        pending().opened.add(new IndexedLoan(memberId, loanId));
+    }
+
+    /**
+     * Records a loan returned (or moved off the member) in the current transaction; it leaves the index once the
+     * transaction has committed.
+     */
+    public void loanClosed(Long memberId, Long loanId) {
+        pending().closed.add(new IndexedLoan(memberId, loanId));
+    }
+
+    /**
+     * Reloads the index from the {@code loan} table and reports how far the previous contents had drifted.
+     * Loan writes wait for the reload; lookups meanwhile fall back to the database.
+     */
+    public LoanIndexReport rebuild() {
+        requireEnabled();
+        long stamp = lock.writeLock();
+        try {
+            MemberLoanTable loaded = withUncommitted(scan());
+            LoanIndexReport report = compare(loaded);
+            table = loaded;
+            ready = true;
+            return new LoanIndexReport(report.consistent(), report.missing(), report.unexpected(), loaded.members(),
+                    loaded.loans(), loaded.memoryBytes(), report.checkedAt());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Compares the index with the {@code loan} table without changing it. The table is scanned before the lock is
+     * taken, so loan writes carry on during the scan; loans opened or returned meanwhile can show up as unexpected
+     * or missing.
+     */
+    public LoanIndexReport check() {
+        requireEnabled();
+        MemberLoanTable scanned = scan();
+        long stamp = lock.readLock();
+        try {
+            return compare(withUncommitted(scanned));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long[] read(long memberId) {
+        if (!isReady()) {
+            return null;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long[] loans = table.get(memberId);
+            if (lock.validate(stamp)) {
+                return loans;
+            }
+        }
+        stamp = lock.tryReadLock();
+        if (stamp == 0) {
+            return null;
+        }
+        try {
+            return table.get(memberId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Write-behind loans are taken before the table is read: one flushed meanwhile is then in either
+    private MemberLoanTable scan() {
+        List<JournaledLoan> queued = List.copyOf(loanWriteBehind.pendingLoans());
+        List<long[]> rows = jdbcTemplate.query(LOAD, (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+        MemberLoanTable loaded = new MemberLoanTable(rows.size() + queued.size());
+        for (long[] row : rows) {
+            loaded.add(row[0], row[1]);
+        }
+        for (JournaledLoan loan : queued) {
+            loaded.add(loan.memberId(), loan.id());
+        }
+        return loaded;
+    }
+
+    // Called with the lock held; adds the loans of transactions that are still committing, which the scan missed
+    private MemberLoanTable withUncommitted(MemberLoanTable loaded) {
+        for (IndexedLoan loan : uncommitted) {
+            loaded.add(loan.memberId(), loan.loanId());
+        }
+        return loaded;
+    }
+
+    private LoanIndexReport compare(MemberLoanTable loaded) {
+        long[] missing = new long[1];
+        long[] unexpected = new long[1];
+        loaded.forEach((memberId, loanId) -> {
+            if (!table.contains(memberId, loanId)) {
+                missing[0]++;
+            }
+        });
+        table.forEach((memberId, loanId) -> {
+            if (!loaded.contains(memberId, loanId)) {
+                unexpected[0]++;
+            }
+        });
+        return new LoanIndexReport(missing[0] == 0 && unexpected[0] == 0, missing[0], unexpected[0],
+                table.members(), table.loans(), table.memoryBytes(), Instant.now());
+    }
+
+    private void apply(List<IndexedLoan> opened, List<IndexedLoan> closed, boolean committed) {
+        long stamp = lock.writeLock();
+        try {
+            for (IndexedLoan loan : opened) {
+                uncommitted.remove(loan);
+                if (!committed) {
+                    table.remove(loan.memberId(), loan.loanId());
+                }
+            }
+            if (committed) {
+                for (IndexedLoan loan : closed) {
+                    table.remove(loan.memberId(), loan.loanId());
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void addUncommitted(List<IndexedLoan> opened) {
+        long stamp = lock.writeLock();
+        try {
+            for (IndexedLoan loan : opened) {
+                uncommitted.add(loan);
+                table.add(loan.memberId(), loan.loanId());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private PendingLoans pending() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Loan index changes must be recorded in the transaction that makes them");
+        }
+        PendingLoans pending = (PendingLoans) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingLoans();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The loan index is disabled");
+        }
+    }
+
+    private record IndexedLoan(long memberId, long loanId) {
+    }
+
+    private final class PendingLoans implements TransactionSynchronization {
+
+        private final List<IndexedLoan> opened = new ArrayList<>();
+        private final List<IndexedLoan> closed = new ArrayList<>();
+        private boolean added;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (enabled && !opened.isEmpty()) {
+                addUncommitted(opened);
+                added = true;
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ActiveLoanIndex.this);
+            if (enabled) {
+                apply(added ? opened : List.of(), closed, status == STATUS_COMMITTED);
+            }
+        }
+    }
+}
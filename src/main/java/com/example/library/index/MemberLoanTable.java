@@ -0,0 +1,236 @@
+package com.example.library.index;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from member id to the ids of that member's active loans, on primitive arrays.
+ *
+ * Keys live in one {@code long[]} probed linearly (0 marks a free slot; ids start at 1), and each member's loans
+ * are a small sorted {@code long[]} that is replaced, never modified, on every change. Removal shifts the rest of
+ * the probe run back instead of leaving tombstones, and the table doubles once half full, so a lookup is a hash,
+ * a short probe and no boxing. Not thread-safe: {@link ActiveLoanIndex} guards it with a lock, and
+ * {@link #get(long)} and {@link #count(long)} never throw or loop forever when raced by a writer, so they
+ * can be used for optimistic reads that are validated afterwards.
+ */
+public final class MemberLoanTable {
+
+    static final long[] NONE = new long[0];
+    private static final int MIN_CAPACITY = 16;
+    // Approximate object sizes with compressed references: array header, and the two slot arrays per slot
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long SLOT_BYTES = Long.BYTES + Integer.BYTES;
+
+    private long[] keys;
+    private long[][] loans;
+    private int members;
+    private long loanCount;
+    private long loanArrayBytes;
+
+    public MemberLoanTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public MemberLoanTable(int expectedMembers) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedMembers * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        loans = new long[capacity][];
+    }
+
+    /**
+     * The member's loan ids in ascending order, or an empty array; the array is shared and must not be modified.
+     */
+    public long[] get(long memberId) {
+        long[] keys = this.keys;
+        long[][] loans = this.loans;
+        if (keys.length != loans.length) {
+            return NONE;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(memberId, mask);
+        for (int probes = 0; probes < keys.length; probes++) {
+            long key = keys[slot];
+            if (key == memberId) {
+                long[] ids = loans[slot];
+                return ids == null ? NONE : ids;
+            }
+            if (key == 0) {
+                return NONE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    public int count(long memberId) {
+        return get(memberId).length;
+    }
+
+    public boolean contains(long memberId, long loanId) {
+        return Arrays.binarySearch(get(memberId), loanId) >= 0;
+    }
+
+    /**
+     * Adds a loan to the member; returns false if it was already there.
+     */
+    public boolean add(long memberId, long loanId) {
+        requireId(memberId);
+        int mask = keys.length - 1;
+        int slot = slot(memberId, mask);
+        while (keys[slot] != 0 && keys[slot] != memberId) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = memberId;
+            loans[slot] = new long[]{loanId};
+            members++;
+            loanCount++;
+            loanArrayBytes += arrayBytes(1);
+            if (members * 2 > keys.length) {
+                resize(keys.length << 1);
+            }
+            return true;
+        }
+        long[] current = loans[slot];
+        int at = Arrays.binarySearch(current, loanId);
+        if (at >= 0) {
+            return false;
+        }
+        int insert = -at - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insert);
+        updated[insert] = loanId;
+        System.arraycopy(current, insert, updated, insert + 1, current.length - insert);
+        loans[slot] = updated;
+        loanCount++;
+        loanArrayBytes += arrayBytes(updated.length) - arrayBytes(current.length);
+        return true;
+    }
+
+    /**
+     * Removes a loan from the member, and the member once it has none left; returns false if it was not there.
+     */
+    public boolean remove(long memberId, long loanId) {
+        int mask = keys.length - 1;
+        int slot = slot(memberId, mask);
+        while (keys[slot] != memberId) {
+            if (keys[slot] == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long[] current = loans[slot];
+        int at = Arrays.binarySearch(current, loanId);
+        if (at < 0) {
+            return false;
+        }
+        loanCount--;
+        if (current.length > 1) {
+            long[] updated = new long[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, at);
+            System.arraycopy(current, at + 1, updated, at, updated.length - at);
+            loans[slot] = updated;
+            loanArrayBytes += arrayBytes(updated.length) - arrayBytes(current.length);
+            return true;
+        }
+        loanArrayBytes -= arrayBytes(1);
+        members--;
+        deleteSlot(slot, mask);
+        return true;
+    }
+
+    public int members() {
+        return members;
+    }
+
+    public long loans() {
+        return loanCount;
+    }
+
+    /**
+     * Estimated heap used by the table: both slot arrays plus every member's loan array.
+     */
+    public long memoryBytes() {
+        return 2 * ARRAY_HEADER_BYTES + keys.length * SLOT_BYTES + loanArrayBytes;
+    }
+
+    public void forEach(LoanConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                for (long loanId : loans[slot]) {
+                    consumer.accept(keys[slot], loanId);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface LoanConsumer {
+        void accept(long memberId, long loanId);
+    }
+
+    // Backward-shift deletion: move later entries of the probe run into the gap so lookups never stop early
+    private void deleteSlot(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = slot(key, mask);
+            // The entry can fill the gap unless its home lies cyclically in (gap, slot]
+            boolean homeBetween = gap <= slot ? (gap < home && home <= slot) : (gap < home || home <= slot);
+            if (!homeBetween) {
+                keys[gap] = key;
+                loans[gap] = loans[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        loans[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[][] oldLoans = loans;
+        long[] newKeys = new long[capacity];
+        long[][] newLoans = new long[capacity][];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (newKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = oldKeys[i];
+                newLoans[slot] = oldLoans[i];
+            }
+        }
+        keys = newKeys;
+        loans = newLoans;
+    }
+
+    private static int slot(long key, int mask) {
+        // Murmur3 finalizer: sequential ids would otherwise fill one contiguous run
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private static long arrayBytes(int length) {
+        return ARRAY_HEADER_BYTES + (long) length * Long.BYTES;
+    }
+
+    private static void requireId(long memberId) {
+        if (memberId == 0) {
+            throw new IllegalArgumentException("Member id 0 is reserved for free slots");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.library.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Negative cache of member usernames, so an availability check for a name nobody has needs no query.
+ *
+ * A {@link UsernameBloomFilter} is loaded from the {@code member} table when the application is ready and rebuilt
+ * every {@code library.members.username-filter.rebuild-interval}, which also drops the names of deleted or renamed
+ * members. In between, names written by this instance are added once their transaction commits. A name the filter
+ * has never seen is reported free without touching the database; anything else is checked with one indexed query.
+ *
+ * The filter only answers availability checks. Registration itself relies on the unique index on
+ * {@code lower(username)}, so a name taken on another instance since the last rebuild can be reported free, but
+ * never registered twice.
+ */
+@Component
+public class TakenUsernames {
+
+    private static final Logger log = LoggerFactory.getLogger(TakenUsernames.class);
+
+    private static final String COUNT = "SELECT count(*) FROM member";
+    private static final String LOAD = "SELECT username FROM member";
+    private static final long MIN_CAPACITY = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.members.username-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${library.members.username-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile UsernameBloomFilter filter;
+    // The filter being loaded by a rebuild, which also receives the names committed meanwhile
+    private volatile UsernameBloomFilter loading;
+    private final AtomicLong names = new AtomicLong();
+    private Counter answeredFree;
+    private Counter checked;
+
+    @PostConstruct
+    void registerMetrics() {
+        if (!enabled) {
+            return;
+        }
+        answeredFree = Counter.builder("library.members.username-filter.lookups").tag("result", "free")
+                .description("Username availability checks answered by the filter without a query")
+                .register(meterRegistry);
+        checked = Counter.builder("library.members.username-filter.lookups").tag("result", "checked")
+                .description("Username availability checks the filter passed on to the database")
+                .register(meterRegistry);
+        Gauge.builder("library.members.username-filter.memory", this,
+                        usernames -> usernames.filter == null ? 0 : usernames.filter.memoryBytes())
+                .baseUnit("bytes")
+                .description("Heap used by the username filter")
+                .register(meterRegistry);
+        Gauge.builder("library.members.username-filter.names", names, AtomicLong::get)
+                .description("Usernames in the filter: those loaded plus those added since")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.members.username-filter.rebuild-interval:PT1H}",
+            initialDelayString = "${library.members.username-filter.rebuild-interval:PT1H}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            long members = jdbcTemplate.queryForObject(COUNT, Long.class);
+            // Room for the names registered until the next rebuild without the false-positive rate drifting up
+            UsernameBloomFilter next = new UsernameBloomFilter(Math.max(MIN_CAPACITY, members * 2), falsePositiveRate);
+            loading = next;
+            AtomicLong loaded = new AtomicLong();
+            jdbcTemplate.query(LOAD, (RowCallbackHandler) rs -> {
+                next.add(rs.getString(1));
+                loaded.incrementAndGet();
+            });
+            filter = next;
+            loading = null;
+            names.set(loaded.get());
+            log.debug("Loaded {} usernames into the username filter ({} bytes)", loaded.get(), next.memoryBytes());
+        }
+    }
+
+    /**
+     * True only if no member has had this name (in any letter case) since the filter was loaded; false means the
+     * database has to be asked.
+     */
+    public boolean isDefinitelyFree(String username) {
+        UsernameBloomFilter current = filter;
+        if (!enabled || current == null || current.mightContain(username)) {
+            if (checked != null) {
+                checked.increment();
+            }
+            return false;
+        }
+        answeredFree.increment();
+        return true;
+    }
+
+    /**
+     * Records a username written in the current transaction; it is added when the transaction commits.
+     */
+    public void add(String username) {
+        if (!enabled || username == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addCommitted(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addCommitted(username);
+            }
+        });
+    }
+
+    // A name committed before a rebuild set loading is read by its load, one committed after it is added here.
+    // loading is read first: once a rebuild has cleared it, filter already holds the rebuilt filter
+    private void addCommitted(String username) {
+        UsernameBloomFilter next = loading;
+        if (next != null) {
+            next.add(username);
+        }
+        UsernameBloomFilter current = filter;
+        if (current != null && current != next) {
+            current.add(username);
+        }
+        names.incrementAndGet();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.library.index;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over lower-cased usernames: {@link #mightContain(String)} returning false means the name was never
+ * added, true means it probably was.
+ *
+ * The bit array is sized for an expected number of names and a false-positive rate, and each name sets the bits
+ * picked by double hashing one 64-bit hash. Bits are set with compare-and-set, so adds and lookups from any number
+ * of threads need no lock. Names cannot be removed; {@link TakenUsernames} rebuilds the filter instead.
+ */
+public final class UsernameBloomFilter {
+
+    private static final int MIN_BITS = 1024;
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final long capacity;
+
+    public UsernameBloomFilter(long expectedNames, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+        capacity = Math.max(expectedNames, 1);
+        long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = (Math.max(MIN_BITS, optimalBits) + 63) >>> 6;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Filter for " + expectedNames + " names is too large");
+        }
+        this.words = new AtomicLongArray((int) words);
+        this.bits = words << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) optimalBits / capacity * Math.log(2)));
+    }
+
+    /**
+     * The key a username is filtered (and uniquely indexed) by.
+     */
+    public static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    public void add(String username) {
+        long hash = hash(key(username));
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(String username) {
+        long hash = hash(key(username));
+        long step = step(hash);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * step, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of names the filter was sized for; past it the false-positive rate climbs above the target.
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long memoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    // FNV-1a over the UTF-16 chars, finished with the murmur3 mixer so that every bit depends on every char
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // An odd step visits different bits for each of the hashes even when the table size is a power of two
+    private static long step(long hash) {
+        return mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe1a85ec3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
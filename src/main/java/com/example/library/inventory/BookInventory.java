@@ -0,0 +1,117 @@
+package com.example.library.inventory;
+
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.CopiesChanged;
+import com.example.library.events.Outbox;
+import com.example.library.model.Loan;
+import com.example.library.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks how many copies of each book are on the shelf.
+ *
+ * Every change is one conditional UPDATE on the book row, so concurrent checkouts of the same title never
+ * read-modify-write the counter and need no lock beyond the row lock the UPDATE itself takes. Callers
+ * should reserve last in their transaction so that lock is released almost immediately by the commit.
+ * The cached book is evicted after the transaction commits (the cache manager is transaction-aware, see
+ * {@code CacheManagerPostProcessor}), so a concurrent read of the primary cannot re-cache the old count. A read
+ * served by a lagging replica could still see it, which is why {@code BookRepository.findById} does not cache rows
+ * read from a replica.
+ *
+ * Copies taken or put back are recorded as {@code COPIES_TAKEN} and {@code COPIES_RETURNED} book events, which
+ * join the transaction's outbox batch rather than costing a statement each. A change in the number of copies is
+ * left to the caller, which records the updated book.
+ */
+@Component
+public class BookInventory {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Takes one copy off the shelf; returns false if the book does not exist or no copy is available.
+     */
+    public boolean reserveCopy(Long bookId) {
+        return changed(bookId, bookRepository.decrementAvailableCopies(bookId), ChangeEvent.Type.COPIES_TAKEN, 1);
+    }
+
+    /**
+     * Puts one copy back on the shelf; never raises availability above the number of copies.
+     */
+    public void releaseCopy(Long bookId) {
+        changed(bookId, bookRepository.incrementAvailableCopies(bookId), ChangeEvent.Type.COPIES_RETURNED, 1);
+    }
+
+    /**
+     * Puts back a copy taken for a loan that was never made, and takes that loan out of the book's loan count.
+     */
+    public void cancelReservation(Long bookId) {
+        changed(bookId, bookRepository.cancelReservation(bookId), ChangeEvent.Type.COPIES_RETURNED, 1);
+    }
+
+    /**
+     * Puts back the copies lent by the given loans in one UPDATE, however many books they cover. Must run
+     * before the loans are deleted.
+     */
+    public void releaseCopies(Collection<Loan> loans) {
+        if (loans.isEmpty()) {
+            return;
+        }
+        List<Long> loanIds = loans.stream().map(Loan::getId).toList();
+        if (bookRepository.incrementAvailableCopiesForLoans(loanIds) == 0) {
+            return;
+        }
+        Map<Long, Integer> copies = new TreeMap<>();
+        for (Loan loan : loans) {
+            copies.merge(loan.getBookId(), 1, Integer::sum);
+        }
+        copies.forEach((bookId, returned) -> {
+            evict(bookId);
+            record(bookId, ChangeEvent.Type.COPIES_RETURNED, returned);
+        });
+    }
+
+    /**
+     * Changes the number of copies, adjusting availability by the same amount; returns false if the book
+     * does not exist or more copies are on loan than the new total.
+     */
+    public boolean updateCopies(Long bookId, int copies) {
+        return changed(bookId, bookRepository.updateCopies(bookId, copies), null, 0);
+    }
+
+    private boolean changed(Long bookId, int rows, ChangeEvent.Type type, int copies) {
+        if (rows == 0) {
+            return false;
+        }
+        evict(bookId);
+        if (type != null) {
+            record(bookId, type, copies);
+        }
+        return true;
+    }
+
+    private void record(Long bookId, ChangeEvent.Type type, int copies) {
+        outbox.record(ChangeEvent.Aggregate.BOOK, bookId, type, new CopiesChanged(copies));
+    }
+
+    private void evict(Long bookId) {
+        Cache books = cacheManager.getCache("books");
+        if (books != null) {
+            books.evict(bookId);
+        }
+    }
+}
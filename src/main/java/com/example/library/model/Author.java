@@ -1,10 +1,14 @@
 package com.example.library.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Entity
-public class Author {
+public class Author implements Versioned, Snapshottable<Author> {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -14,6 +18,30 @@ public class Author {
     @Column(name = "date_of_birth")
     private LocalDate dateOfBirth;
 
+    // Maintained by Hibernate on every write (and by the bulk updates and inserts that bypass it); read-only in JSON
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "last_modified", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
+    @Override
+    public Author snapshot() {
+        Author copy = new Author();
+        copy.id = id;
+        copy.name = name;
+        copy.dateOfBirth = dateOfBirth;
+        copy.version = version;
+        copy.lastModified = lastModified;
+        return copy;
+    }
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -38,4 +66,22 @@ public class Author {
     public void setDateOfBirth(LocalDate dateOfBirth) {
         this.dateOfBirth = dateOfBirth;
     }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
 }
@@ -1,9 +1,14 @@
 package com.example.library.model;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Entity
-public class Book {
+public class Book implements Versioned, Snapshottable<Book> {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -15,6 +20,65 @@ public class Book {
     @Column(name = "author_id", nullable = false)
     private Long authorId;
 
+    // Copy counts are only written on insert and by the conditional updates in BookRepository, never by a
+    // save of a (possibly cached) entity, so concurrent checkouts cannot be overwritten
+    @ColumnDefault("1")
+    @Column(nullable = false, updatable = false)
+    private Integer copies;
+
+    @ColumnDefault("1")
+    @Column(name = "available_copies", nullable = false, updatable = false)
+    private Integer availableCopies;
+
+    // Times the book has been lent, counted by the same UPDATE that takes the copy off the shelf; read-only in JSON
+    @ColumnDefault("0")
+    @Column(name = "loan_count", nullable = false, updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long loanCount;
+
+    // Maintained by Hibernate on every write (and by the bulk updates and inserts that bypass it); read-only in JSON
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "last_modified", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
+    // A book saved without copy counts has one copy, on the shelf, and has not been lent yet
+    @PrePersist
+    void applyCopyDefaults() {
+        if (copies == null) {
+            copies = 1;
+        }
+        if (availableCopies == null) {
+            availableCopies = copies;
+        }
+        if (loanCount == null) {
+            loanCount = 0L;
+        }
+    }
+
+    @Override
+    public Book snapshot() {
+        Book copy = new Book();
+        copy.id = id;
+        copy.title = title;
+        copy.genre = genre;
+        copy.price = price;
+        copy.authorId = authorId;
+        copy.copies = copies;
+        copy.availableCopies = availableCopies;
+        copy.loanCount = loanCount;
+        copy.version = version;
+        copy.lastModified = lastModified;
+        return copy;
+    }
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -55,4 +119,46 @@ public class Book {
     public void setAuthorId(Long authorId) {
         this.authorId = authorId;
     }
+
+    public Integer getCopies() {
+        return copies;
+    }
+
+    public void setCopies(Integer copies) {
+        this.copies = copies;
+    }
+
+    public Integer getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public void setAvailableCopies(Integer availableCopies) {
+        this.availableCopies = availableCopies;
+    }
+
+    public Long getLoanCount() {
+        return loanCount;
+    }
+
+    public void setLoanCount(Long loanCount) {
+        this.loanCount = loanCount;
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
 }
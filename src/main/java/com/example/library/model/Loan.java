@@ -1,11 +1,18 @@
 package com.example.library.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Date;
 
+// Loans are scanned by return date (overdue scan) through idx_loan_return_date_id, and looked up by member
+// (checkout limit, member views) through idx_loan_member_id. db/migrations builds both concurrently rather than
+// ddl-auto at startup
 @Entity
-public class Loan {
+public class Loan implements Versioned {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -19,6 +26,19 @@ public class Loan {
     private LocalDate lendDate;
     private LocalDate returnDate;
 
+    // Maintained by Hibernate on every write (and by the bulk updates and inserts that bypass it); read-only in JSON
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "last_modified", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -59,4 +79,22 @@ public class Loan {
     public void setReturnDate(LocalDate returnDate) {
         this.returnDate = returnDate;
     }
-}
\ No newline at end of file
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+}
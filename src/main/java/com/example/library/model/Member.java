@@ -1,13 +1,16 @@
 package com.example.library.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 
-import java.util.List;
+import java.time.Instant;
 
 @Entity
-public class Member {
+public class Member implements Versioned {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -20,10 +23,18 @@ public class Member {
     private String address;
     private String phoneNumber;
 
-    @ElementCollection
-    @CollectionTable(name = "member_loans", joinColumns = @JoinColumn(name = "member_id"))
-    @Column(name = "loan_id")
-    private List<Long> loanIds;
+    // Maintained by Hibernate on every write (and by the bulk updates and inserts that bypass it); read-only in JSON
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @UpdateTimestamp
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(name = "last_modified", nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
 
     // Getters and setters
     public Long getId() {
@@ -66,11 +77,21 @@ public class Member {
         this.phoneNumber = phoneNumber;
     }
 
-    public List<Long> getLoanIds() {
-        return loanIds;
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Instant getLastModified() {
+        return lastModified;
     }
 
-    public void setLoanIds(List<Long> loanIds) {
-        this.loanIds = loanIds;
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
     }
 }
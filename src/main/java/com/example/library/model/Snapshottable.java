@@ -0,0 +1,12 @@
+package com.example.library.model;
+
+/**
+ * A value that caches hold as a private copy, so no caller can change what the next caller is handed.
+ */
+public interface Snapshottable<T> {
+
+    /**
+     * A copy that shares no mutable state with this instance and is not attached to any persistence context.
+     */
+    T snapshot();
+}
@@ -0,0 +1,16 @@
+package com.example.library.model;
+
+import java.time.Instant;
+
+/**
+ * An entity whose version and modification time are maintained on every write, used for optimistic
+ * locking and as HTTP validators ({@code ETag} / {@code Last-Modified}).
+ */
+public interface Versioned {
+
+    Long getId();
+
+    Long getVersion();
+
+    Instant getLastModified();
+}
@@ -0,0 +1,30 @@
+package com.example.library.overdue;
+
+import com.example.library.model.Loan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Default handler: logs each overdue loan at debug level with the number of days it is overdue.
+ */
+@Component
+public class LoggingOverdueLoanHandler implements OverdueLoanHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingOverdueLoanHandler.class);
+
+    @Override
+    public void handle(List<Loan> overdueLoans, LocalDate asOf) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        for (Loan loan : overdueLoans) {
+            log.debug("Loan {} (member {}, book {}) is {} days overdue", loan.getId(), loan.getMemberId(),
+                    loan.getBookId(), ChronoUnit.DAYS.between(loan.getReturnDate(), asOf));
+        }
+    }
+}
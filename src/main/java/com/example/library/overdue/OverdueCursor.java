@@ -0,0 +1,35 @@
+package com.example.library.overdue;
+
+import com.example.library.model.Loan;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Position in the overdue-loan ordering {@code (return_date, id)}, written as {@code <returnDate>:<id>}
+ * (for example {@code 2024-05-01:1234}) in the {@code X-Next-Cursor} header and the {@code after} parameter.
+ */
+public record OverdueCursor(LocalDate returnDate, long id) {
+
+    public static OverdueCursor of(Loan loan) {
+        return new OverdueCursor(loan.getReturnDate(), loan.getId());
+    }
+
+    public static OverdueCursor parse(String value) {
+        int separator = value.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid overdue cursor " + value);
+        }
+        try {
+            return new OverdueCursor(LocalDate.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid overdue cursor " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return returnDate + ":" + id;
+    }
+}
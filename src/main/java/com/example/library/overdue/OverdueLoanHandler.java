@@ -0,0 +1,15 @@
+package com.example.library.overdue;
+
+import com.example.library.model.Loan;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Receives the overdue loans found by {@link OverdueLoanScanner}, one bounded batch at a time. Every
+ * handler bean is called for every batch, in order of their {@code @Order}.
+ */
+public interface OverdueLoanHandler {
+
+    void handle(List<Loan> overdueLoans, LocalDate asOf);
+}
@@ -0,0 +1,65 @@
+package com.example.library.overdue;
+
+import com.example.library.model.Loan;
+import com.example.library.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Finds every loan whose return date has passed and hands them to the {@link OverdueLoanHandler}s.
+ *
+ * The scan walks the {@code (return_date, id)} index in keyset order, one batch of
+ * {@code library.overdue.scan.batch-size} loans per query, so each query is a bounded index range scan
+ * and only one batch is ever held in memory. Runs on {@code library.overdue.scan.cron}; set it to
+ * {@code -} to disable the schedule.
+ */
+@Component
+public class OverdueLoanScanner {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueLoanScanner.class);
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private List<OverdueLoanHandler> handlers;
+
+    @Value("${library.overdue.scan.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${library.overdue.scan.cron:0 0 2 * * *}")
+    public void scheduledScan() {
+        OverdueScanResult result = scan(LocalDate.now());
+        log.info("Overdue scan as of {} found {} loans in {} batches ({} ms)", result.asOf(),
+                result.overdueLoans(), result.batches(), result.durationMillis());
+    }
+
+    public OverdueScanResult scan(LocalDate asOf) {
+        long start = System.nanoTime();
+        long overdue = 0;
+        int batches = 0;
+        OverdueCursor cursor = null;
+        List<Loan> batch;
+        do {
+            batch = loanRepository.findOverdue(asOf, cursor, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (OverdueLoanHandler handler : handlers) {
+                handler.handle(batch, asOf);
+            }
+            overdue += batch.size();
+            batches++;
+            cursor = OverdueCursor.of(batch.get(batch.size() - 1));
+        } while (batch.size() == batchSize);
+        return new OverdueScanResult(asOf, overdue, batches, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.library.overdue;
+
+import java.time.LocalDate;
+
+public record OverdueScanResult(LocalDate asOf, long overdueLoans, int batches, long durationMillis) {
+}
@@ -0,0 +1,122 @@
+package com.example.library.reactive;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.function.Function;
+
+/**
+ * Reads books, authors and loans over R2DBC, in id order after a keyset cursor.
+ *
+ * A stream is read as a chain of keyset pages of {@code pageSize} rows, the same index range scans as the JPA
+ * repositories' {@code findByIdGreaterThan} pages. Each page takes a pooled connection only while it is read;
+ * the next page is queried once the subscriber has requested every row of the current one. A stream to a slow
+ * client therefore waits on its socket holding at most one page, not a connection, and a few connections serve
+ * thousands of open streams. Pages are separate statements, so rows committed during a long stream are included
+ * if their ids are still ahead of it.
+ */
+public class ReactiveCatalogRepository implements AutoCloseable {
+
+    private static final String BOOKS = "SELECT id, title, genre, price, author_id, copies, available_copies,"
+            + " loan_count, version, last_modified FROM book WHERE id > :after ORDER BY id";
+    private static final String AUTHORS = "SELECT id, name, date_of_birth, version, last_modified FROM author"
+            + " WHERE id > :after ORDER BY id";
+    private static final String LOANS = "SELECT id, member_id, book_id, lend_date, return_date, version,"
+            + " last_modified FROM loan WHERE id > :after ORDER BY id";
+
+    private final ConnectionPool pool;
+    private final DatabaseClient databaseClient;
+    private final int pageSize;
+
+    public ReactiveCatalogRepository(ConnectionPool pool, int pageSize) {
+        this.pool = pool;
+        this.databaseClient = DatabaseClient.create(pool);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Books with an id above {@code after}; {@code limit} of 0 or less reads to the end of the table.
+     */
+    public Flux<Book> findBooks(long after, long limit) {
+        return stream(BOOKS, after, limit, Book::getId, row -> {
+            Book book = new Book();
+            book.setId(row.get("id", Long.class));
+            book.setTitle(row.get("title", String.class));
+            book.setGenre(row.get("genre", String.class));
+            book.setPrice(row.get("price", BigDecimal.class));
+            book.setAuthorId(row.get("author_id", Long.class));
+            book.setCopies(row.get("copies", Integer.class));
+            book.setAvailableCopies(row.get("available_copies", Integer.class));
+            book.setLoanCount(row.get("loan_count", Long.class));
+            book.setVersion(row.get("version", Long.class));
+            book.setLastModified(instant(row, "last_modified"));
+            return book;
+        });
+    }
+
+    public Flux<Author> findAuthors(long after, long limit) {
+        return stream(AUTHORS, after, limit, Author::getId, row -> {
+            Author author = new Author();
+            author.setId(row.get("id", Long.class));
+            author.setName(row.get("name", String.class));
+            author.setDateOfBirth(row.get("date_of_birth", LocalDate.class));
+            author.setVersion(row.get("version", Long.class));
+            author.setLastModified(instant(row, "last_modified"));
+            return author;
+        });
+    }
+
+    public Flux<Loan> findLoans(long after, long limit) {
+        return stream(LOANS, after, limit, Loan::getId, row -> {
+            Loan loan = new Loan();
+            loan.setId(row.get("id", Long.class));
+            loan.setMemberId(row.get("member_id", Long.class));
+            loan.setBookId(row.get("book_id", Long.class));
+            loan.setLendDate(row.get("lend_date", LocalDate.class));
+            loan.setReturnDate(row.get("return_date", LocalDate.class));
+            loan.setVersion(row.get("version", Long.class));
+            loan.setLastModified(instant(row, "last_modified"));
+            return loan;
+        });
+    }
+
+    private <T> Flux<T> stream(String sql, long after, long limit, Function<T, Long> idOf,
+                               Function<Readable, T> mapper) {
+        int size = limit > 0 ? (int) Math.min(pageSize, limit) : pageSize;
+        return databaseClient.sql(sql + " LIMIT :limit")
+                .bind("after", after)
+                .bind("limit", size)
+                .map(mapper)
+                .all()
+                .collectList()
+                .flatMapMany(rows -> {
+                    Flux<T> page = Flux.fromIterable(rows);
+                    long remaining = limit > 0 ? limit - rows.size() : 0;
+                    if (rows.size() < size || (limit > 0 && remaining == 0)) {
+                        return page;
+                    }
+                    long last = idOf.apply(rows.get(rows.size() - 1));
+                    return page.concatWith(Flux.defer(() -> stream(sql, last, remaining, idOf, mapper)));
+                });
+    }
+
+    private static Instant instant(Readable row, String column) {
+        OffsetDateTime value = row.get(column, OffsetDateTime.class);
+        return value == null ? null : value.toInstant();
+    }
+
+    @Override
+    public void close() {
+        pool.disposeLater().block(Duration.ofSeconds(10));
+    }
+}
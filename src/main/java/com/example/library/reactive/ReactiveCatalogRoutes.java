@@ -0,0 +1,57 @@
+package com.example.library.reactive;
+
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Routes of the reactive catalog server: {@code GET /books}, {@code /authors} and {@code /loans}.
+ *
+ * Each takes the same {@code ?after=<id>&limit=<n>} as the servlet endpoints, but without a limit the response
+ * runs to the end of the table instead of stopping at a page. Rows are written as {@code application/x-ndjson},
+ * one line per row and flushed as they are read, or as a JSON array when only {@code application/json} is
+ * accepted. Either way the client's pace decides when the next page is read from the database.
+ */
+public final class ReactiveCatalogRoutes {
+
+    private ReactiveCatalogRoutes() {
+    }
+
+    public static RouterFunction<ServerResponse> routes(ReactiveCatalogRepository repository) {
+        return RouterFunctions.route()
+                .GET("/books", request -> rows(request, Book.class, repository::findBooks))
+                .GET("/authors", request -> rows(request, Author.class, repository::findAuthors))
+                .GET("/loans", request -> rows(request, Loan.class, repository::findLoans))
+                .build();
+    }
+
+    private static <T> Mono<ServerResponse> rows(ServerRequest request, Class<T> type, RowQuery<T> query) {
+        long after;
+        long limit;
+        try {
+            after = request.queryParam("after").map(Long::parseLong).orElse(0L);
+            limit = request.queryParam("limit").map(Long::parseLong).orElse(0L);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        boolean jsonArray = request.headers().accept().stream()
+                .noneMatch(accepted -> accepted.isCompatibleWith(MediaType.APPLICATION_NDJSON))
+                && request.headers().accept().stream()
+                .anyMatch(accepted -> accepted.equalsTypeAndSubtype(MediaType.APPLICATION_JSON));
+        return ServerResponse.ok()
+                .contentType(jsonArray ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_NDJSON)
+                .body(query.find(after, limit), type);
+    }
+
+    @FunctionalInterface
+    private interface RowQuery<T> {
+        Flux<T> find(long after, long limit);
+    }
+}
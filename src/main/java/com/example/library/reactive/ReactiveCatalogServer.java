@@ -0,0 +1,58 @@
+package com.example.library.reactive;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Reactor Netty listener for the reactive catalog routes, started and stopped with the application context.
+ *
+ * Connections are served by Netty's event loops (one thread per core), so idle or slow clients cost a socket
+ * and a few buffers rather than a request thread. Server metrics are published as {@code reactor.netty.http.server.*}.
+ */
+public class ReactiveCatalogServer implements SmartLifecycle {
+
+    private final HttpHandler httpHandler;
+    private final int port;
+    private volatile DisposableServer server;
+
+    public ReactiveCatalogServer(HttpHandler httpHandler, int port) {
+        this.httpHandler = httpHandler;
+        this.port = port;
+    }
+
+    @Override
+    public void start() {
+        server = HttpServer.create()
+                .port(port)
+                .metrics(true, Function.identity())
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop() {
+        DisposableServer running = server;
+        if (running != null) {
+            running.disposeNow(Duration.ofSeconds(10));
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * The bound port, which differs from the configured one when that is 0.
+     */
+    public int getPort() {
+        return server.port();
+    }
+}
@@ -1,7 +1,67 @@
 package com.example.library.repository;
 
 import com.example.library.model.Author;
+import jakarta.persistence.QueryHint;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
+    // Lookups by id are read through the "authors" cache; saves and deletes through this repository refresh or evict
+    // the entry once the transaction commits. Rows read from a replica are not cached, as they may predate a change
+    // whose eviction has already run
+    @Override
+    @Cacheable(cacheNames = "authors", unless = "#result == null"
+            + " || T(com.example.library.datasource.ReplicaRoutingDataSource).isReadingFromReplica()")
+    Optional<Author> findById(Long id);
+
+    @Override
+    @CachePut(cacheNames = "authors", key = "#result.id")
+    <S extends Author> S save(S author);
+
+    @Override
+    @CachePut(cacheNames = "authors", key = "#result.id")
+    <S extends Author> S saveAndFlush(S author);
+
+    @Override
+    @CacheEvict(cacheNames = "authors", key = "#p0.id")
+    void delete(Author author);
+
+    @Override
+    @CacheEvict(cacheNames = "authors")
+    void deleteById(Long id);
+
+    // One DELETE without loading the author first; returns 0 if there was no such author
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = "authors")
+    @Query("delete from Author a where a.id = :id")
+    int deleteRowById(@Param("id") Long id);
+
+    // Reads the stored row past the cache, for updates that must not modify the cached instance
+    @Query("select a from Author a where a.id = :id")
+    Optional<Author> findCurrentById(@Param("id") Long id);
+
+    List<Author> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Author> streamAllByOrderByIdAsc();
+
+    @Query("select a.id from Author a where a.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
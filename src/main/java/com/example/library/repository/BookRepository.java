@@ -1,7 +1,136 @@
 package com.example.library.repository;
 
 import com.example.library.model.Book;
+import jakarta.persistence.QueryHint;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
-}
\ No newline at end of file
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookSearchRepository {
+    // Lookups by id are read through the "books" cache; saves and deletes through this repository refresh or evict
+    // the entry and drop cached search results once the transaction commits. Rows read from a replica are not
+    // cached, as they may predate a change whose eviction has already run
+    @Override
+    @Cacheable(cacheNames = "books", unless = "#result == null"
+            + " || T(com.example.library.datasource.ReplicaRoutingDataSource).isReadingFromReplica()")
+    Optional<Book> findById(Long id);
+
+    @Override
+    @Caching(put = @CachePut(cacheNames = "books", key = "#result.id"),
+            evict = @CacheEvict(cacheNames = "bookSearch", allEntries = true))
+    <S extends Book> S save(S book);
+
+    @Override
+    @Caching(put = @CachePut(cacheNames = "books", key = "#result.id"),
+            evict = @CacheEvict(cacheNames = "bookSearch", allEntries = true))
+    <S extends Book> S saveAndFlush(S book);
+
+    @Override
+    @Caching(evict = {@CacheEvict(cacheNames = "books", key = "#p0.id"),
+            @CacheEvict(cacheNames = "bookSearch", allEntries = true)})
+    void delete(Book book);
+
+    @Override
+    @Caching(evict = {@CacheEvict(cacheNames = "books"),
+            @CacheEvict(cacheNames = "bookSearch", allEntries = true)})
+    void deleteById(Long id);
+
+    // One DELETE without loading the book first; returns 0 if there was no such book
+    @Transactional
+    @Modifying
+    @Caching(evict = {@CacheEvict(cacheNames = "books"),
+            @CacheEvict(cacheNames = "bookSearch", allEntries = true)})
+    @Query("delete from Book b where b.id = :id")
+    int deleteRowById(@Param("id") Long id);
+
+    // Reads the stored row past the cache, for updates that must not modify the cached instance
+    @Query("select b from Book b where b.id = :id")
+    Optional<Book> findCurrentById(@Param("id") Long id);
+
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Book> streamAllByOrderByIdAsc();
+
+    // Copy counters are changed with single conditional UPDATEs, so the row lock is held only for the rest of the
+    // calling transaction and availability can never go negative or above the number of copies. Each update bumps
+    // the version and modification time like an entity save would. Callers evict the cached book (see BookInventory).
+    // Taking a copy also counts the loan for the circulation statistics.
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.availableCopies = b.availableCopies - 1, b.loanCount = b.loanCount + 1, "
+            + "b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id = :id and b.availableCopies > 0")
+    int decrementAvailableCopies(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.availableCopies = b.availableCopies + 1, "
+            + "b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id = :id and b.availableCopies < b.copies")
+    int incrementAvailableCopies(@Param("id") Long id);
+
+    // Clears the persistence context so a book loaded earlier in the same session is re-read with the new counts
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.availableCopies = b.availableCopies + (:copies - b.copies), b.copies = :copies, "
+            + "b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id = :id and b.availableCopies + (:copies - b.copies) >= 0")
+    int updateCopies(@Param("id") Long id, @Param("copies") int copies);
+
+    // Puts back one copy per loan in :loanIds, for every book at once; run it before the loans are deleted
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.availableCopies = least(b.copies, b.availableCopies "
+            + "+ (select cast(count(l) as Integer) from Loan l where l.bookId = b.id and l.id in :loanIds)), "
+            + "b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id in (select l.bookId from Loan l where l.id in :loanIds)")
+    int incrementAvailableCopiesForLoans(@Param("loanIds") Collection<Long> loanIds);
+
+    // Undoes decrementAvailableCopies for a reservation whose loan was never made, taking it out of the loan count too
+    @Transactional
+    @Modifying
+    @Query("update Book b set b.availableCopies = least(b.copies, b.availableCopies + 1), "
+            + "b.loanCount = greatest(0, b.loanCount - 1), b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id = :id")
+    int cancelReservation(@Param("id") Long id);
+
+    // Sets the given books' available copies to their copies minus their active loans; used after replaying the
+    // write-behind loan journal, whose copy reservations and loan rows commit separately. Only rows that change
+    // are written
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.availableCopies = greatest(0, b.copies "
+            + "- (select cast(count(l) as Integer) from Loan l where l.bookId = b.id)), "
+            + "b.version = b.version + 1, b.lastModified = instant "
+            + "where b.id in :bookIds and b.availableCopies <> greatest(0, b.copies "
+            + "- (select cast(count(l) as Integer) from Loan l where l.bookId = b.id))")
+    int reconcileAvailableCopies(@Param("bookIds") Collection<Long> bookIds);
+
+    // The books among :bookIds whose available copies differ from their copies minus their active loans, which
+    // reconcileAvailableCopies would write
+    @Query("select b.id from Book b where b.id in :bookIds and b.availableCopies <> greatest(0, b.copies "
+            + "- (select cast(count(l) as Integer) from Loan l where l.bookId = b.id)) order by b.id")
+    List<Long> findMiscountedIds(@Param("bookIds") Collection<Long> bookIds);
+
+    // The same for every book, which is only safe to act on while no other instance has write-behind loans queued
+    @Query("select b.id from Book b where b.availableCopies <> greatest(0, b.copies "
+            + "- (select cast(count(l) as Integer) from Loan l where l.bookId = b.id)) order by b.id")
+    List<Long> findMiscountedIds();
+}
@@ -0,0 +1,10 @@
+package com.example.library.repository;
+
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
+import org.springframework.cache.annotation.Cacheable;
+
+public interface BookSearchRepository {
+    @Cacheable(cacheNames = "bookSearch")
+    BookSearchResult search(BookSearchCriteria criteria);
+}
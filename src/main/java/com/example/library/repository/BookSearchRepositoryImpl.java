@@ -0,0 +1,135 @@
+package com.example.library.repository;
+
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
+import com.example.library.model.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Full-text and faceted book search on PostgreSQL.
+ *
+ * Text matching uses {@link #SEARCH_TEXT}, the expression the GIN index {@code idx_book_search_text} is built on;
+ * genre, price and author filters use ordinary btree indexes. All four are built by
+ * {@code db/migrations/005-1-expand-book-search-indexes.sql}; until then a search scans the table. A search is
+ * three statements: the requested page, the genre facet and the price facet. The total is the sum of
+ * the genre facet counts, so it needs no separate count query.
+ *
+ * On other databases ({@code spring.sql.init.platform} other than {@code postgresql}) every word of the query must
+ * occur in the title or genre, ignoring case, and results are ordered by id. That scans the table and is meant for tests and local H2 runs, not production catalogs.
+ */
+public class BookSearchRepositoryImpl implements BookSearchRepository {
+
+    static final List<BigDecimal> PRICE_BUCKET_BOUNDS = List.of(
+            BigDecimal.valueOf(10), BigDecimal.valueOf(20), BigDecimal.valueOf(50), BigDecimal.valueOf(100));
+
+    // Must stay the expression idx_book_search_text indexes, or PostgreSQL cannot use the index
+    static final String SEARCH_TEXT = "to_tsvector('english', coalesce(b.title, '') || ' ' || coalesce(b.genre, ''))";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.sql.init.platform:postgresql}")
+    private String platform;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public BookSearchResult search(BookSearchCriteria criteria) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        boolean fullText = "postgresql".equals(platform);
+        String where = whereClause(criteria, fullText, parameters);
+
+        String order = criteria.query() == null || !fullText
+                ? " ORDER BY b.id"
+                : " ORDER BY ts_rank(" + SEARCH_TEXT + ", websearch_to_tsquery('english', :query)) DESC, b.id";
+        Query pageQuery = entityManager.createNativeQuery("SELECT b.* FROM book b" + where + order, Book.class);
+        bind(pageQuery, parameters);
+        pageQuery.setFirstResult(criteria.page() * criteria.size());
+        pageQuery.setMaxResults(criteria.size());
+        List<Book> books = pageQuery.getResultList();
+
+        Query genreQuery = entityManager.createNativeQuery(
+                "SELECT b.genre, COUNT(*) FROM book b" + where + " GROUP BY b.genre ORDER BY COUNT(*) DESC, b.genre");
+        bind(genreQuery, parameters);
+        List<BookSearchResult.FacetCount> genres = new ArrayList<>();
+        long total = 0;
+        for (Object[] row : (List<Object[]>) genreQuery.getResultList()) {
+            long count = ((Number) row[1]).longValue();
+            genres.add(new BookSearchResult.FacetCount((String) row[0], count));
+            total += count;
+        }
+
+        Query priceQuery = entityManager.createNativeQuery(
+                "SELECT " + priceBucketExpression() + " AS bucket, COUNT(*) FROM book b" + where + " GROUP BY bucket");
+        bind(priceQuery, parameters);
+        long[] bucketCounts = new long[PRICE_BUCKET_BOUNDS.size() + 1];
+        for (Object[] row : (List<Object[]>) priceQuery.getResultList()) {
+            if (row[0] != null) {
+                bucketCounts[((Number) row[0]).intValue()] = ((Number) row[1]).longValue();
+            }
+        }
+        List<BookSearchResult.PriceBucket> prices = new ArrayList<>();
+        for (int i = 0; i < bucketCounts.length; i++) {
+            BigDecimal from = i == 0 ? BigDecimal.ZERO : PRICE_BUCKET_BOUNDS.get(i - 1);
+            BigDecimal to = i < PRICE_BUCKET_BOUNDS.size() ? PRICE_BUCKET_BOUNDS.get(i) : null;
+            prices.add(new BookSearchResult.PriceBucket(from, to, bucketCounts[i]));
+        }
+
+        return new BookSearchResult(books, total, criteria.page(), criteria.size(), genres, prices);
+    }
+
+    private static String whereClause(BookSearchCriteria criteria, boolean fullText, Map<String, Object> parameters) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (criteria.query() != null && fullText) {
+            where.append(" AND ").append(SEARCH_TEXT).append(" @@ websearch_to_tsquery('english', :query)");
+            parameters.put("query", criteria.query());
+        } else if (criteria.query() != null) {
+            String[] words = criteria.query().toLowerCase(Locale.ROOT).trim().split("\\s+");
+            for (int i = 0; i < words.length; i++) {
+                where.append(" AND (LOWER(b.title) LIKE :word").append(i).append(" ESCAPE '!'")
+                        .append(" OR LOWER(b.genre) LIKE :word").append(i).append(" ESCAPE '!')");
+                parameters.put("word" + i, "%" + words[i].replaceAll("[!%_]", "!$0") + "%");
+            }
+        }
+        if (criteria.genre() != null) {
+            where.append(" AND b.genre = :genre");
+            parameters.put("genre", criteria.genre());
+        }
+        if (criteria.minPrice() != null) {
+            where.append(" AND b.price >= :minPrice");
+            parameters.put("minPrice", criteria.minPrice());
+        }
+        if (criteria.maxPrice() != null) {
+            where.append(" AND b.price <= :maxPrice");
+            parameters.put("maxPrice", criteria.maxPrice());
+        }
+        if (criteria.authorId() != null) {
+            where.append(" AND b.author_id = :authorId");
+            parameters.put("authorId", criteria.authorId());
+        }
+        return where.toString();
+    }
+
+    private static String priceBucketExpression() {
+        StringBuilder expression = new StringBuilder("CASE");
+        for (int i = 0; i < PRICE_BUCKET_BOUNDS.size(); i++) {
+            expression.append(" WHEN b.price < ").append(PRICE_BUCKET_BOUNDS.get(i).toPlainString())
+                    .append(" THEN ").append(i);
+        }
+        return expression.append(" WHEN b.price IS NOT NULL THEN ").append(PRICE_BUCKET_BOUNDS.size())
+                .append(" END").toString();
+    }
+
+    private static void bind(Query query, Map<String, Object> parameters) {
+        parameters.forEach(query::setParameter);
+    }
+}
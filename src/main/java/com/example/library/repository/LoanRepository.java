@@ -1,10 +1,77 @@
 package com.example.library.repository;
 
+import com.example.library.dto.MemberLoanView;
 import com.example.library.model.Loan;
+import com.example.library.overdue.OverdueCursor;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
     List<Loan> findByMemberId(Long memberId);
+
+    long countByMemberId(Long memberId);
+
+    @Query("select new com.example.library.dto.MemberLoanView(l.id, l.memberId, l.bookId, l.lendDate, l.returnDate) "
+            + "from Loan l where l.memberId = :memberId order by l.id")
+    List<MemberLoanView> findViewsByMemberId(@Param("memberId") Long memberId);
+
+    @Query("select new com.example.library.dto.MemberLoanView(l.id, l.memberId, l.bookId, l.lendDate, l.returnDate, "
+            + "b.title, b.genre, b.price, b.authorId) "
+            + "from Loan l left join Book b on b.id = l.bookId "
+            + "where l.memberId = :memberId order by l.id")
+    List<MemberLoanView> findViewsWithBookByMemberId(@Param("memberId") Long memberId);
+
+    @Query("select new com.example.library.dto.MemberLoanView(l.id, l.memberId, l.bookId, l.lendDate, l.returnDate, "
+            + "b.title, b.genre, b.price, b.authorId, a.name) "
+            + "from Loan l left join Book b on b.id = l.bookId left join Author a on a.id = b.authorId "
+            + "where l.memberId = :memberId order by l.id")
+    List<MemberLoanView> findViewsWithBookAndAuthorByMemberId(@Param("memberId") Long memberId);
+
+    List<Loan> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Loan> streamAllByOrderByIdAsc();
+
+    // Overdue loans in (return_date, id) order, read page by page from idx_loan_return_date_id
+    @Query("select l from Loan l where l.returnDate < :asOf order by l.returnDate, l.id")
+    List<Loan> findOverdue(@Param("asOf") LocalDate asOf, Limit limit);
+
+    @Query("select l from Loan l where l.returnDate < :asOf and (l.returnDate, l.id) > (:afterDate, :afterId) "
+            + "order by l.returnDate, l.id")
+    List<Loan> findOverdueAfter(@Param("asOf") LocalDate asOf, @Param("afterDate") LocalDate afterDate,
+                                @Param("afterId") Long afterId, Limit limit);
+
+    default List<Loan> findOverdue(LocalDate asOf, OverdueCursor after, Limit limit) {
+        return after == null
+                ? findOverdue(asOf, limit)
+                : findOverdueAfter(asOf, after.returnDate(), after.id(), limit);
+    }
+
+    // Batch return and renewal: the loans are locked first, so two desks handling the same loan are serialized
+    // and a loan cannot be returned twice; the changes are then single set-based statements
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Loan l where l.id in :ids")
+    List<Loan> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Loan l set l.returnDate = :returnDate, l.version = l.version + 1, l.lastModified = instant "
+            + "where l.id in :ids")
+    int renewAll(@Param("ids") Collection<Long> ids, @Param("returnDate") LocalDate returnDate);
 }
@@ -1,10 +1,51 @@
 package com.example.library.repository;
 
 import com.example.library.model.Member;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
     Optional<Member> findByUsername(String username);
-}
\ No newline at end of file
+
+    // Usernames are unique regardless of letter case; both lookups match the unique index on lower(username)
+    @Query("select count(m) > 0 from Member m where lower(m.username) = lower(:username)")
+    boolean existsByUsernameIgnoreCase(@Param("username") String username);
+
+    // One DELETE without loading the member first; returns 0 if there was no such member
+    @Transactional
+    @Modifying
+    @Query("delete from Member m where m.id = :id")
+    int deleteRowById(@Param("id") Long id);
+
+    /**
+     * Returns which of the given lower-cased usernames are taken, lower-cased.
+     */
+    @Query("select lower(m.username) from Member m where lower(m.username) in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Locks the member row until the surrounding transaction ends, serializing concurrent checkouts
+     * for the same member without loading the entity.
+     */
+    @Query(value = "SELECT id FROM member WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+
+    List<Member> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Member> streamAllByOrderByIdAsc();
+}
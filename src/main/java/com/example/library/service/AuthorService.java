@@ -0,0 +1,62 @@
+package com.example.library.service;
+
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.model.Author;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.web.EntityTags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Catalog use cases for authors, each in one transaction.
+ */
+@Service
+public class AuthorService {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Transactional(readOnly = true)
+    public List<Author> getAuthors(long after, Limit limit) {
+        return authorRepository.findByIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Stream<Author> streamAuthors() {
+        return authorRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Transactional(readOnly = true)
+    public Author getAuthor(Long id) {
+        return authorRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + id));
+    }
+
+    @Transactional
+    public Author createAuthor(Author author) {
+        return authorRepository.save(author);
+    }
+
+    @Transactional
+    public Author updateAuthor(Long id, Author authorDetails, String ifMatch) {
+        // Read past the cache, whose hits are detached snapshots, so the author modified below is managed
+        Author author = authorRepository.findCurrentById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + id));
+        EntityTags.checkIfMatch(ifMatch, author);
+        author.setName(authorDetails.getName());
+        author.setDateOfBirth(authorDetails.getDateOfBirth());
+        return authorRepository.saveAndFlush(author);
+    }
+
+    @Transactional
+    public void deleteAuthor(Long id) {
+        if (authorRepository.deleteRowById(id) == 0) {
+            throw new ResourceNotFoundException("Author not found with id " + id);
+        }
+    }
+}
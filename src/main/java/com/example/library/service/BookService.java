@@ -0,0 +1,127 @@
+package com.example.library.service;
+
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.exception.BookUnavailableException;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.inventory.BookInventory;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.web.EntityTags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Catalog use cases for books, each in one transaction.
+ *
+ * The author check goes through the cached {@code findById}, so it usually costs no query, and an update
+ * only repeats it when the author changes. Deletes are a single DELETE with no prior load. Every change is also
+ * recorded in the change-event outbox.
+ */
+@Service
+public class BookService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookInventory bookInventory;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Transactional(readOnly = true)
+    public List<Book> getBooks(long after, Limit limit) {
+        return bookRepository.findByIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Stream<Book> streamBooks() {
+        return bookRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Transactional(readOnly = true)
+    public BookSearchResult searchBooks(BookSearchCriteria criteria) {
+        return bookRepository.search(criteria);
+    }
+
+    @Transactional(readOnly = true)
+    public Book getBook(Long id) {
+        return bookRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
+    }
+
+    @Transactional
+    public Book createBook(Book book) {
+        requireAuthor(book.getAuthorId());
+
+        // A new book has one copy unless stated otherwise, and all of its copies are on the shelf
+        if (book.getCopies() != null && book.getCopies() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Copies must be zero or greater");
+        }
+        book.setAvailableCopies(book.getCopies());
+        Book saved = bookRepository.save(book);
+        outbox.record(ChangeEvent.Aggregate.BOOK, saved.getId(), ChangeEvent.Type.CREATED, saved);
+        return saved;
+    }
+
+    @Transactional
+    public Book updateBook(Long id, Book bookDetails, String ifMatch) {
+        // Read past the cache, whose hits are detached snapshots: the book is modified below and must be managed
+        Book book = bookRepository.findCurrentById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
+        EntityTags.checkIfMatch(ifMatch, book);
+
+        if (!bookDetails.getAuthorId().equals(book.getAuthorId())) {
+            requireAuthor(bookDetails.getAuthorId());
+        }
+
+        // Copy counts are not written by save; change them atomically and reload the book with the new counts
+        Integer copies = bookDetails.getCopies();
+        if (copies != null && !copies.equals(book.getCopies())) {
+            if (copies < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Copies must be zero or greater");
+            }
+            if (!bookInventory.updateCopies(id, copies)) {
+                throw new BookUnavailableException("More copies of book " + id + " are on loan than " + copies);
+            }
+            book = bookRepository.findCurrentById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Book not found with id " + id));
+        }
+
+        book.setTitle(bookDetails.getTitle());
+        book.setGenre(bookDetails.getGenre());
+        book.setPrice(bookDetails.getPrice());
+        book.setAuthorId(bookDetails.getAuthorId());
+        // Flush so the returned book carries its new version; the cache only takes it once the transaction commits
+        Book saved = bookRepository.saveAndFlush(book);
+        outbox.record(ChangeEvent.Aggregate.BOOK, id, ChangeEvent.Type.UPDATED, saved);
+        return saved;
+    }
+
+    @Transactional
+    public void deleteBook(Long id) {
+        if (bookRepository.deleteRowById(id) == 0) {
+            throw new ResourceNotFoundException("Book not found with id " + id);
+        }
+        outbox.record(ChangeEvent.Aggregate.BOOK, id, ChangeEvent.Type.DELETED, null);
+    }
+
+    private void requireAuthor(Long authorId) {
+        authorRepository.findById(authorId)
+                .orElseThrow(() -> new ResourceNotFoundException("Author not found with id " + authorId));
+    }
+}
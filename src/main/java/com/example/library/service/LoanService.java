@@ -0,0 +1,284 @@
+package com.example.library.service;
+
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.exception.BookUnavailableException;
+import com.example.library.exception.LoanLimitExceededException;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.history.LoanHistoryRepository;
+import com.example.library.index.ActiveLoanIndex;
+import com.example.library.inventory.BookInventory;
+import com.example.library.model.Loan;
+import com.example.library.overdue.OverdueCursor;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.web.EntityTags;
+import com.example.library.writebehind.LoanWriteBehind;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checkout, renewal and return of loans, each in one transaction so a failure at any step leaves neither
+ * the loan nor the book's available copies changed. Returned loans move to the loan history, so the
+ * {@code loan} table only holds loans that are out. Every change is also recorded in the change-event outbox
+ * and in the in-memory {@link ActiveLoanIndex}, which answers the per-member loan limit without a query.
+ *
+ * Existence checks are only made for references that change: an update that keeps the member and book
+ * loads nothing but the loan, and a new book is checked by the copy reservation itself.
+ *
+ * With {@link LoanWriteBehind} enabled a checkout commits only the member check and the copy reservation; the
+ * loan row and its event are written by the next flush, and requests that address loans by id flush first.
+ */
+@Service
+public class LoanService {
+
+    public static final int MAX_LOANS_PER_MEMBER = 5;
+    public static final int MAX_BATCH_SIZE = 100;
+    public static final Period LOAN_PERIOD = Period.ofWeeks(1);
+    private static final String REJECTED_METRIC = "library.loans.rejected";
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookInventory bookInventory;
+
+    @Autowired
+    private LoanHistoryRepository loanHistoryRepository;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private ActiveLoanIndex activeLoanIndex;
+
+    @Autowired
+    private LoanWriteBehind loanWriteBehind;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Transactional(readOnly = true)
+    public List<Loan> getLoans(long after, Limit limit) {
+        return loanRepository.findByIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Stream<Loan> streamLoans() {
+        return loanRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Loan> getOverdueLoans(LocalDate asOf, OverdueCursor after, Limit limit) {
+        return loanRepository.findOverdue(asOf, after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Loan getLoan(Long id) {
+        return loanRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
+    }
+
+    @Transactional
+    public Loan checkout(Loan loan) {
+        // Lock the member row so concurrent checkouts for the same member are counted one at a time
+        Long memberId = memberRepository.lockById(loan.getMemberId())
+                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + loan.getMemberId()));
+
+        // Counted from the in-memory index once it is loaded, otherwise by query. Write-behind loans are counted
+        // first: one flushed meanwhile is then counted twice rather than not at all
+        OptionalInt indexed = activeLoanIndex.countActive(memberId);
+        long activeLoans = indexed.isPresent() ? indexed.getAsInt()
+                : loanWriteBehind.countPending(memberId) + loanRepository.countByMemberId(memberId);
+        if (activeLoans >= MAX_LOANS_PER_MEMBER) {
+            meterRegistry.counter(REJECTED_METRIC, "reason", "member_limit").increment();
+            throw new LoanLimitExceededException("Member already has " + MAX_LOANS_PER_MEMBER + " loans");
+        }
+
+        // Set the lend date to today if not provided
+        if (loan.getLendDate() == null) {
+            loan.setLendDate(LocalDate.now());
+        }
+
+        // Set the return date to one loan period from the lend date if not provided
+        if (loan.getReturnDate() == null) {
+            loan.setReturnDate(loan.getLendDate().plus(LOAN_PERIOD));
+        }
+
+        if (loanWriteBehind.isEnabled()) {
+            loanWriteBehind.assignId(loan);
+            activeLoanIndex.loanOpened(memberId, loan.getId());
+            reserveCopy(loan.getBookId());
+            loanWriteBehind.enqueue(loan, () -> releaseUnjournaled(memberId, loan));
+            return loan;
+        }
+
+        Loan savedLoan = loanRepository.save(loan);
+        outbox.record(ChangeEvent.Aggregate.LOAN, loan.getId(), ChangeEvent.Type.CREATED, loan);
+        activeLoanIndex.loanOpened(memberId, loan.getId());
+
+        // Take the copy last, so the book row stays locked only until the commit that follows
+        reserveCopy(loan.getBookId());
+        return savedLoan;
+    }
+
+    @Transactional
+    public Loan updateLoan(Long id, Loan loanDetails, String ifMatch) {
+        Loan loan = loanRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
+        EntityTags.checkIfMatch(ifMatch, loan);
+        if (!loanDetails.getMemberId().equals(loan.getMemberId())
+                && !memberRepository.existsById(loanDetails.getMemberId())) {
+            throw new ResourceNotFoundException("Member not found with id " + loanDetails.getMemberId());
+        }
+
+        if (!loanDetails.getMemberId().equals(loan.getMemberId())) {
+            activeLoanIndex.loanClosed(loan.getMemberId(), id);
+            activeLoanIndex.loanOpened(loanDetails.getMemberId(), id);
+        }
+
+        Long previousBookId = loan.getBookId();
+        loan.setMemberId(loanDetails.getMemberId());
+        loan.setBookId(loanDetails.getBookId());
+        loan.setLendDate(loanDetails.getLendDate());
+        loan.setReturnDate(loanDetails.getReturnDate());
+
+        // Moving the loan to another book returns the old copy and takes one of the new book, which also
+        // rejects a book that does not exist
+        if (!previousBookId.equals(loanDetails.getBookId())) {
+            bookInventory.releaseCopy(previousBookId);
+            reserveCopy(loanDetails.getBookId());
+        }
+        outbox.record(ChangeEvent.Aggregate.LOAN, id, ChangeEvent.Type.UPDATED, loan);
+        // Written by dirty checking at commit, which happens before the caller reads the new version
+        return loan;
+    }
+
+    @Transactional
+    public void returnLoan(Long id) {
+        Loan loan = loanRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + id));
+        loanHistoryRepository.archive(List.of(id));
+        loanRepository.delete(loan);
+        outbox.record(ChangeEvent.Aggregate.LOAN, id, ChangeEvent.Type.RETURNED, loan);
+        activeLoanIndex.loanClosed(loan.getMemberId(), id);
+        bookInventory.releaseCopy(loan.getBookId());
+    }
+
+    /**
+     * Returns a basket of loans with five statements whatever its size: lock the loans, put their copies
+     * back, move them to the history, record their events. IDs that match no loan are reported as not found.
+     */
+    @Transactional
+    public LoanBatchResult returnLoans(List<Long> loanIds) {
+        Set<Long> ids = batch(loanIds);
+        List<Loan> loans = loanRepository.lockAllById(ids);
+        List<Long> found = loans.stream().map(Loan::getId).toList();
+        bookInventory.releaseCopies(loans);
+        loanHistoryRepository.archive(found);
+        loanRepository.deleteAllByIdInBatch(found);
+        for (Loan loan : loans) {
+            outbox.record(ChangeEvent.Aggregate.LOAN, loan.getId(), ChangeEvent.Type.RETURNED, loan);
+            activeLoanIndex.loanClosed(loan.getMemberId(), loan.getId());
+        }
+        return results(ids, loans, LoanBatchResult.Status.RETURNED, null);
+    }
+
+    /**
+     * Renews a basket of loans with three statements whatever its size (lock, update, record their events):
+     * every found loan becomes due one loan period from today.
+     */
+    @Transactional
+    public LoanBatchResult renewLoans(List<Long> loanIds) {
+        Set<Long> ids = batch(loanIds);
+        List<Loan> loans = loanRepository.lockAllById(ids);
+        LocalDate returnDate = LocalDate.now().plus(LOAN_PERIOD);
+        if (!loans.isEmpty()) {
+            loanRepository.renewAll(loans.stream().map(Loan::getId).toList(), returnDate);
+        }
+        // renewAll cleared the persistence context, so bringing the detached loans up to date for their events
+        // writes nothing
+        Instant renewedAt = Instant.now();
+        for (Loan loan : loans) {
+            loan.setReturnDate(returnDate);
+            loan.setVersion(loan.getVersion() + 1);
+            loan.setLastModified(renewedAt);
+            outbox.record(ChangeEvent.Aggregate.LOAN, loan.getId(), ChangeEvent.Type.RENEWED, loan);
+        }
+        return results(ids, loans, LoanBatchResult.Status.RENEWED, returnDate);
+    }
+
+    private static Set<Long> batch(List<Long> loanIds) {
+        if (loanIds == null || loanIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one loan ID is required");
+        }
+        Set<Long> ids = new LinkedHashSet<>(loanIds);
+        ids.remove(null);
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_SIZE + " loans can be handled at once");
+        }
+        return ids;
+    }
+
+    private static LoanBatchResult results(Set<Long> ids, List<Loan> found, LoanBatchResult.Status status,
+                                           LocalDate returnDate) {
+        Set<Long> foundIds = found.stream().map(Loan::getId).collect(Collectors.toSet());
+        List<LoanBatchResult.Item> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            items.add(foundIds.contains(id)
+                    ? new LoanBatchResult.Item(id, status, returnDate)
+                    : new LoanBatchResult.Item(id, LoanBatchResult.Status.NOT_FOUND, null));
+        }
+        return LoanBatchResult.of(items);
+    }
+
+    // Undoes a write-behind checkout whose loan could not be journaled after it committed. The index change joins
+    // the committed transaction, which is still completing; the copy goes back in a transaction of its own
+    private void releaseUnjournaled(Long memberId, Loan loan) {
+        activeLoanIndex.loanClosed(memberId, loan.getId());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> bookInventory.cancelReservation(loan.getBookId()));
+    }
+
+    private void reserveCopy(Long bookId) {
+        if (!bookInventory.reserveCopy(bookId)) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new ResourceNotFoundException("Book not found with id " + bookId);
+            }
+            meterRegistry.counter(REJECTED_METRIC, "reason", "no_copy_available").increment();
+            throw new BookUnavailableException("No copy of book " + bookId + " is available");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.library.service;
+
+import com.example.library.dto.MemberActiveLoans;
+import com.example.library.dto.MemberLoanView;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.exception.UsernameTakenException;
+import com.example.library.history.LoanHistoryEntry;
+import com.example.library.history.LoanHistoryRepository;
+import com.example.library.index.ActiveLoanIndex;
+import com.example.library.index.TakenUsernames;
+import com.example.library.model.Loan;
+import com.example.library.model.Member;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.web.EntityTags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Member use cases, each in one transaction. Every change is also recorded in the change-event outbox.
+ */
+@Service
+public class MemberService {
+
+    // SQLSTATE of a unique-constraint violation in both PostgreSQL and H2
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanHistoryRepository loanHistoryRepository;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private ActiveLoanIndex activeLoanIndex;
+
+    @Autowired
+    private TakenUsernames takenUsernames;
+
+    @Transactional(readOnly = true)
+    public List<Member> getMembers(long after, Limit limit) {
+        return memberRepository.findByIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Stream<Member> streamMembers() {
+        return memberRepository.streamAllByOrderByIdAsc();
+    }
+
+    @Transactional(readOnly = true)
+    public Member getMember(Long id) {
+        return memberRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + id));
+    }
+
+    /**
+     * Returns the member's loans, optionally with book and author details joined in the same query.
+     */
+    @Transactional(readOnly = true)
+    public List<MemberLoanView> getMemberLoans(Long id, boolean withBook, boolean withAuthor) {
+        List<MemberLoanView> loans;
+        if (activeLoanIndex.countActive(id).orElse(-1) == 0) {
+            // The index never misses a committed loan, so a member it has none for needs no loan query
+            loans = List.of();
+        } else if (withAuthor) {
+            loans = loanRepository.findViewsWithBookAndAuthorByMemberId(id);
+        } else if (withBook) {
+            loans = loanRepository.findViewsWithBookByMemberId(id);
+        } else {
+            loans = loanRepository.findViewsByMemberId(id);
+        }
+
+        // Only an empty result needs the extra query to tell "no loans" from "no such member"
+        if (loans.isEmpty() && !memberRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Member not found with id " + id);
+        }
+        return loans;
+    }
+
+    /**
+     * Returns the ids of the member's active loans and how many more they may borrow, from the active-loan index
+     * when it is loaded.
+     */
+    @Transactional(readOnly = true)
+    public MemberActiveLoans getActiveLoans(Long id) {
+        List<Long> loanIds = activeLoanIndex.activeLoans(id)
+                .orElseGet(() -> loanRepository.findByMemberId(id).stream().map(Loan::getId).sorted().toList());
+        if (loanIds.isEmpty() && !memberRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Member not found with id " + id);
+        }
+        return new MemberActiveLoans(id, loanIds, Math.max(0, LoanService.MAX_LOANS_PER_MEMBER - loanIds.size()));
+    }
+
+    /**
+     * Returns a page of the member's returned loans, optionally limited to loans lent in [from, to).
+     */
+    @Transactional(readOnly = true)
+    public List<LoanHistoryEntry> getMemberHistory(Long id, long after, LocalDate from, LocalDate to, int limit) {
+        List<LoanHistoryEntry> history = loanHistoryRepository.findByMemberId(id, after, from, to, limit);
+        if (history.isEmpty() && !memberRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Member not found with id " + id);
+        }
+        return history;
+    }
+
+    /**
+     * Whether no member has the username in any letter case. Names the username filter has never seen are answered
+     * without a query (and without a transaction, so without a connection); the rest with one indexed lookup.
+     */
+    public boolean isUsernameAvailable(String username) {
+        if (username == null || username.length() < 3 || username.length() > 50) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Username must be between 3 and 50 characters");
+        }
+        return takenUsernames.isDefinitelyFree(username) || !memberRepository.existsByUsernameIgnoreCase(username);
+    }
+
+    /**
+     * Registers a member with a single INSERT: the unique index on {@code lower(username)} decides whether the
+     * name is free, so there is no lookup beforehand that a concurrent signup could slip past.
+     */
+    @Transactional
+    public Member createMember(Member member) {
+        Member saved;
+        try {
+            saved = memberRepository.save(member);
+        } catch (DataIntegrityViolationException e) {
+            if (isUniqueViolation(e)) {
+                throw new UsernameTakenException("Username already exists.");
+            }
+            throw e;
+        }
+        takenUsernames.add(saved.getUsername());
+        outbox.record(ChangeEvent.Aggregate.MEMBER, saved.getId(), ChangeEvent.Type.CREATED, saved);
+        return saved;
+    }
+
+    @Transactional
+    public Member updateMember(Long id, Member memberDetails, String ifMatch) {
+        Member member = memberRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Member not found with id " + id));
+        EntityTags.checkIfMatch(ifMatch, member);
+        member.setUsername(memberDetails.getUsername());
+        takenUsernames.add(memberDetails.getUsername());
+        member.setEmail(memberDetails.getEmail());
+        member.setAddress(memberDetails.getAddress());
+        member.setPhoneNumber(memberDetails.getPhoneNumber());
+        outbox.record(ChangeEvent.Aggregate.MEMBER, id, ChangeEvent.Type.UPDATED, member);
+        // Written by dirty checking at commit, which happens before the caller reads the new version
+        return member;
+    }
+
+    @Transactional
+    public void deleteMember(Long id) {
+        if (memberRepository.deleteRowById(id) == 0) {
+            throw new ResourceNotFoundException("Member not found with id " + id);
+        }
+        outbox.record(ChangeEvent.Aggregate.MEMBER, id, ChangeEvent.Type.DELETED, null);
+    }
+
+    // The member's only unique key besides the id is its username
+    private static boolean isUniqueViolation(DataIntegrityViolationException e) {
+        return e.getMostSpecificCause() instanceof SQLException sql && UNIQUE_VIOLATION.equals(sql.getSQLState());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.library.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Warns at startup about one-off PostgreSQL migrations under {@code db/migrations} that have not been run.
+ *
+ * Indexes on existing tables are built there with {@code CREATE INDEX CONCURRENTLY}, which cannot run from the
+ * per-boot schema script. Until such an index exists and is valid, the queries it serves scan the table instead.
+ * Does nothing on other databases, whose schema script creates the indexes itself.
+ */
+@Component
+public class SchemaMigrationCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrationCheck.class);
+
+    private static final String VALID_INDEX = "SELECT EXISTS (SELECT 1 FROM pg_index i "
+            + "JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ? AND i.indisvalid)";
+
+    // The index each migration builds, in the order the migrations are meant to run
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration("005-1-expand-book-search-indexes.sql", "idx_book_search_text"),
+            new Migration("005-1-expand-book-search-indexes.sql", "idx_book_genre"),
+            new Migration("005-1-expand-book-search-indexes.sql", "idx_book_price"),
+            new Migration("005-1-expand-book-search-indexes.sql", "idx_book_author_id"),
+            new Migration("007-1-expand-loan-member-index.sql", "idx_loan_member_id"),
+            new Migration("010-expand-loan-return-date-index.sql", "idx_loan_return_date_id"),
+            new Migration("024-2-unique-username-index.sql", "idx_member_username_lower"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            return;
+        }
+        for (Migration migration : MIGRATIONS) {
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(VALID_INDEX, Boolean.class, migration.index()))) {
+                log.warn("Index {} is missing or invalid; run db/migrations/{}", migration.index(), migration.file());
+            }
+        }
+    }
+
+    private record Migration(String file, String index) {
+    }
+}
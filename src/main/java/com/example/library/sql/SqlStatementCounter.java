@@ -0,0 +1,40 @@
+package com.example.library.sql;
+
+/**
+ * Counts the JDBC statements executed on the current thread.
+ *
+ * The count only ever grows; a {@link Span} remembers where it started, so spans can overlap (the request
+ * filter and a test assertion around the same call) without interfering. A JDBC batch counts as one statement,
+ * since it is one round trip.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<long[]> EXECUTED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private SqlStatementCounter() {
+    }
+
+    public static Span start() {
+        return new Span(executed());
+    }
+
+    static void increment() {
+        EXECUTED.get()[0]++;
+    }
+
+    private static long executed() {
+        return EXECUTED.get()[0];
+    }
+
+    public static final class Span {
+        private final long start;
+
+        private Span(long start) {
+            this.start = start;
+        }
+
+        public long count() {
+            return executed() - start;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.library.sql;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every {@link DataSource} bean so each executed statement is counted by {@link SqlStatementCounter},
+ * whether it comes from Hibernate or a JdbcTemplate. Set {@code library.sql.statement-count.enabled=false}
+ * to use the raw pool.
+ */
+@Component
+@ConditionalOnProperty(name = "library.sql.statement-count.enabled", matchIfMissing = true)
+public class StatementCountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                    .name(beanName)
+                    .listener(new StatementCountingListener())
+                    .build();
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.library.stats;
+
+import com.example.library.dto.CirculationStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Aggregates the per-book loan counters ({@code book.loan_count}) into the circulation statistics.
+ *
+ * Every query reads the book table only, so its cost follows the size of the catalog and never the number
+ * of loans ever made. The top books are sorted on each refresh rather than read from an index on
+ * {@code loan_count}: every checkout updates that column, and leaving it unindexed keeps those updates HOT.
+ */
+@Repository
+public class CirculationStatsRepository {
+
+    private static final String TOP_BOOKS = "SELECT id, title, author_id, loan_count FROM book "
+            + "WHERE loan_count > 0 ORDER BY loan_count DESC, id LIMIT ?";
+    private static final String GENRES = "SELECT genre, COUNT(*) AS books, SUM(loan_count) AS loans FROM book "
+            + "GROUP BY genre ORDER BY loans DESC, genre";
+    private static final String TOP_AUTHORS = "SELECT a.id, a.name, t.books, t.loans FROM "
+            + "(SELECT author_id, COUNT(*) AS books, SUM(loan_count) AS loans FROM book GROUP BY author_id) t "
+            + "JOIN author a ON a.id = t.author_id ORDER BY t.loans DESC, a.id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<CirculationStats.BookCount> findTopBooks(int limit) {
+        return jdbcTemplate.query(TOP_BOOKS, (rs, rowNum) -> new CirculationStats.BookCount(
+                rs.getLong("id"), rs.getString("title"), rs.getLong("author_id"), rs.getLong("loan_count")), limit);
+    }
+
+    public List<CirculationStats.GenreCount> findGenres() {
+        return jdbcTemplate.query(GENRES, (rs, rowNum) -> new CirculationStats.GenreCount(
+                rs.getString("genre"), rs.getLong("books"), rs.getLong("loans")));
+    }
+
+    public List<CirculationStats.AuthorCount> findTopAuthors(int limit) {
+        return jdbcTemplate.query(TOP_AUTHORS, (rs, rowNum) -> new CirculationStats.AuthorCount(
+                rs.getLong("id"), rs.getString("name"), rs.getLong("books"), rs.getLong("loans")), limit);
+    }
+}
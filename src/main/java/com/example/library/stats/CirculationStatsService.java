@@ -0,0 +1,55 @@
+package com.example.library.stats;
+
+import com.example.library.dto.CirculationStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Serves the circulation statistics from an in-memory snapshot.
+ *
+ * Checkouts count each loan on the book row as they happen (see {@code BookRepository.decrementAvailableCopies}),
+ * and the snapshot rolls those counters up by book, genre and author every
+ * {@code library.stats.refresh-interval}, so a statistics request does no database work at all. The books and
+ * authors lists keep the top {@code library.stats.top-size} entries.
+ */
+@Service
+public class CirculationStatsService {
+
+    @Autowired
+    private CirculationStatsRepository circulationStatsRepository;
+
+    @Value("${library.stats.top-size:100}")
+    private int topSize;
+
+    private volatile CirculationStats snapshot;
+
+    public CirculationStats current() {
+        CirculationStats current = snapshot;
+        return current != null ? current : refresh();
+    }
+
+    public int topSize() {
+        return topSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.stats.refresh-interval:PT1M}",
+            initialDelayString = "${library.stats.refresh-interval:PT1M}")
+    @Transactional(readOnly = true)
+    public CirculationStats refresh() {
+        Instant asOf = Instant.now();
+        CirculationStats refreshed = new CirculationStats(asOf,
+                circulationStatsRepository.findTopBooks(topSize),
+                circulationStatsRepository.findGenres(),
+                circulationStatsRepository.findTopAuthors(topSize));
+        snapshot = refreshed;
+        return refreshed;
+    }
+}
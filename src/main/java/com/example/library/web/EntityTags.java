@@ -0,0 +1,87 @@
+package com.example.library.web;
+
+import com.example.library.exception.PreconditionFailedException;
+import com.example.library.model.Versioned;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * HTTP validators for entity responses.
+ *
+ * A single entity's ETag is its version ({@code W/"3"}); a page's is a digest of the ids and versions of its rows,
+ * so it changes whenever a row on the page is added, removed or modified. Both are weak: the same entity or page is
+ * served in several encodings (JSON, CBOR, Smile, gzipped or not), and a strong tag would claim those bytes are
+ * identical, letting a cache revalidate a CBOR copy with the 304 of a JSON request. Tomcat also only compresses
+ * responses without a strong ETag. Responses built with these validators let Spring MVC answer
+ * {@code If-None-Match} (and, for single entities, {@code If-Modified-Since}) with 304 before the body is
+ * serialized. On updates, {@link #checkIfMatch} turns {@code If-Match} into an optimistic lock on the version.
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    public static String of(Versioned entity) {
+        return "W/\"" + entity.getVersion() + "\"";
+    }
+
+    public static String of(Collection<? extends Versioned> entities) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (Versioned entity : entities) {
+            buffer.clear();
+            buffer.putLong(Objects.requireNonNullElse(entity.getId(), 0L));
+            buffer.putLong(Objects.requireNonNullElse(entity.getVersion(), -1L));
+            digest.update(buffer.array());
+        }
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    public static <T extends Versioned> ResponseEntity<T> ok(T entity) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (entity.getVersion() != null) {
+            response.eTag(of(entity));
+        }
+        if (entity.getLastModified() != null) {
+            response.lastModified(entity.getLastModified());
+        }
+        return response.body(entity);
+    }
+
+    /**
+     * Rejects the update with 412 unless {@code If-Match} is absent, {@code *}, or lists the current version, as
+     * {@code W/"3"} or {@code "3"}. Only the version is compared: an update replaces the entity whichever encoding
+     * the client read it in.
+     */
+    public static void checkIfMatch(String ifMatch, Versioned current) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return;
+        }
+        String etag = of(current);
+        String version = "\"" + current.getVersion() + "\"";
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(version)) {
+                return;
+            }
+        }
+        throw new PreconditionFailedException("Entity " + current.getId() + " has changed; current ETag is " + etag);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.library.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a repository {@link Stream} to the response as a JSON array while the rows are still being
+ * read from the JDBC cursor.
+ *
+ * The stream is consumed inside a read-only transaction (PostgreSQL only honours the fetch size with
+ * auto-commit disabled) and every row is detached once it has been written, so neither the
+ * persistence context nor the response buffer grows with the size of the table.
+ */
+@Component
+public class JsonStreamWriter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(Supplier<Stream<T>> rows) {
+        StreamingResponseBody body = out -> readOnlyTransaction().executeWithoutResult(status -> write(out, rows));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private <T> void write(OutputStream out, Supplier<Stream<T>> rows) {
+        try (Stream<T> stream = rows.get();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            Iterator<T> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                T row = iterator.next();
+                generator.writeObject(row);
+                entityManager.detach(row);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.library.web;
+
+import com.example.library.model.Versioned;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for cursor (keyset) pagination of the list endpoints.
+ *
+ * Pages are requested with {@code ?after=<id>&limit=<n>} and always ordered by id, so each page is a
+ * bounded index range scan instead of an OFFSET or a full table read. When a page is full, the id of
+ * its last row is returned in the {@value #NEXT_CURSOR_HEADER} header and is the {@code after} value
+ * for the next request. Lists ordered by more than the id use a composite cursor of the same columns.
+ * Pages carry an ETag (see {@link EntityTags}), so an unchanged page is answered with 304. They carry no
+ * Last-Modified, since removing a row from a page would not move it forward. Rows that are never updated,
+ * such as the loan history, are paged without a tag.
+ */
+public final class KeysetPagination {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private KeysetPagination() {
+    }
+
+    public static long after(Long after) {
+        return after == null ? 0L : after;
+    }
+
+    public static int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    public static Limit limit(int pageSize) {
+        return Limit.of(pageSize);
+    }
+
+    public static <T extends Versioned> ResponseEntity<List<T>> page(List<T> rows, int pageSize,
+                                                                     Function<T, ?> cursorOf) {
+        return withCursor(ResponseEntity.ok().eTag(EntityTags.of(rows)), rows, pageSize, cursorOf).body(rows);
+    }
+
+    public static <T> ResponseEntity<List<T>> immutablePage(List<T> rows, int pageSize, Function<T, ?> cursorOf) {
+        return withCursor(ResponseEntity.ok(), rows, pageSize, cursorOf).body(rows);
+    }
+
+    private static <T> ResponseEntity.BodyBuilder withCursor(ResponseEntity.BodyBuilder response, List<T> rows,
+                                                             int pageSize, Function<T, ?> cursorOf) {
+        if (!rows.isEmpty() && rows.size() >= pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(cursorOf.apply(rows.get(rows.size() - 1))));
+        }
+        return response;
+    }
+}
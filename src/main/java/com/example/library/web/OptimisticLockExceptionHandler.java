@@ -0,0 +1,25 @@
+package com.example.library.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * An update that lost a race with another write: 412 if the client sent If-Match (its precondition no longer
+ * holds), otherwise 409 so it can re-read and retry.
+ */
+@RestControllerAdvice
+public class OptimisticLockExceptionHandler {
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleConflict(OptimisticLockingFailureException e, HttpServletRequest request) {
+        HttpStatus status = request.getHeader(HttpHeaders.IF_MATCH) != null
+                ? HttpStatus.PRECONDITION_FAILED
+                : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body("The entity was modified concurrently; re-read it and retry");
+    }
+}
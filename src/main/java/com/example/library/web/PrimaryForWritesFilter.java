@@ -0,0 +1,36 @@
+package com.example.library.web;
+
+import com.example.library.datasource.ReplicaRoutingDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Keeps every statement of a writing request on the primary, including the read-only repository reads a
+ * write makes first (the author check in {@code POST /books}, the current-version load in a PUT), so a
+ * lagging replica can never feed a stale row into an update. Registered only when replicas are configured.
+ */
+public class PrimaryForWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (READ_METHODS.contains(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReplicaRoutingDataSource.PrimaryScope scope = ReplicaRoutingDataSource.usePrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.library.web;
+
+import com.example.library.sql.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements each request executes on its request thread.
+ *
+ * The count is sent in the {@value #HEADER} header, which is added when the response is committed. It
+ * therefore covers everything the controller ran before it started writing the body. The full count,
+ * including statements run while the body is serialized, is recorded in the
+ * {@code library.http.sql.statements} summary, tagged by route. Requests that go over
+ * {@code library.sql.statement-budget} are logged as warnings.
+ */
+@Component
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-SQL-Statement-Count";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementCountFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.sql.statement-budget:20}")
+    private long statementBudget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementCounter.Span span = SqlStatementCounter.start();
+        CountingResponse countingResponse = new CountingResponse(response, span);
+        try {
+            chain.doFilter(request, countingResponse);
+        } finally {
+            countingResponse.addCountHeader();
+            record(request, span.count());
+        }
+    }
+
+    private void record(HttpServletRequest request, long statements) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("library.http.sql.statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements);
+        if (statements > statementBudget) {
+            log.warn("{} {} executed {} SQL statements (budget {})", request.getMethod(), uri, statements,
+                    statementBudget);
+        }
+    }
+
+    /**
+     * Adds the count header just before the first byte of the body is written, while headers can still be set.
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private final SqlStatementCounter.Span span;
+        private boolean headerAdded;
+
+        private CountingResponse(HttpServletResponse response, SqlStatementCounter.Span span) {
+            super(response);
+            this.span = span;
+        }
+
+        private void addCountHeader() {
+            if (!headerAdded && !isCommitted()) {
+                setHeader(HEADER, Long.toString(span.count()));
+            }
+            headerAdded = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addCountHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addCountHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addCountHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addCountHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addCountHeader();
+            super.sendError(sc);
+        }
+    }
+}
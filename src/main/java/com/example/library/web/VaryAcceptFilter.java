@@ -0,0 +1,30 @@
+package com.example.library.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sends {@code Vary: Accept} with every response.
+ *
+ * The same URL answers in JSON, CBOR or Smile (and {@code GET /events} as Server-Sent Events) depending on
+ * {@code Accept}, so a shared cache must not hand one client's encoding to another. The header is added before the
+ * request is handled, so it is also on 304 and error responses; Tomcat adds {@code Accept-Encoding} itself when it
+ * compresses a response.
+ */
+@Component
+public class VaryAcceptFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        chain.doFilter(request, response);
+    }
+}
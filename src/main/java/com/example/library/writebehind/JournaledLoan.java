@@ -0,0 +1,33 @@
+package com.example.library.writebehind;
+
+import com.example.library.model.Loan;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A checked-out loan as acknowledged to the client and kept in the {@link LoanJournal} until it is written.
+ */
+public record JournaledLoan(long id, long memberId, long bookId, LocalDate lendDate, LocalDate returnDate,
+                            Instant lastModified) {
+
+    public static JournaledLoan of(Loan loan) {
+        return new JournaledLoan(loan.getId(), loan.getMemberId(), loan.getBookId(), loan.getLendDate(),
+                loan.getReturnDate(), loan.getLastModified());
+    }
+
+    /**
+     * The loan as its row reads once written, at version 0.
+     */
+    public Loan toLoan() {
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setMemberId(memberId);
+        loan.setBookId(bookId);
+        loan.setLendDate(lendDate);
+        loan.setReturnDate(returnDate);
+        loan.setVersion(0L);
+        loan.setLastModified(lastModified);
+        return loan;
+    }
+}
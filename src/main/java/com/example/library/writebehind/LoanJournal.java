@@ -0,0 +1,239 @@
+package com.example.library.writebehind;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file log of checked-out loans that have not been written to the database yet.
+ *
+ * The log is a directory of numbered segments. Records are appended to the newest one as fixed-size binary
+ * entries, each ending in a CRC-32C of its contents, so a record torn by a crash mid-write is recognised and
+ * ignored when the segments are read back. {@link #roll()} starts a new segment; once everything appended before
+ * a roll is in the database, the older segments are deleted with {@link #deleteThrough(long)}.
+ *
+ * With {@code fsync} on, {@link #awaitDurable(long)} forces the segment to disk before returning. Appenders that
+ * arrive while a force is running are covered by the next one, so one force serves every record appended before
+ * it (group commit). Without it, records survive a crash of the process but not of the machine.
+ */
+public final class LoanJournal implements Closeable {
+
+    static final int RECORD_BYTES = 6 * Long.BYTES + Integer.BYTES;
+    private static final Pattern SEGMENT = Pattern.compile("loans-(\\d{20})\\.journal");
+
+    private final Path directory;
+    private final boolean fsync;
+    // Lock order: sync before append, so a roll never closes a segment that is being forced
+    private final Object syncLock = new Object();
+    private final Object appendLock = new Object();
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel channel;
+    private long segment;
+    private long appended;
+    private long durable;
+
+    /**
+     * Opens a new segment after any already in {@code directory}; existing segments are left for
+     * {@link #read(Path)} and {@link #deleteThrough(long)}.
+     */
+    public LoanJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segmentNumbers(directory);
+            segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+            channel = open(++segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the loan journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends a record and returns its sequence number for {@link #awaitDurable(long)}.
+     */
+    public long append(JournaledLoan loan) {
+        synchronized (appendLock) {
+            buffer.clear();
+            buffer.putLong(loan.id())
+                    .putLong(loan.memberId())
+                    .putLong(loan.bookId())
+                    .putLong(loan.lendDate().toEpochDay())
+                    .putLong(loan.returnDate().toEpochDay())
+                    .putLong(ChronoUnit.MICROS.between(Instant.EPOCH, loan.lastModified()));
+            crc.reset();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to the loan journal", e);
+            }
+            return ++appended;
+        }
+    }
+
+    /**
+     * Returns once the record with the given sequence number is on disk; returns at once with {@code fsync} off.
+     */
+    public void awaitDurable(long sequence) {
+        if (!fsync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= sequence) {
+                return;
+            }
+            FileChannel current;
+            long target;
+            synchronized (appendLock) {
+                current = channel;
+                target = appended;
+            }
+            force(current);
+            durable = target;
+        }
+    }
+
+    /**
+     * Makes later appends go to a new segment and returns the number of the last segment before it.
+     */
+    public long roll() {
+        synchronized (syncLock) {
+            synchronized (appendLock) {
+                try {
+                    if (fsync) {
+                        force(channel);
+                        durable = appended;
+                    }
+                    FileChannel next = open(segment + 1);
+                    channel.close();
+                    channel = next;
+                    return segment++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot roll the loan journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments numbered up to {@code last}, whose records are all in the database.
+     */
+    public void deleteThrough(long last) {
+        delete(segments(directory).stream().filter(path -> number(path) <= last).toList());
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncLock) {
+            synchronized (appendLock) {
+                try {
+                    if (fsync) {
+                        force(channel);
+                    }
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot close the loan journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The journal's segments, oldest first.
+     */
+    public static List<Path> segments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> SEGMENT.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list the loan journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Reads every complete record of every segment, oldest first. A segment is read up to its first torn or
+     * corrupt record, which can only be the last one written before a crash.
+     */
+    public static List<JournaledLoan> read(Path directory) {
+        List<JournaledLoan> loans = new ArrayList<>();
+        CRC32C crc = new CRC32C();
+        for (Path path : segments(directory)) {
+            ByteBuffer bytes;
+            try {
+                bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read loan journal segment " + path, e);
+            }
+            while (bytes.remaining() >= RECORD_BYTES) {
+                int start = bytes.position();
+                crc.reset();
+                crc.update(bytes.array(), start, RECORD_BYTES - Integer.BYTES);
+                if (bytes.getInt(start + RECORD_BYTES - Integer.BYTES) != (int) crc.getValue()) {
+                    break;
+                }
+                loans.add(new JournaledLoan(bytes.getLong(), bytes.getLong(), bytes.getLong(),
+                        LocalDate.ofEpochDay(bytes.getLong()), LocalDate.ofEpochDay(bytes.getLong()),
+                        Instant.EPOCH.plus(bytes.getLong(), ChronoUnit.MICROS)));
+                bytes.getInt();
+            }
+        }
+        return loans;
+    }
+
+    public static void delete(List<Path> segments) {
+        for (Path path : segments) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete loan journal segment " + path, e);
+            }
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        return FileChannel.open(directory.resolve(String.format("loans-%020d.journal", number)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static void force(FileChannel channel) {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot sync the loan journal", e);
+        }
+    }
+
+    private static List<Long> segmentNumbers(Path directory) {
+        return segments(directory).stream().map(LoanJournal::number).toList();
+    }
+
+    private static long number(Path path) {
+        Matcher matcher = SEGMENT.matcher(path.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : Long.MAX_VALUE;
+    }
+}
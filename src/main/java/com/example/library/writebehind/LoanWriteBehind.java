@@ -0,0 +1,462 @@
+package com.example.library.writebehind;
+
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.repository.BookRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind for checkouts ({@code library.loans.write-behind.enabled}): the member check and the copy
+ * reservation still commit with the checkout, but the loan row and its change event are written later, together
+ * with every other loan checked out in the meantime.
+ *
+ * A checkout is acknowledged once its loan is in the {@link LoanJournal}, and with
+ * {@code library.loans.write-behind.fsync} on disk. Every {@code library.loans.write-behind.interval} the queued
+ * loans are inserted with JDBC batches of {@code library.loans.write-behind.batch-size} rows and their events
+ * recorded, all in one transaction, after which their journal segments are deleted. A failed flush leaves them
+ * queued for the next one. If a record cannot be written or synced, the checkout is answered with 503 and its copy
+ * given back; a record that reached the file before its sync failed can still be replayed after a crash, so such
+ * a checkout may turn up as a loan after a restart. Loan ids are reserved in blocks from {@code loan_id_seq}, the sequence behind the
+ * loan id column, so the ids handed out never collide with rows inserted the usual way.
+ *
+ * Until it is flushed a loan counts against the member's limit (see ActiveLoanIndex) but is not in the
+ * {@code loan} table; callers that address loans by id call {@link #awaitFlushed(Collection)} first. Stopping
+ * the application flushes the queue. After a crash the journal is replayed on the next start, before the
+ * application takes requests: loans missing from both {@code loan} and {@code loan_history} are inserted with
+ * their events, and the available copies of the journaled books are recounted from their active loans, each book
+ * that changes being recorded as updated. Each instance keeps its own journal, which must be on storage that
+ * outlives the process, and only counts its own queued loans against the member limit; the recount cannot see
+ * other instances' queued loans either, so this mode assumes a single instance writes loans. With
+ * {@code library.loans.write-behind.recount-all-books} the recovery recounts every book, which also returns a copy
+ * taken by a checkout that crashed before it reached the journal.
+ */
+@Component
+public class LoanWriteBehind implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanWriteBehind.class);
+
+    private static final String INSERT = "INSERT INTO loan (id, member_id, book_id, lend_date, return_date, version, "
+            + "last_modified) VALUES (?, ?, ?, ?, ?, 0, ?)";
+    private static final String NEXT_IDS = "SELECT nextval('loan_id_seq') FROM generate_series(1, ?)";
+    private static final String WRITTEN = "SELECT id FROM loan WHERE id IN (:ids) UNION ALL "
+            + "SELECT id FROM loan_history WHERE lend_date BETWEEN :from AND :to AND id IN (:ids)";
+    private static final int LOOKUP_CHUNK = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.loans.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${library.loans.write-behind.journal-dir:loan-journal}")
+    private Path journalDir;
+
+    @Value("${library.loans.write-behind.fsync:true}")
+    private boolean fsync;
+
+    @Value("${library.loans.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${library.loans.write-behind.id-block-size:100}")
+    private int idBlockSize;
+
+    @Value("${library.loans.write-behind.recount-all-books:false}")
+    private boolean recountAllBooks;
+
+    private volatile LoanJournal journal;
+    private volatile boolean running;
+    // Loans in the journal that are not in the database yet; queue order is journal order
+    private final List<JournaledLoan> queue = new ArrayList<>();
+    private final Map<Long, JournaledLoan> pending = new ConcurrentHashMap<>();
+    // Loans of checkout transactions that have not completed yet, so they count against the member's limit from
+    // before the member's row lock is released until they are pending
+    private final Map<Long, JournaledLoan> checkingOut = new ConcurrentHashMap<>();
+    private final ArrayDeque<Long> ids = new ArrayDeque<>();
+    private final Object flushLock = new Object();
+    private Counter flushed;
+    private Counter recovered;
+
+    @PostConstruct
+    void registerMetrics() {
+        flushed = Counter.builder("library.loans.write-behind.flushed")
+                .description("Write-behind loans inserted by a flush")
+                .register(meterRegistry);
+        recovered = Counter.builder("library.loans.write-behind.recovered")
+                .description("Loans inserted from the journal at startup after a crash")
+                .register(meterRegistry);
+        Gauge.builder("library.loans.write-behind.pending", pending, Map::size)
+                .description("Acknowledged loans waiting to be written")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays a journal left behind by a crash, then opens a new one. Runs before the web server starts.
+     */
+    @Override
+    public void start() {
+        recover(journalDir);
+        if (enabled) {
+            journal = new LoanJournal(journalDir, fsync);
+        }
+        running = true;
+    }
+
+    /**
+     * Flushes the queue once the web server has stopped taking requests. The journal is kept if that fails.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (journal == null) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Could not write {} queued loans at shutdown; they stay in {} for the next start",
+                    pending.size(), journalDir, e);
+        }
+        journal.close();
+        if (pending.isEmpty()) {
+            journal.deleteThrough(Long.MAX_VALUE);
+        }
+        journal = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Start before the web server and stop after it
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Gives a loan being checked out in the current transaction the next reserved id, and its version and
+     * modification time as the flush will write them.
+     */
+    public void assignId(Loan loan) {
+        synchronized (ids) {
+            if (ids.isEmpty()) {
+                ids.addAll(jdbcTemplate.queryForList(NEXT_IDS, Long.class, idBlockSize));
+            }
+            loan.setId(ids.removeFirst());
+        }
+        loan.setVersion(0L);
+        loan.setLastModified(Instant.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    /**
+     * Journals the loan once the current transaction commits, before the checkout returns. If the journal cannot
+     * be written or synced, {@code undo} runs and the checkout fails with 503. Call it while holding the member's
+     * row lock: the loan is counted by {@link #countPending(long)} from now on, unless the transaction rolls back.
+     */
+    public void enqueue(Loan loan, Runnable undo) {
+        JournaledLoan journaled = JournaledLoan.of(loan);
+        checkingOut.put(journaled.id(), journaled);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                LoanJournal current = journal;
+                long sequence;
+                try {
+                    if (current == null) {
+                        throw new IllegalStateException("The loan journal is closed");
+                    }
+                    synchronized (queue) {
+                        sequence = current.append(journaled);
+                        queue.add(journaled);
+                        pending.put(journaled.id(), journaled);
+                    }
+                } catch (UncheckedIOException | IllegalStateException e) {
+                    undo.run();
+                    throw notJournaled(e);
+                }
+                try {
+                    current.awaitDurable(sequence);
+                } catch (UncheckedIOException e) {
+                    if (withdraw(journaled)) {
+                        undo.run();
+                        throw notJournaled(e);
+                    }
+                    log.warn("Could not sync the loan journal, but loan {} has been written since", journaled.id(), e);
+                }
+            }
+
+            // Once committed, the loan is pending before it leaves here
+            @Override
+            public void afterCompletion(int status) {
+                checkingOut.remove(journaled.id());
+            }
+        });
+    }
+
+    // Takes a loan whose record may not be durable back out of the queue, unless a flush has written it meanwhile.
+    // Holding the flush lock, a loan is either still queued or in the database
+    private boolean withdraw(JournaledLoan loan) {
+        synchronized (flushLock) {
+            boolean queued;
+            synchronized (queue) {
+                queued = queue.remove(loan);
+            }
+            if (queued) {
+                pending.remove(loan.id());
+            }
+            return queued;
+        }
+    }
+
+    private static ResponseStatusException notJournaled(RuntimeException cause) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The checkout could not be journaled", cause);
+    }
+
+    /**
+     * Writes the queued loans now if any of the given ones are among them. Call it before the caller's transaction
+     * starts: the flush commits on a connection of its own.
+     */
+    public void awaitFlushed(Collection<Long> loanIds) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Long id : loanIds) {
+            if (id != null && pending.containsKey(id)) {
+                flush();
+                return;
+            }
+        }
+    }
+
+    public void awaitFlushed(Long loanId) {
+        if (loanId != null && pending.containsKey(loanId)) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the queued loans now if the member has any among them, so listings of the member's loans include
+     * them. Like {@link #awaitFlushed(Collection)}, call it before the caller's transaction starts.
+     */
+    public void awaitFlushedForMember(Long memberId) {
+        if (memberId != null && pending.values().stream().anyMatch(loan -> loan.memberId() == memberId)) {
+            flush();
+        }
+    }
+
+    /**
+     * The member's loans that are checked out on this instance but not written yet, including those whose
+     * checkout is still committing.
+     */
+    public long countPending(long memberId) {
+        return Stream.concat(checkingOut.values().stream(), pending.values().stream())
+                .filter(loan -> loan.memberId() == memberId)
+                .map(JournaledLoan::id)
+                .distinct()
+                .count();
+    }
+
+    /**
+     * The loans acknowledged but not written yet; a loan leaves this view only after its row has committed.
+     */
+    public Collection<JournaledLoan> pendingLoans() {
+        return List.copyOf(pending.values());
+    }
+
+    @Scheduled(fixedDelayString = "${library.loans.write-behind.interval:PT0.2S}")
+    public void flushQueued() {
+        if (!running || journal == null) {
+            return;
+        }
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            log.warn("Write-behind flush of {} loans failed; retrying on the next interval", pending.size(), e);
+        }
+    }
+
+    /**
+     * Inserts every queued loan and records its event in one transaction, then deletes the journal segments
+     * that held them. Returns the number of loans written.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            LoanJournal current = journal;
+            List<JournaledLoan> batch;
+            long through;
+            synchronized (queue) {
+                if (queue.isEmpty() || current == null) {
+                    return 0;
+                }
+                through = current.roll();
+                batch = new ArrayList<>(queue);
+                queue.clear();
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                synchronized (queue) {
+                    queue.addAll(0, batch);
+                }
+                throw e;
+            }
+            batch.forEach(loan -> pending.remove(loan.id()));
+            current.deleteThrough(through);
+            flushed.increment(batch.size());
+            return batch.size();
+        }
+    }
+
+    /**
+     * Inserts the loans in {@code directory}'s journal that never reached the database, recounts the available
+     * copies of their books (of every book with {@code recount-all-books}) and deletes the journal. Returns the
+     * number of loans inserted.
+     */
+    public int recover(Path directory) {
+        List<Path> segments = LoanJournal.segments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Map<Long, JournaledLoan> journaled = new LinkedHashMap<>();
+        for (JournaledLoan loan : LoanJournal.read(directory)) {
+            journaled.put(loan.id(), loan);
+        }
+        Set<Long> written = written(journaled.values());
+        List<JournaledLoan> missing = journaled.values().stream()
+                .filter(loan -> !written.contains(loan.id()))
+                .toList();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (!missing.isEmpty()) {
+                insert(missing);
+            }
+            List<Long> miscounted = new ArrayList<>();
+            if (recountAllBooks) {
+                // Also gives back a copy taken by a checkout that crashed before its loan was journaled
+                miscounted.addAll(bookRepository.findMiscountedIds());
+            } else {
+                List<Long> books = journaled.values().stream().map(JournaledLoan::bookId).distinct().sorted().toList();
+                for (int from = 0; from < books.size(); from += LOOKUP_CHUNK) {
+                    miscounted.addAll(bookRepository.findMiscountedIds(
+                            books.subList(from, Math.min(books.size(), from + LOOKUP_CHUNK))));
+                }
+            }
+            recount(miscounted);
+        });
+        LoanJournal.delete(segments);
+        recovered.increment(missing.size());
+        log.info("Recovered the loan journal in {}: {} loans journaled, {} of them inserted",
+                directory, journaled.size(), missing.size());
+        return missing.size();
+    }
+
+    // Recounts the given books and records each as updated; the recount clears the persistence context, so the
+    // books read back carry the new count and version
+    private void recount(List<Long> bookIds) {
+        for (int from = 0; from < bookIds.size(); from += LOOKUP_CHUNK) {
+            List<Long> chunk = bookIds.subList(from, Math.min(bookIds.size(), from + LOOKUP_CHUNK));
+            bookRepository.reconcileAvailableCopies(chunk);
+            for (Book book : bookRepository.findAllById(chunk)) {
+                outbox.record(ChangeEvent.Aggregate.BOOK, book.getId(), ChangeEvent.Type.UPDATED, book);
+            }
+        }
+    }
+
+    private void write(List<JournaledLoan> batch) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> insert(batch));
+    }
+
+    private void insert(List<JournaledLoan> loans) {
+        jdbcTemplate.batchUpdate(INSERT, loans, batchSize, (ps, loan) -> {
+            ps.setLong(1, loan.id());
+            ps.setLong(2, loan.memberId());
+            ps.setLong(3, loan.bookId());
+            ps.setDate(4, Date.valueOf(loan.lendDate()));
+            ps.setDate(5, Date.valueOf(loan.returnDate()));
+            ps.setObject(6, loan.lastModified().atOffset(ZoneOffset.UTC));
+        });
+        for (JournaledLoan loan : loans) {
+            outbox.record(ChangeEvent.Aggregate.LOAN, loan.id(), ChangeEvent.Type.CREATED, loan.toLoan());
+        }
+    }
+
+    // Journaled loans already in the database, returned ones included; the lend dates bound the history partitions read
+    private Set<Long> written(Collection<JournaledLoan> loans) {
+        Set<Long> written = new HashSet<>();
+        List<JournaledLoan> all = new ArrayList<>(loans);
+        for (int from = 0; from < all.size(); from += LOOKUP_CHUNK) {
+            List<JournaledLoan> chunk = all.subList(from, Math.min(all.size(), from + LOOKUP_CHUNK));
+            LocalDate earliest = chunk.stream().map(JournaledLoan::lendDate).min(Comparator.naturalOrder()).orElseThrow();
+            LocalDate latest = chunk.stream().map(JournaledLoan::lendDate).max(Comparator.naturalOrder()).orElseThrow();
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("ids", chunk.stream().map(JournaledLoan::id).toList())
+                    .addValue("from", earliest)
+                    .addValue("to", latest);
+            written.addAll(namedParameterJdbcTemplate.queryForList(WRITTEN, params, Long.class));
+        }
+        return written;
+    }
+}
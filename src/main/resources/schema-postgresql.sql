@@ -0,0 +1,35 @@
+-- Runs on every startup after Hibernate has updated the schema (spring.jpa.defer-datasource-initialization),
+-- so every statement here must be idempotent. Anything that locks a large table for the length of a scan (indexes
+-- on existing tables, backfills, dropping tables an older release still uses) is a one-off file in db/migrations.
+
+-- Returned loans move here (LoanHistoryRepository), keeping loan down to active loans. Partitioned by lend-date
+-- month; LoanHistoryPartitions creates upcoming months and drops expired ones, the default partition catches the rest
+CREATE TABLE IF NOT EXISTS loan_history (
+    id          BIGINT      NOT NULL,
+    member_id   BIGINT      NOT NULL,
+    book_id     BIGINT      NOT NULL,
+    lend_date   DATE        NOT NULL,
+    return_date DATE,
+    returned_at TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (lend_date, id)
+) PARTITION BY RANGE (lend_date);
+CREATE TABLE IF NOT EXISTS loan_history_default PARTITION OF loan_history DEFAULT;
+CREATE INDEX IF NOT EXISTS idx_loan_history_member_id ON loan_history (member_id, id);
+
+-- Change-event outbox (Outbox, OutboxRepository), written in the same transaction as the change it records;
+-- outbox_offset holds how far each sink has been published and which instance holds its publishing lease
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id           BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    aggregate    VARCHAR(16) NOT NULL,
+    aggregate_id BIGINT      NOT NULL,
+    type         VARCHAR(16) NOT NULL,
+    payload      TEXT,
+    occurred_at  TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_event_occurred_at ON outbox_event (occurred_at);
+CREATE TABLE IF NOT EXISTS outbox_offset (
+    sink          VARCHAR(64) PRIMARY KEY,
+    last_event_id BIGINT      NOT NULL
+);
+ALTER TABLE outbox_offset ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(64);
+ALTER TABLE outbox_offset ADD COLUMN IF NOT EXISTS lease_until TIMESTAMPTZ;
@@ -0,0 +1,150 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Loan;
+import com.example.library.repository.LoanRepository;
+import com.example.library.web.SqlStatementCountFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LibraryApplication.class, properties = "library.loans.index.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class ActiveLoanIndexTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    private Long memberId;
+    private Long bookId;
+    private Long unavailableBookId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fixture.reset();
+
+        Long authorId = fixture.author("Index Author").getId();
+        bookId = fixture.book(authorId, "Indexed", 10).getId();
+        unavailableBookId = fixture.book(authorId, "Indexed", 0).getId();
+        memberId = fixture.member("index-" + System.nanoTime()).getId();
+    }
+
+    // Loans are returned through the application, which the index follows, rather than deleted behind its back
+    @AfterEach
+    void returnLoans() throws Exception {
+        List<Long> open = loanRepository.findAll().stream().map(Loan::getId).toList();
+        if (!open.isEmpty()) {
+            mockMvc.perform(post("/loans/return").contentType(MediaType.APPLICATION_JSON).content(open.toString()))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void checkoutsAndReturns_AreReflectedInTheIndex() throws Exception {
+        long first = checkout(bookId);
+        long second = checkout(bookId);
+
+        mockMvc.perform(get("/members/{id}/loans/active", memberId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "0"))
+                .andExpect(jsonPath("$.loanIds.length()").value(2))
+                .andExpect(jsonPath("$.loanIds[0]").value(first))
+                .andExpect(jsonPath("$.remaining").value(3));
+
+        mockMvc.perform(delete("/loans/{id}", first)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/members/{id}/loans/active", memberId))
+                .andExpect(jsonPath("$.loanIds.length()").value(1))
+                .andExpect(jsonPath("$.loanIds[0]").value(second));
+        mockMvc.perform(get("/admin/loan-index"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.consistent").value(true))
+                .andExpect(jsonPath("$.loans").value(1));
+        assertEquals(1.0, meterRegistry.get("library.loans.index.loans").gauge().value());
+        assertTrue(meterRegistry.get("library.loans.index.memory").gauge().value() > 0);
+    }
+
+    @Test
+    void rolledBackCheckout_LeavesTheIndexUnchanged() throws Exception {
+        mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + unavailableBookId + "}"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(get("/members/{id}/loans/active", memberId))
+                .andExpect(jsonPath("$.loanIds.length()").value(0));
+        mockMvc.perform(get("/admin/loan-index")).andExpect(jsonPath("$.consistent").value(true));
+    }
+
+    @Test
+    void loanLimit_IsCheckedWithoutCountingLoansInTheDatabase() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            checkout(bookId);
+        }
+
+        // Only the member lock runs before the index rejects the sixth loan
+        mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "1"));
+    }
+
+    @Test
+    void drift_IsReportedAndRepairedByARebuild() throws Exception {
+        long indexed = checkout(bookId);
+        Loan unindexed = fixture.loan(memberId, bookId, LocalDate.now(), LocalDate.now().plusWeeks(1));
+        loanRepository.deleteById(indexed);
+
+        mockMvc.perform(get("/admin/loan-index"))
+                .andExpect(jsonPath("$.consistent").value(false))
+                .andExpect(jsonPath("$.missing").value(1))
+                .andExpect(jsonPath("$.unexpected").value(1));
+
+        mockMvc.perform(post("/admin/loan-index/rebuild"))
+                .andExpect(jsonPath("$.consistent").value(false))
+                .andExpect(jsonPath("$.loans").value(1));
+
+        mockMvc.perform(get("/admin/loan-index")).andExpect(jsonPath("$.consistent").value(true));
+        mockMvc.perform(get("/members/{id}/loans/active", memberId))
+                .andExpect(jsonPath("$.loanIds[0]").value(unindexed.getId()));
+    }
+
+    private long checkout(Long bookId) throws Exception {
+        String body = mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+}
@@ -4,12 +4,18 @@ import com.example.library.controller.AuthorController;
 import com.example.library.exception.ResourceNotFoundException;
 import com.example.library.model.Author;
 import com.example.library.repository.AuthorRepository;
+import com.example.library.service.AuthorService;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -19,6 +25,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class AuthorControllerTest {
@@ -26,12 +33,19 @@ class AuthorControllerTest {
     @Mock
     private AuthorRepository authorRepository;
 
+    @Mock
+    private JsonStreamWriter jsonStreamWriter;
+
+    @InjectMocks
+    private AuthorService authorService;
+
     @InjectMocks
     private AuthorController authorController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(authorController, "authorService", authorService);
     }
 
     @Test
@@ -39,13 +53,45 @@ class AuthorControllerTest {
         List<Author> authors = new ArrayList<>();
         authors.add(new Author());
 
-        when(authorRepository.findAll()).thenReturn(authors);
+        when(authorRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(authors);
 
-        ResponseEntity<List<Author>> response = authorController.getAllAuthors();
+        ResponseEntity<List<Author>> response = authorController.getAllAuthors(null, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(1, response.getBody().size());
-        verify(authorRepository, times(1)).findAll();
+        assertNull(response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+        verify(authorRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(KeysetPagination.DEFAULT_LIMIT));
+        verify(authorRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllAuthors_FullPageReturnsNextCursor() {
+        List<Author> authors = new ArrayList<>();
+        for (long i = 11; i <= 12; i++) {
+            Author author = new Author();
+            author.setId(i);
+            authors.add(author);
+        }
+
+        when(authorRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(2))).thenReturn(authors);
+
+        ResponseEntity<List<Author>> response = authorController.getAllAuthors(10L, 2);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("12", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void streamAuthors_UsesCursorStream() {
+        ResponseEntity<StreamingResponseBody> streamed = ResponseEntity.ok(out -> { });
+        when(jsonStreamWriter.<Author>stream(any())).thenReturn(streamed);
+
+        ResponseEntity<StreamingResponseBody> response = authorController.streamAuthors();
+
+        assertSame(streamed, response);
+        verify(jsonStreamWriter, times(1)).stream(any());
+        verify(authorRepository, never()).findAll();
     }
 
     @Test
@@ -92,29 +138,33 @@ class AuthorControllerTest {
         Author author = new Author();
         author.setId(1L);
 
-        when(authorRepository.findById(anyLong())).thenReturn(Optional.of(author));
-        when(authorRepository.save(any(Author.class))).thenReturn(author);
+        when(authorRepository.findCurrentById(anyLong())).thenReturn(Optional.of(author));
+        when(authorRepository.saveAndFlush(any(Author.class))).thenReturn(author);
 
         Author updatedDetails = new Author();
         updatedDetails.setName("Updated Name");
         updatedDetails.setDateOfBirth(LocalDate.of(1980, 1, 1));
-        ResponseEntity<Author> response = authorController.updateAuthor(1L, updatedDetails);
+        ResponseEntity<Author> response = authorController.updateAuthor(1L, updatedDetails, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("Updated Name", response.getBody().getName());
-        verify(authorRepository, times(1)).save(author);
+        verify(authorRepository, times(1)).saveAndFlush(author);
     }
 
     @Test
     void deleteAuthor_Success() {
-        Author author = new Author();
-        author.setId(1L);
-
-        when(authorRepository.findById(anyLong())).thenReturn(Optional.of(author));
+        when(authorRepository.deleteRowById(1L)).thenReturn(1);
 
         ResponseEntity<Void> response = authorController.deleteAuthor(1L);
 
         assertEquals(204, response.getStatusCodeValue());
-        verify(authorRepository, times(1)).delete(author);
+        verify(authorRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void deleteAuthor_NotFound() {
+        when(authorRepository.deleteRowById(1L)).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> authorController.deleteAuthor(1L));
     }
 }
\ No newline at end of file
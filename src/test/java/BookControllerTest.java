@@ -1,18 +1,35 @@
 
 
+import com.example.library.bulk.BulkImportResult;
+import com.example.library.bulk.BulkImportService;
 import com.example.library.controller.BookController;
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.exception.BookUnavailableException;
+import com.example.library.exception.PreconditionFailedException;
 import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.inventory.BookInventory;
 import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.repository.AuthorRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.service.BookService;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +38,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class BookControllerTest {
@@ -31,12 +49,28 @@ class BookControllerTest {
     @Mock
     private AuthorRepository authorRepository;
 
+    @Mock
+    private BookInventory bookInventory;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Mock
+    private BulkImportService bulkImportService;
+
+    @InjectMocks
+    private BookService bookService;
+
     @InjectMocks
     private BookController bookController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(bookController, "bookService", bookService);
     }
 
     @Test
@@ -44,13 +78,45 @@ class BookControllerTest {
         List<Book> books = new ArrayList<>();
         books.add(new Book());
 
-        when(bookRepository.findAll()).thenReturn(books);
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(books);
 
-        ResponseEntity<List<Book>> response = bookController.getAllBooks();
+        ResponseEntity<List<Book>> response = bookController.getAllBooks(null, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals(1, response.getBody().size());
-        verify(bookRepository, times(1)).findAll();
+        assertNull(response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+        verify(bookRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(KeysetPagination.DEFAULT_LIMIT));
+        verify(bookRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllBooks_FullPageReturnsNextCursor() {
+        List<Book> books = new ArrayList<>();
+        for (long i = 11; i <= 12; i++) {
+            Book book = new Book();
+            book.setId(i);
+            books.add(book);
+        }
+
+        when(bookRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(2))).thenReturn(books);
+
+        ResponseEntity<List<Book>> response = bookController.getAllBooks(10L, 2);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("12", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void streamBooks_UsesCursorStream() {
+        ResponseEntity<StreamingResponseBody> streamed = ResponseEntity.ok(out -> { });
+        when(jsonStreamWriter.<Book>stream(any())).thenReturn(streamed);
+
+        ResponseEntity<StreamingResponseBody> response = bookController.streamBooks();
+
+        assertSame(streamed, response);
+        verify(jsonStreamWriter, times(1)).stream(any());
+        verify(bookRepository, never()).findAll();
     }
 
     @Test
@@ -95,6 +161,42 @@ class BookControllerTest {
         assertNotNull(response.getBody());
         assertEquals(1L, response.getBody().getId());
         verify(bookRepository, times(1)).save(book);
+        verify(outbox, times(1)).record(ChangeEvent.Aggregate.BOOK, 1L, ChangeEvent.Type.CREATED, book);
+    }
+
+    @Test
+    void createBook_AllCopiesStartAvailable() {
+        Book book = new Book();
+        book.setTitle("New Book");
+        book.setAuthorId(1L);
+        book.setCopies(3);
+        book.setAvailableCopies(0);
+
+        when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(authorRepository.findById(anyLong())).thenReturn(Optional.of(new Author()));
+
+        bookController.createBook(book);
+
+        assertEquals(3, book.getAvailableCopies());
+    }
+
+    @Test
+    void updateBook_FewerCopiesThanOnLoan() {
+        Book book = new Book();
+        book.setId(1L);
+        book.setCopies(3);
+
+        when(bookRepository.findCurrentById(1L)).thenReturn(Optional.of(book));
+        when(authorRepository.findById(anyLong())).thenReturn(Optional.of(new Author()));
+        when(bookInventory.updateCopies(1L, 1)).thenReturn(false);
+
+        Book updatedDetails = new Book();
+        updatedDetails.setTitle("Updated Title");
+        updatedDetails.setAuthorId(1L);
+        updatedDetails.setCopies(1);
+
+        assertThrows(BookUnavailableException.class, () -> bookController.updateBook(1L, updatedDetails, null));
+        verify(bookRepository, never()).saveAndFlush(any(Book.class));
     }
 
     @Test
@@ -102,8 +204,8 @@ class BookControllerTest {
         Book book = new Book();
         book.setId(1L);
 
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(book));
-        when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(bookRepository.findCurrentById(anyLong())).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(book);
         when(authorRepository.findById(anyLong())).thenReturn(Optional.of(new Author()));
 
         Book updatedDetails = new Book();
@@ -111,24 +213,83 @@ class BookControllerTest {
         updatedDetails.setGenre("Updated Genre");
         updatedDetails.setPrice(BigDecimal.valueOf(29.99));
         updatedDetails.setAuthorId(1L);
-        ResponseEntity<Book> response = bookController.updateBook(1L, updatedDetails);
+        ResponseEntity<Book> response = bookController.updateBook(1L, updatedDetails, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("Updated Title", response.getBody().getTitle());
-        verify(bookRepository, times(1)).save(book);
+        verify(bookRepository, times(1)).saveAndFlush(book);
+        verify(bookRepository, never()).findById(anyLong());
     }
 
     @Test
-    void deleteBook_Success() {
+    void updateBook_IfMatchCurrentVersion() {
         Book book = new Book();
         book.setId(1L);
+        book.setVersion(4L);
 
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(book));
+        when(bookRepository.findCurrentById(1L)).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(book);
+        when(authorRepository.findById(anyLong())).thenReturn(Optional.of(new Author()));
+
+        Book updatedDetails = new Book();
+        updatedDetails.setTitle("Updated Title");
+        updatedDetails.setAuthorId(1L);
+        ResponseEntity<Book> response = bookController.updateBook(1L, updatedDetails, "\"3\", \"4\"");
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("W/\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void updateBook_IfMatchStaleVersion() {
+        Book book = new Book();
+        book.setId(1L);
+        book.setTitle("Current Title");
+        book.setVersion(5L);
+
+        when(bookRepository.findCurrentById(1L)).thenReturn(Optional.of(book));
+
+        Book updatedDetails = new Book();
+        updatedDetails.setTitle("Updated Title");
+        updatedDetails.setAuthorId(1L);
+
+        assertThrows(PreconditionFailedException.class, () -> bookController.updateBook(1L, updatedDetails, "\"4\""));
+        assertEquals("Current Title", book.getTitle());
+        verify(bookRepository, never()).saveAndFlush(any(Book.class));
+    }
+
+    @Test
+    void updateBook_SameAuthor_SkipsAuthorLookup() {
+        Book book = new Book();
+        book.setId(1L);
+        book.setAuthorId(2L);
+
+        when(bookRepository.findCurrentById(1L)).thenReturn(Optional.of(book));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(book);
+
+        Book updatedDetails = new Book();
+        updatedDetails.setTitle("Updated Title");
+        updatedDetails.setAuthorId(2L);
+        bookController.updateBook(1L, updatedDetails, null);
+
+        verify(authorRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void deleteBook_Success() {
+        when(bookRepository.deleteRowById(1L)).thenReturn(1);
 
         ResponseEntity<Void> response = bookController.deleteBook(1L);
 
         assertEquals(204, response.getStatusCodeValue());
-        verify(bookRepository, times(1)).delete(book);
+        verify(bookRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void deleteBook_NotFound() {
+        when(bookRepository.deleteRowById(1L)).thenReturn(0);
+
+        assertThrows(ResourceNotFoundException.class, () -> bookController.deleteBook(1L));
     }
 
     @Test
@@ -149,4 +310,34 @@ class BookControllerTest {
         assertEquals("Author not found with id 1", exception.getMessage());
         verify(bookRepository, never()).save(any(Book.class));
     }
+
+    @Test
+    void importBooks_DelegatesToBulkImport() throws Exception {
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        BulkImportResult result = new BulkImportResult(2, 1, 1,
+                List.of(new BulkImportResult.RowError(2, "Author not found with id 9")));
+
+        when(bulkImportService.importBooks(body, "application/x-ndjson")).thenReturn(result);
+
+        ResponseEntity<BulkImportResult> response = bookController.importBooks("application/x-ndjson", body);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertSame(result, response.getBody());
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+
+    @Test
+    void searchBooks_NormalizesCriteria() {
+        BookSearchResult result = new BookSearchResult(List.of(new Book()), 1, 0, 100, List.of(), List.of());
+        BookSearchCriteria expected = new BookSearchCriteria("dune", null, BigDecimal.ONE, null, null, 0, 100);
+
+        when(bookRepository.search(expected)).thenReturn(result);
+
+        ResponseEntity<BookSearchResult> response =
+                bookController.searchBooks("  dune ", " ", BigDecimal.ONE, null, null, -3, 5000);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertSame(result, response.getBody());
+        verify(bookRepository, never()).findAll();
+    }
 }
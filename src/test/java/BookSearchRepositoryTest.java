@@ -0,0 +1,89 @@
+import com.example.library.LibraryApplication;
+import com.example.library.dto.BookSearchCriteria;
+import com.example.library.dto.BookSearchResult;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the word-matching branch: the test profile's platform is h2, which has no full-text search
+@SpringBootTest(classes = LibraryApplication.class)
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class BookSearchRepositoryTest {
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Long herbertId;
+    private Long otherId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        herbertId = fixture.author("Frank Herbert").getId();
+        otherId = fixture.author("Someone Else").getId();
+        fixture.book(herbertId, "Dune", "Fiction", new BigDecimal("9.99"), 1);
+        fixture.book(herbertId, "Dune Messiah", "Fiction", new BigDecimal("15.00"), 1);
+        fixture.book(otherId, "Cooking 100% Vegan", "Food", new BigDecimal("60.00"), 1);
+        fixture.book(herbertId, "Children of Dune", "Science Fiction", new BigDecimal("120.00"), 1);
+    }
+
+    @Test
+    void query_MatchesWordsInTitleOrGenreIgnoringCase() {
+        BookSearchResult result = search("DUNE fiction", null, null, null, null, 0, 20);
+
+        assertEquals(List.of("Dune", "Dune Messiah", "Children of Dune"), titles(result));
+        assertEquals(3, result.total());
+        assertEquals(List.of(new BookSearchResult.FacetCount("Fiction", 2),
+                new BookSearchResult.FacetCount("Science Fiction", 1)), result.genres());
+    }
+
+    @Test
+    void query_TreatsLikeWildcardsAsText() {
+        assertEquals(List.of("Cooking 100% Vegan"), titles(search("100%", null, null, null, null, 0, 20)));
+        assertEquals(List.of(), titles(search("dune_", null, null, null, null, 0, 20)));
+    }
+
+    @Test
+    void filters_NarrowThePageAndTheFacets() {
+        BookSearchResult result = search(null, "Fiction", new BigDecimal("10"), null, herbertId, 0, 20);
+
+        assertEquals(List.of("Dune Messiah"), titles(result));
+        assertEquals(1, result.total());
+        assertEquals(List.of(new BookSearchResult.FacetCount("Fiction", 1)), result.genres());
+    }
+
+    @Test
+    void priceBuckets_CountEveryMatchAcrossPages() {
+        BookSearchResult result = search(null, null, null, null, null, 1, 3);
+
+        assertEquals(List.of("Children of Dune"), titles(result));
+        assertEquals(4, result.total());
+        assertEquals(List.of(1L, 1L, 0L, 1L, 1L),
+                result.prices().stream().map(BookSearchResult.PriceBucket::count).toList());
+        assertNull(result.prices().get(4).to());
+    }
+
+    private BookSearchResult search(String query, String genre, BigDecimal minPrice, BigDecimal maxPrice,
+                                    Long authorId, int page, int size) {
+        return bookRepository.search(BookSearchCriteria.of(query, genre, minPrice, maxPrice, authorId, page, size));
+    }
+
+    private static List<String> titles(BookSearchResult result) {
+        return result.books().stream().map(Book::getTitle).toList();
+    }
+}
@@ -0,0 +1,129 @@
+import com.example.library.LibraryApplication;
+import com.example.library.bulk.BulkImportResult;
+import com.example.library.bulk.BulkImportService;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class BulkImportServiceTest {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    private Long authorId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        authorId = fixture.author("Existing Author").getId();
+    }
+
+    @Test
+    void importBooks_Ndjson_ReportsBadRowsWithoutAbortingBatch() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            body.append("{\"title\":\"Book ").append(i).append("\",\"genre\":\"Fiction\",\"price\":9.99,\"authorId\":")
+                    .append(authorId).append("}\n");
+        }
+        body.append("{\"title\":\"Orphan\",\"genre\":\"Fiction\",\"price\":1,\"authorId\":999999}\n");
+        body.append("not json\n");
+        body.append("{\"title\":\"\",\"genre\":\"Fiction\",\"price\":1,\"authorId\":").append(authorId).append("}\n");
+
+        BulkImportResult result = bulkImportService.importBooks(stream(body.toString()), "application/x-ndjson");
+
+        assertEquals(2503, result.received());
+        assertEquals(2500, result.imported());
+        assertEquals(3, result.failed());
+        assertEquals(2501, result.errors().get(0).line());
+        assertEquals("Author not found with id 999999", result.errors().get(0).message());
+        assertTrue(result.errors().get(1).message().startsWith("Invalid record"));
+        assertEquals("Title is required", result.errors().get(2).message());
+        assertEquals(2500, bookRepository.count());
+    }
+
+    @Test
+    void importAuthors_Csv() throws Exception {
+        String csv = "name,dateOfBirth\n"
+                + "\"Le Guin, Ursula\",1929-10-21\n"
+                + "\n"
+                + ",1900-01-01\n"
+                + "Octavia Butler,\n";
+
+        BulkImportResult result = bulkImportService.importAuthors(stream(csv), "text/csv");
+
+        assertEquals(3, result.received());
+        assertEquals(2, result.imported());
+        assertEquals(1, result.failed());
+        assertEquals(4, result.errors().get(0).line());
+        assertTrue(authorRepository.findAll().stream().anyMatch(a -> "Le Guin, Ursula".equals(a.getName())));
+    }
+
+    @Test
+    void importMembers_RejectsDuplicateUsernames() throws Exception {
+        fixture.member("taken");
+
+        String ndjson = "{\"username\":\"taken\",\"email\":\"a@example.com\"}\n"
+                + "{\"username\":\"fresh\",\"email\":\"b@example.com\"}\n"
+                + "{\"username\":\"fresh\",\"email\":\"c@example.com\"}\n"
+                + "{\"username\":\"xy\"}\n";
+
+        BulkImportResult result = bulkImportService.importMembers(stream(ndjson), "application/x-ndjson");
+
+        assertEquals(4, result.received());
+        assertEquals(1, result.imported());
+        assertEquals(3, result.failed());
+        assertEquals("Username already exists.", result.errors().get(0).message());
+        assertEquals(3, result.errors().get(1).line());
+        assertTrue(memberRepository.findByUsername("fresh").isPresent());
+    }
+
+    @Test
+    void importMembers_ComparesUsernamesIgnoringCase() throws Exception {
+        fixture.member("Taken");
+
+        String ndjson = "{\"username\":\"TAKEN\"}\n"
+                + "{\"username\":\"Fresh\"}\n"
+                + "{\"username\":\"fresh\"}\n";
+
+        BulkImportResult result = bulkImportService.importMembers(stream(ndjson), "application/x-ndjson");
+
+        assertEquals(1, result.imported());
+        assertEquals(2, result.failed());
+        assertEquals(1, result.errors().get(0).line());
+        assertEquals("Username already exists.", result.errors().get(0).message());
+        assertEquals(3, result.errors().get(1).line());
+        assertTrue(memberRepository.findByUsername("Fresh").isPresent());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,133 @@
+import com.example.library.LibraryApplication;
+import com.example.library.controller.BookController;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@ActiveProfiles("test")
+class CatalogCacheTest {
+
+    @Autowired
+    private BookController bookController;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Cache books;
+
+    private Author author;
+
+    @BeforeEach
+    void setUp() {
+        books = cacheManager.getCache("books");
+        books.clear();
+        author = new Author();
+        author.setName("Cached Author");
+        author.setDateOfBirth(LocalDate.of(1950, 1, 1));
+        author = authorRepository.save(author);
+    }
+
+    @Test
+    void findById_ReadsThroughCache() {
+        Book book = bookRepository.save(newBook("Cached"));
+        books.clear();
+
+        bookRepository.findById(book.getId());
+
+        Book cached = books.get(book.getId(), Book.class);
+        assertNotNull(cached);
+        assertEquals("Cached", cached.getTitle());
+        Book hit = bookRepository.findById(book.getId()).orElseThrow();
+        assertNotSame(cached, hit);
+        assertEquals("Cached", hit.getTitle());
+    }
+
+    @Test
+    void modifyingAHit_LeavesTheCachedBookUnchanged() {
+        Book book = bookRepository.save(newBook("Shared"));
+        bookRepository.findById(book.getId()).orElseThrow().setTitle("Modified");
+
+        assertEquals("Shared", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+        assertEquals("Shared", books.get(book.getId(), Book.class).getTitle());
+    }
+
+    @Test
+    void rolledBackSave_IsNotCached() {
+        Book book = bookRepository.save(newBook("Committed"));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Book changed = bookRepository.findCurrentById(book.getId()).orElseThrow();
+            changed.setTitle("Rolled back");
+            bookRepository.save(changed);
+            assertEquals("Committed", books.get(book.getId(), Book.class).getTitle());
+            status.setRollbackOnly();
+        });
+
+        assertEquals("Committed", books.get(book.getId(), Book.class).getTitle());
+        assertEquals("Committed", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void missingBook_IsNotCached() {
+        assertTrue(bookRepository.findById(-1L).isEmpty());
+        assertNull(books.get(-1L));
+    }
+
+    @Test
+    void updateAndDelete_RefreshAndEvictEntry() {
+        Book book = bookRepository.save(newBook("Before"));
+
+        Book details = newBook("After");
+        bookController.updateBook(book.getId(), details, null);
+        assertEquals("After", books.get(book.getId(), Book.class).getTitle());
+
+        bookController.deleteBook(book.getId());
+        assertNull(books.get(book.getId()));
+        assertThrows(ResourceNotFoundException.class, () -> bookController.getBookById(book.getId()));
+    }
+
+    @Test
+    void rejectedUpdate_LeavesCachedBookUnchanged() {
+        Book book = bookRepository.save(newBook("Original"));
+        Book details = newBook("Rejected");
+        details.setAuthorId(-1L);
+
+        assertThrows(ResourceNotFoundException.class, () -> bookController.updateBook(book.getId(), details, null));
+        assertEquals("Original", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+    }
+
+    private Book newBook(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setGenre("Fiction");
+        book.setPrice(BigDecimal.ONE);
+        book.setAuthorId(author.getId());
+        return book;
+    }
+}
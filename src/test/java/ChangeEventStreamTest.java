@@ -0,0 +1,246 @@
+import com.example.library.LibraryApplication;
+import com.example.library.bulk.BulkImportService;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.ChangeEventsPublished;
+import com.example.library.events.OutboxPublisher;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.MemberRepository;
+import com.example.library.web.KeysetPagination;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = {LibraryApplication.class, ChangeEventStreamTest.RecordingConfig.class})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class ChangeEventStreamTest {
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        RecordingListener changeEventRecorder() {
+            return new RecordingListener();
+        }
+    }
+
+    static class RecordingListener {
+
+        static final List<ChangeEvent> received = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void on(ChangeEventsPublished published) {
+            received.addAll(published.events());
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OutboxPublisher outboxPublisher;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Long authorId;
+    private Long memberId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        authorId = fixture.author("Event Author").getId();
+        memberId = fixture.member("events-" + System.nanoTime()).getId();
+    }
+
+    @Test
+    void writes_AreReadableAfterTheCursorInCommitOrder() throws Exception {
+        long since = cursor();
+
+        long bookId = createBook("Evented");
+        mockMvc.perform(put("/books/{id}", bookId).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Renamed\",\"genre\":\"Fiction\",\"price\":10,\"authorId\":" + authorId + "}"))
+                .andExpect(status().isOk());
+        long loanId = checkout(bookId);
+        mockMvc.perform(delete("/loans/{id}", loanId)).andExpect(status().isNoContent());
+        // Rejected changes leave no event
+        mockMvc.perform(put("/books/{id}", bookId).header("If-Match", "\"99\"").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Stale\",\"genre\":\"Fiction\",\"price\":10,\"authorId\":" + authorId + "}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/books/{id}", bookId)).andExpect(status().isNoContent());
+
+        List<ChangeEvent> events = events(since);
+        assertEquals(List.of("BOOK CREATED", "BOOK UPDATED", "LOAN CREATED", "BOOK COPIES_TAKEN", "LOAN RETURNED",
+                        "BOOK COPIES_RETURNED", "BOOK DELETED"),
+                events.stream().map(event -> event.aggregate() + " " + event.type()).toList());
+        assertEquals("Renamed", events.get(1).payload().get("title").asText());
+        assertEquals(1, events.get(1).payload().get("version").asLong());
+        assertEquals(loanId, events.get(2).aggregateId());
+        assertEquals(bookId, events.get(3).aggregateId());
+        assertEquals(1, events.get(3).payload().get("copies").asInt());
+        assertEquals(1, events.get(5).payload().get("copies").asInt());
+        assertTrue(events.get(6).payload().isNull());
+
+        MvcResult tail = mockMvc.perform(get("/events").param("since", Long.toString(events.get(6).id()))).andReturn();
+        mockMvc.perform(asyncDispatch(tail))
+                .andExpect(jsonPath("$.length()").value(0))
+                .andExpect(header().string(KeysetPagination.NEXT_CURSOR_HEADER, Long.toString(events.get(6).id())));
+    }
+
+    @Test
+    void basketReturn_RecordsTheCopiesReturnedPerBook() throws Exception {
+        long first = createBook("First");
+        long second = createBook("Second");
+        long[] loans = {checkout(first), checkout(first), checkout(second)};
+        long since = cursor();
+
+        mockMvc.perform(post("/loans/return").contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + loans[0] + "," + loans[1] + "," + loans[2] + "]"))
+                .andExpect(status().isOk());
+
+        List<ChangeEvent> returned = events(since).stream()
+                .filter(event -> event.type() == ChangeEvent.Type.COPIES_RETURNED)
+                .toList();
+        assertEquals(List.of(first, second), returned.stream().map(ChangeEvent::aggregateId).toList());
+        assertEquals(2, returned.get(0).payload().get("copies").asInt());
+        assertEquals(1, returned.get(1).payload().get("copies").asInt());
+    }
+
+    @Test
+    void bulkImports_RecordEachImportedRowAsCreated() throws Exception {
+        long since = cursor();
+
+        bulkImportService.importBooks(new ByteArrayInputStream(
+                ("{\"title\":\"Imported\",\"genre\":\"Fiction\",\"price\":5,\"authorId\":" + authorId
+                        + ",\"copies\":3}\n"
+                        + "{\"title\":\"Orphan\",\"genre\":\"Fiction\",\"price\":5,\"authorId\":999999}\n")
+                        .getBytes(StandardCharsets.UTF_8)), "application/x-ndjson");
+        bulkImportService.importMembers(new ByteArrayInputStream(
+                "{\"username\":\"imported-events\",\"email\":\"imported@example.com\"}\n"
+                        .getBytes(StandardCharsets.UTF_8)), "application/x-ndjson");
+
+        List<ChangeEvent> events = events(since);
+        assertEquals(List.of("BOOK CREATED", "MEMBER CREATED"),
+                events.stream().map(event -> event.aggregate() + " " + event.type()).toList());
+        long bookId = bookRepository.findAll().stream()
+                .filter(book -> "Imported".equals(book.getTitle())).findFirst().orElseThrow().getId();
+        assertEquals(bookId, events.get(0).aggregateId());
+        assertEquals(bookId, events.get(0).payload().get("id").asLong());
+        assertEquals(3, events.get(0).payload().get("availableCopies").asInt());
+        assertEquals(0, events.get(0).payload().get("version").asLong());
+        assertEquals(memberRepository.findByUsername("imported-events").orElseThrow().getId(),
+                events.get(1).aggregateId());
+    }
+
+    @Test
+    void longPoll_AnswersWhenTheNextChangeCommits() throws Exception {
+        long since = cursor();
+        MvcResult waiting = mockMvc.perform(get("/events").param("since", Long.toString(since)).param("wait", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        long bookId = createBook("Awaited");
+
+        mockMvc.perform(asyncDispatch(waiting))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].aggregate").value("BOOK"))
+                .andExpect(jsonPath("$[0].aggregateId").value(bookId))
+                .andExpect(jsonPath("$[0].type").value("CREATED"));
+    }
+
+    @Test
+    void publisher_DeliversEachEventOnceToTheSink() throws Exception {
+        outboxPublisher.publishPending();
+        RecordingListener.received.clear();
+
+        long bookId = createBook("Published");
+        long loanId = checkout(bookId);
+        mockMvc.perform(post("/loans/renew").contentType(MediaType.APPLICATION_JSON).content("[" + loanId + "]"))
+                .andExpect(status().isOk());
+
+        assertEquals(4, outboxPublisher.publishPending());
+        assertEquals(0, outboxPublisher.publishPending());
+        assertEquals(List.of(ChangeEvent.Type.CREATED, ChangeEvent.Type.CREATED, ChangeEvent.Type.COPIES_TAKEN,
+                        ChangeEvent.Type.RENEWED),
+                RecordingListener.received.stream().map(ChangeEvent::type).toList());
+        JsonNode renewed = RecordingListener.received.get(3).payload();
+        assertEquals(LocalDate.now().plusWeeks(1).toString(), renewed.get("returnDate").asText());
+        assertEquals(1, renewed.get("version").asLong());
+    }
+
+    private long cursor() throws Exception {
+        MvcResult result = mockMvc.perform(get("/events").param("since", "0").param("limit", "1000")).andReturn();
+        List<ChangeEvent> events = List.of(objectMapper.readValue(
+                asyncDispatchBody(result), ChangeEvent[].class));
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).id();
+    }
+
+    private List<ChangeEvent> events(long since) throws Exception {
+        MvcResult result = mockMvc.perform(get("/events").param("since", Long.toString(since))).andReturn();
+        return List.of(objectMapper.readValue(asyncDispatchBody(result), ChangeEvent[].class));
+    }
+
+    private String asyncDispatchBody(MvcResult result) throws Exception {
+        return mockMvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString();
+    }
+
+    private long createBook(String title) throws Exception {
+        String body = mockMvc.perform(post("/books").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"" + title + "\",\"genre\":\"Fiction\",\"price\":10,\"authorId\":" + authorId
+                                + ",\"copies\":2}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private long checkout(long bookId) throws Exception {
+        String body = mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+}
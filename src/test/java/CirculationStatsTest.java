@@ -0,0 +1,108 @@
+import com.example.library.LibraryApplication;
+import com.example.library.repository.LoanRepository;
+import com.example.library.stats.CirculationStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class CirculationStatsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CirculationStatsService circulationStatsService;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    private Long popularBookId;
+    private Long popularAuthorId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fixture.reset();
+
+        popularAuthorId = fixture.author("Popular Author").getId();
+        Long otherAuthorId = fixture.author("Other Author").getId();
+        popularBookId = book("Popular Book", "Mystery", popularAuthorId);
+        Long otherBookId = book("Other Book", "Poetry", otherAuthorId);
+        book("Unread Book", "Poetry", otherAuthorId);
+
+        for (int i = 0; i < 3; i++) {
+            Long memberId = fixture.member("stats-" + i).getId();
+            checkout(memberId, popularBookId);
+            mockMvc.perform(post("/loans/return").contentType(MediaType.APPLICATION_JSON)
+                            .content("[" + loanRepository.findByMemberId(memberId).get(0).getId() + "]"))
+                    .andExpect(status().isOk());
+            checkout(memberId, popularBookId);
+            if (i == 0) {
+                checkout(memberId, otherBookId);
+            }
+        }
+        circulationStatsService.refresh();
+    }
+
+    @Test
+    void topBooks_CountEveryCheckoutIncludingReturnedLoans() throws Exception {
+        QueryBudget.assertAtMost(0, () -> mockMvc.perform(get("/stats/books")))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].bookId").value(popularBookId))
+                .andExpect(jsonPath("$[0].loans").value(6))
+                .andExpect(jsonPath("$[1].loans").value(1));
+
+        mockMvc.perform(get("/stats/books").param("limit", "1"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void genresAndAuthors_RollUpTheBookCounters() throws Exception {
+        QueryBudget.assertAtMost(0, () -> mockMvc.perform(get("/stats/genres")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].genre").value("Mystery"))
+                .andExpect(jsonPath("$[0].loans").value(6))
+                .andExpect(jsonPath("$[1].genre").value("Poetry"))
+                .andExpect(jsonPath("$[1].books").value(2))
+                .andExpect(jsonPath("$[1].loans").value(1));
+
+        QueryBudget.assertAtMost(0, () -> mockMvc.perform(get("/stats/authors")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].authorId").value(popularAuthorId))
+                .andExpect(jsonPath("$[0].name").value("Popular Author"))
+                .andExpect(jsonPath("$[1].loans").value(1));
+    }
+
+    private void checkout(Long memberId, Long bookId) throws Exception {
+        mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isOk());
+    }
+
+    private Long book(String title, String genre, Long authorId) {
+        return fixture.book(authorId, title, genre, BigDecimal.TEN, 5).getId();
+    }
+}
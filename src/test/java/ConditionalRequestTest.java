@@ -0,0 +1,162 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Member;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class ConditionalRequestTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Author author;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        author = fixture.author("Conditional Author");
+        book = fixture.book(author.getId(), "Conditional Book", 2);
+    }
+
+    @Test
+    void getById_IfNoneMatchCurrentETag_Returns304WithoutBody() throws Exception {
+        String etag = mockMvc.perform(get("/books/{id}", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals("W/\"0\"", etag);
+
+        mockMvc.perform(get("/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void checkout_ChangesBookETag() throws Exception {
+        Member member = fixture.member("etag-reader");
+
+        mockMvc.perform(post("/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + member.getId() + ",\"bookId\":" + book.getId() + "}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/books/{id}", book.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1\""));
+    }
+
+    @Test
+    void listPage_IfNoneMatchChangesWhenARowChanges() throws Exception {
+        String etag = mockMvc.perform(get("/authors"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/authors").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/authors/{id}", author.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Renamed Author\",\"dateOfBirth\":\"1940-01-01\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/authors").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void put_IfMatch_IsAnOptimisticLock() throws Exception {
+        String body = "{\"title\":\"Edited\",\"genre\":\"Fiction\",\"price\":12,\"authorId\":" + author.getId() + "}";
+
+        mockMvc.perform(put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1\""));
+
+        mockMvc.perform(put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.replace("Edited", "Lost update")))
+                .andExpect(status().isPreconditionFailed());
+
+        assertEquals("Edited", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+        assertEquals(1L, bookRepository.findCurrentById(book.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void getById_WeakETagIsSharedByEncodingsAndAcceptedByIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/books/{id}", book.getId()).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals("W/\"0\"", etag);
+
+        mockMvc.perform(get("/books/{id}", book.getId()).accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Edited\",\"genre\":\"Fiction\",\"price\":12,\"authorId\":"
+                                + author.getId() + "}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1\""));
+    }
+
+    @Test
+    void put_ChangingCopies_AdjustsAvailabilityAndVersion() throws Exception {
+        mockMvc.perform(put("/books/{id}", book.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"More copies\",\"genre\":\"Fiction\",\"price\":10,\"authorId\":"
+                                + author.getId() + ",\"copies\":5}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"2\""));
+
+        Book stored = bookRepository.findCurrentById(book.getId()).orElseThrow();
+        assertEquals("More copies", stored.getTitle());
+        assertEquals(5, stored.getCopies());
+        assertEquals(5, stored.getAvailableCopies());
+    }
+
+    @Test
+    void post_IgnoresClientSuppliedVersion() throws Exception {
+        mockMvc.perform(post("/authors")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"New Author\",\"dateOfBirth\":\"1970-01-01\",\"version\":7}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"0\""));
+    }
+}
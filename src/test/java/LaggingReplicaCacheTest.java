@@ -0,0 +1,97 @@
+import com.example.library.LibraryApplication;
+import com.example.library.datasource.ReplicaHealthMonitor;
+import com.example.library.datasource.ReplicaRoutingDataSource;
+import com.example.library.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the application against a "replica" that is a separate in-memory database, copied from the primary and then
+ * left behind by an update that only reaches the primary.
+ */
+@SpringBootTest(classes = LibraryApplication.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:lag-primary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.urls=jdbc:h2:mem:lag-replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.health-check-interval=PT1H"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class LaggingReplicaCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ReplicaHealthMonitor replicaHealthMonitor;
+
+    private ReplicaRoutingDataSource.Replica replica;
+    private Cache books;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        replica = replicaHealthMonitor.getDataSource().getReplicas().get(0);
+        replica.markDown("setting up");
+        fixture.reset();
+        books = cacheManager.getCache("books");
+
+        Long authorId = fixture.author("Lagging Author").getId();
+        bookId = fixture.book(authorId, "Before").getId();
+
+        // The replica is a copy of the primary as it is now; the update below never reaches it
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica.dataSource());
+        replicaJdbc.execute("DROP ALL OBJECTS");
+        for (String statement : jdbcTemplate.queryForList("SCRIPT", String.class)) {
+            replicaJdbc.execute(statement);
+        }
+        jdbcTemplate.update("UPDATE book SET title = 'After', version = version + 1 WHERE id = ?", bookId);
+        books.evict(bookId);
+    }
+
+    @Test
+    void readFromLaggingReplica_IsNotCached() throws Exception {
+        replica.markUp();
+
+        mockMvc.perform(get("/books/{id}", bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Before"));
+
+        assertNull(books.get(bookId));
+    }
+
+    @Test
+    void readFromPrimary_IsCached() throws Exception {
+        mockMvc.perform(get("/books/{id}", bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("After"));
+
+        replica.markUp();
+
+        mockMvc.perform(get("/books/{id}", bookId)).andExpect(jsonPath("$.title").value("After"));
+        assertEquals("After", ((Book) books.get(bookId).get()).getTitle());
+    }
+}
@@ -0,0 +1,93 @@
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.model.Member;
+import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.MemberRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Test data for the Spring Boot tests, added to their context with {@code @Import(LibraryFixture.class)}.
+ * {@link #reset()} empties the loan, member, book and author tables and clears every cache; the other methods save
+ * one row with the fields the application requires, going straight to the repositories rather than through the API.
+ */
+@TestComponent
+class LibraryFixture {
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    void reset() {
+        loanRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+        bookRepository.deleteAllInBatch();
+        authorRepository.deleteAllInBatch();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    // Born 1970-01-01
+    Author author(String name) {
+        Author author = new Author();
+        author.setName(name);
+        author.setDateOfBirth(LocalDate.of(1970, 1, 1));
+        return authorRepository.save(author);
+    }
+
+    // Fiction, priced 10, with one copy on the shelf
+    Book book(Long authorId, String title) {
+        return book(authorId, title, 1);
+    }
+
+    Book book(Long authorId, String title, int copies) {
+        return book(authorId, title, "Fiction", BigDecimal.TEN, copies);
+    }
+
+    Book book(Long authorId, String title, String genre, BigDecimal price, int copies) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setGenre(genre);
+        book.setPrice(price);
+        book.setAuthorId(authorId);
+        book.setCopies(copies);
+        book.setAvailableCopies(copies);
+        return bookRepository.save(book);
+    }
+
+    Member member(String username) {
+        Member member = new Member();
+        member.setUsername(username);
+        member.setEmail(username + "@example.com");
+        member.setAddress("1 Test St");
+        member.setPhoneNumber("5550100");
+        return memberRepository.save(member);
+    }
+
+    // A loan row as it is stored, without taking a copy or counting it against the member
+    Loan loan(Long memberId, Long bookId, LocalDate lendDate, LocalDate returnDate) {
+        Loan loan = new Loan();
+        loan.setMemberId(memberId);
+        loan.setBookId(bookId);
+        loan.setLendDate(lendDate);
+        loan.setReturnDate(returnDate);
+        return loanRepository.save(loan);
+    }
+}
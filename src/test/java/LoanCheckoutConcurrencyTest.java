@@ -0,0 +1,184 @@
+import com.example.library.LibraryApplication;
+import com.example.library.controller.LoanController;
+import com.example.library.exception.BookUnavailableException;
+import com.example.library.model.Loan;
+import com.example.library.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class LoanCheckoutConcurrencyTest {
+
+    private static final int MAX_LOANS = 5;
+
+    @Autowired
+    private LoanController loanController;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long authorId;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        authorId = fixture.author("Author").getId();
+        bookId = fixture.book(authorId, "Book", 1000).getId();
+    }
+
+    @Test
+    void concurrentCheckoutsForOneMember_NeverExceedLimit() throws Exception {
+        Long memberId = fixture.member("hammered").getId();
+
+        List<ResponseEntity<Object>> responses = checkoutConcurrently(List.of(memberId), 64, 32);
+
+        long accepted = responses.stream().filter(r -> r.getStatusCode().is2xxSuccessful()).count();
+        long rejected = responses.stream().filter(r -> r.getStatusCode().value() == 400).count();
+        assertEquals(MAX_LOANS, accepted);
+        assertEquals(64 - MAX_LOANS, rejected);
+        assertEquals(MAX_LOANS, loanRepository.countByMemberId(memberId));
+    }
+
+    @Test
+    void limitHoldsPerMemberAsConcurrencyRises() throws Exception {
+        for (int threads : new int[]{1, 4, 16}) {
+            List<Long> memberIds = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                memberIds.add(fixture.member("member-" + threads + "-" + i).getId());
+            }
+            int attempts = memberIds.size() * (MAX_LOANS + 2);
+
+            List<ResponseEntity<Object>> responses = checkoutConcurrently(memberIds, attempts, threads);
+
+            long accepted = responses.stream().filter(r -> r.getStatusCode().is2xxSuccessful()).count();
+            assertEquals((long) memberIds.size() * MAX_LOANS, accepted);
+            for (Long memberId : memberIds) {
+                assertEquals(MAX_LOANS, loanRepository.countByMemberId(memberId));
+            }
+        }
+    }
+
+    @Test
+    void concurrentCheckoutsOfHotBook_NeverExceedCopies() throws Exception {
+        Long hotBookId = createBook(20);
+        List<Long> memberIds = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            memberIds.add(fixture.member("reader-" + i).getId());
+        }
+
+        List<ResponseEntity<Object>> responses = checkoutConcurrently(hotBookId, memberIds, 64, 32);
+
+        long accepted = responses.stream().filter(r -> r.getStatusCode().is2xxSuccessful()).count();
+        long unavailable = responses.stream().filter(r -> r.getStatusCode().value() == 409).count();
+        assertEquals(20, accepted);
+        assertEquals(44, unavailable);
+        assertEquals(0, availableCopies(hotBookId));
+    }
+
+    // Correctness only; HotBookCheckoutBenchmark measures the throughput of the same workload
+    @Test
+    void hotBookCheckoutsAndReturns_GiveEveryCopyBack() throws Exception {
+        for (int threads : new int[]{1, 4, 16}) {
+            Long hotBookId = createBook(threads);
+            List<Long> memberIds = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                memberIds.add(fixture.member("hot-" + threads + "-" + i).getId());
+            }
+            int rounds = 50;
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            int completed = 0;
+            try {
+                List<Callable<Integer>> tasks = new ArrayList<>();
+                for (Long memberId : memberIds) {
+                    tasks.add(() -> {
+                        for (int round = 0; round < rounds; round++) {
+                            Loan loan = new Loan();
+                            loan.setMemberId(memberId);
+                            loan.setBookId(hotBookId);
+                            Loan saved = (Loan) loanController.createLoan(loan).getBody();
+                            loanController.deleteLoan(saved.getId());
+                        }
+                        return rounds;
+                    });
+                }
+                for (Future<Integer> future : executor.invokeAll(tasks)) {
+                    completed += future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // Each member holds at most one copy at a time, so no checkout ever finds the shelf empty
+            assertEquals(threads * rounds, completed);
+            assertEquals(threads, availableCopies(hotBookId));
+        }
+    }
+
+    private List<ResponseEntity<Object>> checkoutConcurrently(List<Long> memberIds, int attempts, int threads)
+            throws Exception {
+        return checkoutConcurrently(bookId, memberIds, attempts, threads);
+    }
+
+    private List<ResponseEntity<Object>> checkoutConcurrently(Long bookId, List<Long> memberIds, int attempts,
+                                                              int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<ResponseEntity<Object>>> tasks = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                Long memberId = memberIds.get(i % memberIds.size());
+                tasks.add(() -> {
+                    Loan loan = new Loan();
+                    loan.setMemberId(memberId);
+                    loan.setBookId(bookId);
+                    try {
+                        return loanController.createLoan(loan);
+                    } catch (BookUnavailableException e) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+                    }
+                });
+            }
+            List<ResponseEntity<Object>> responses = new ArrayList<>();
+            for (Future<ResponseEntity<Object>> future : executor.invokeAll(tasks)) {
+                responses.add(future.get());
+            }
+            return responses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Long createBook(int copies) {
+        return fixture.book(authorId, "Hot Book", copies).getId();
+    }
+
+    private int availableCopies(Long bookId) {
+        return jdbcTemplate.queryForObject("SELECT available_copies FROM book WHERE id = ?", Integer.class, bookId);
+    }
+}
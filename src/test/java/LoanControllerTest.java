@@ -1,28 +1,48 @@
 
 
 import com.example.library.controller.LoanController;
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.Outbox;
+import com.example.library.exception.BookUnavailableException;
 import com.example.library.exception.ResourceNotFoundException;
-import com.example.library.model.Book;
+import com.example.library.history.LoanHistoryRepository;
+import com.example.library.index.ActiveLoanIndex;
+import com.example.library.inventory.BookInventory;
 import com.example.library.model.Loan;
 import com.example.library.model.Member;
+import com.example.library.overdue.OverdueCursor;
 import com.example.library.repository.LoanRepository;
 import com.example.library.repository.MemberRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.service.LoanService;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
+import com.example.library.writebehind.LoanWriteBehind;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class LoanControllerTest {
@@ -36,12 +56,83 @@ class LoanControllerTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private BookInventory bookInventory;
+
+    @Mock
+    private LoanHistoryRepository loanHistoryRepository;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private ActiveLoanIndex activeLoanIndex;
+
+    @Mock
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Mock
+    private LoanWriteBehind loanWriteBehind;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private LoanService loanService;
+
     @InjectMocks
     private LoanController loanController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(loanController, "loanService", loanService);
+    }
+
+    @Test
+    void getAllLoans_Success() {
+        List<Loan> loans = new ArrayList<>();
+        loans.add(new Loan());
+
+        when(loanRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(loans);
+
+        ResponseEntity<List<Loan>> response = loanController.getAllLoans(null, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().size());
+        assertNull(response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+        verify(loanRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(KeysetPagination.DEFAULT_LIMIT));
+        verify(loanRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllLoans_FullPageReturnsNextCursor() {
+        List<Loan> loans = new ArrayList<>();
+        for (long i = 11; i <= 12; i++) {
+            Loan loan = new Loan();
+            loan.setId(i);
+            loans.add(loan);
+        }
+
+        when(loanRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(2))).thenReturn(loans);
+
+        ResponseEntity<List<Loan>> response = loanController.getAllLoans(10L, 2);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("12", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void streamLoans_UsesCursorStream() {
+        ResponseEntity<StreamingResponseBody> streamed = ResponseEntity.ok(out -> { });
+        when(jsonStreamWriter.<Loan>stream(any())).thenReturn(streamed);
+
+        ResponseEntity<StreamingResponseBody> response = loanController.streamLoans();
+
+        assertSame(streamed, response);
+        verify(jsonStreamWriter, times(1)).stream(any());
+        verify(loanRepository, never()).findAll();
     }
 
     @Test
@@ -50,12 +141,9 @@ class LoanControllerTest {
         loan.setMemberId(1L);
         loan.setBookId(1L);
 
-        Member member = new Member();
-        member.setId(1L);
-        member.setLoanIds(new ArrayList<>());
-
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.of(member));
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(new Book()));
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(loanRepository.countByMemberId(1L)).thenReturn(4L);
+        when(bookInventory.reserveCopy(1L)).thenReturn(true);
         when(loanRepository.save(any(Loan.class))).thenAnswer(i -> {
             Loan l = i.getArgument(0);
             l.setId(1L);
@@ -69,7 +157,9 @@ class LoanControllerTest {
         assertTrue(response.getBody() instanceof Loan);
         Loan savedLoan = (Loan) response.getBody();
         assertEquals(LocalDate.now().plusWeeks(1), savedLoan.getReturnDate());
-        verify(memberRepository, times(1)).save(member);
+        verify(memberRepository, never()).save(any(Member.class));
+        verify(loanRepository, never()).findByMemberId(anyLong());
+        verify(bookRepository, never()).existsById(anyLong());
     }
 
     @Test
@@ -78,24 +168,52 @@ class LoanControllerTest {
         loan.setMemberId(1L);
         loan.setBookId(1L);
 
-        Member member = new Member();
-        member.setId(1L);
-        List<Loan> loans = new ArrayList<>();
-        for (int i = 0; i < 5; i++) {
-            Loan existingLoan = new Loan();
-            existingLoan.setId((long) i);
-            loans.add(existingLoan);
-        }
-        member.setLoanIds(new ArrayList<>());
-
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.of(member));
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.of(new Book()));
-        when(loanRepository.findByMemberId(anyLong())).thenReturn(loans);
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(loanRepository.countByMemberId(1L)).thenReturn(5L);
 
         ResponseEntity<Object> response = loanController.createLoan(loan);
 
         assertEquals(400, response.getStatusCodeValue());
         assertEquals("Member already has 5 loans", response.getBody());
+        assertEquals(1.0, meterRegistry.counter("library.loans.rejected", "reason", "member_limit").count());
+        verify(loanRepository, never()).save(any(Loan.class));
+        verify(bookInventory, never()).reserveCopy(anyLong());
+    }
+
+    @Test
+    void createLoan_LimitCountedFromTheLoanIndex() {
+        Loan loan = new Loan();
+        loan.setMemberId(1L);
+        loan.setBookId(1L);
+
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(activeLoanIndex.countActive(1L)).thenReturn(OptionalInt.of(5));
+
+        ResponseEntity<Object> response = loanController.createLoan(loan);
+
+        assertEquals(400, response.getStatusCodeValue());
+        verify(loanRepository, never()).countByMemberId(anyLong());
+        verify(activeLoanIndex, never()).loanOpened(anyLong(), anyLong());
+    }
+
+    @Test
+    void createLoan_RecordsTheLoanInTheIndex() {
+        Loan loan = new Loan();
+        loan.setMemberId(1L);
+        loan.setBookId(2L);
+
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(activeLoanIndex.countActive(1L)).thenReturn(OptionalInt.of(4));
+        when(loanRepository.save(any(Loan.class))).thenAnswer(invocation -> {
+            Loan saved = invocation.getArgument(0);
+            saved.setId(9L);
+            return saved;
+        });
+        when(bookInventory.reserveCopy(2L)).thenReturn(true);
+
+        loanController.createLoan(loan);
+
+        verify(activeLoanIndex, times(1)).loanOpened(1L, 9L);
     }
 
     @Test
@@ -104,7 +222,7 @@ class LoanControllerTest {
         loan.setMemberId(1L);
         loan.setBookId(1L);
 
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.empty());
 
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
             loanController.createLoan(loan);
@@ -119,12 +237,9 @@ class LoanControllerTest {
         loan.setMemberId(1L);
         loan.setBookId(1L);
 
-        Member member = new Member();
-        member.setId(1L);
-        member.setLoanIds(new ArrayList<>());
-
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.of(member));
-        when(bookRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(bookInventory.reserveCopy(1L)).thenReturn(false);
+        when(bookRepository.existsById(anyLong())).thenReturn(false);
 
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
             loanController.createLoan(loan);
@@ -133,13 +248,31 @@ class LoanControllerTest {
         assertEquals("Book not found with id 1", exception.getMessage());
     }
 
+    @Test
+    void createLoan_NoCopyAvailable() {
+        Loan loan = new Loan();
+        loan.setMemberId(1L);
+        loan.setBookId(1L);
+
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.of(1L));
+        when(bookInventory.reserveCopy(1L)).thenReturn(false);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        BookUnavailableException exception = assertThrows(BookUnavailableException.class, () -> {
+            loanController.createLoan(loan);
+        });
+
+        assertEquals("No copy of book 1 is available", exception.getMessage());
+        assertEquals(1.0, meterRegistry.counter("library.loans.rejected", "reason", "no_copy_available").count());
+    }
+
     @Test
     void createLoan_WithNonExistingMember() {
         Loan loan = new Loan();
         loan.setMemberId(1L);
         loan.setBookId(1L);
 
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(memberRepository.lockById(anyLong())).thenReturn(Optional.empty());
 
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
             loanController.createLoan(loan);
@@ -148,4 +281,164 @@ class LoanControllerTest {
         assertEquals("Member not found with id 1", exception.getMessage());
         verify(loanRepository, never()).save(any(Loan.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteLoan_Success() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setMemberId(1L);
+        loan.setBookId(2L);
+
+        when(loanRepository.findById(3L)).thenReturn(Optional.of(loan));
+
+        ResponseEntity<Void> response = loanController.deleteLoan(3L);
+
+        assertEquals(204, response.getStatusCodeValue());
+        verify(memberRepository, never()).findById(anyLong());
+        verify(memberRepository, never()).save(any(Member.class));
+        verify(loanHistoryRepository, times(1)).archive(List.of(3L));
+        verify(loanRepository, times(1)).delete(loan);
+        verify(bookInventory, times(1)).releaseCopy(2L);
+        verify(outbox, times(1)).record(ChangeEvent.Aggregate.LOAN, 3L, ChangeEvent.Type.RETURNED, loan);
+    }
+
+    @Test
+    void updateLoan_SameMemberAndBook_LoadsOnlyTheLoan() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setMemberId(1L);
+        loan.setBookId(2L);
+
+        when(loanRepository.findById(3L)).thenReturn(Optional.of(loan));
+
+        Loan details = new Loan();
+        details.setMemberId(1L);
+        details.setBookId(2L);
+        details.setLendDate(LocalDate.of(2024, 1, 1));
+        details.setReturnDate(LocalDate.of(2024, 1, 15));
+        ResponseEntity<Loan> response = loanController.updateLoan(3L, details, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(LocalDate.of(2024, 1, 15), response.getBody().getReturnDate());
+        verify(memberRepository, never()).existsById(anyLong());
+        verify(bookRepository, never()).findById(anyLong());
+        verifyNoInteractions(bookInventory);
+    }
+
+    @Test
+    void updateLoan_ToAnotherBook_MovesTheCopy() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setMemberId(1L);
+        loan.setBookId(2L);
+
+        when(loanRepository.findById(3L)).thenReturn(Optional.of(loan));
+        when(bookInventory.reserveCopy(4L)).thenReturn(true);
+
+        Loan details = new Loan();
+        details.setMemberId(1L);
+        details.setBookId(4L);
+        loanController.updateLoan(3L, details, null);
+
+        verify(bookInventory, times(1)).releaseCopy(2L);
+        verify(bookInventory, times(1)).reserveCopy(4L);
+        assertEquals(4L, loan.getBookId());
+    }
+
+    @Test
+    void updateLoan_ToUnknownMember() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setMemberId(1L);
+        loan.setBookId(2L);
+
+        when(loanRepository.findById(3L)).thenReturn(Optional.of(loan));
+        when(memberRepository.existsById(9L)).thenReturn(false);
+
+        Loan details = new Loan();
+        details.setMemberId(9L);
+        details.setBookId(2L);
+
+        assertThrows(ResourceNotFoundException.class, () -> loanController.updateLoan(3L, details, null));
+        assertEquals(1L, loan.getMemberId());
+    }
+
+    @Test
+    void returnLoans_ReportsEachLoanInRequestOrder() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setBookId(2L);
+
+        when(loanRepository.lockAllById(any())).thenReturn(List.of(loan));
+
+        ResponseEntity<LoanBatchResult> response = loanController.returnLoans(List.of(9L, 3L, 3L));
+
+        LoanBatchResult result = response.getBody();
+        assertEquals(1, result.succeeded());
+        assertEquals(1, result.failed());
+        assertEquals(List.of(new LoanBatchResult.Item(9L, LoanBatchResult.Status.NOT_FOUND, null),
+                new LoanBatchResult.Item(3L, LoanBatchResult.Status.RETURNED, null)), result.items());
+        verify(bookInventory, times(1)).releaseCopies(List.of(loan));
+        verify(loanHistoryRepository, times(1)).archive(List.of(3L));
+        verify(loanRepository, times(1)).deleteAllByIdInBatch(List.of(3L));
+        verify(loanRepository, never()).delete(any(Loan.class));
+    }
+
+    @Test
+    void renewLoans_SetsOneDueDateForAllFoundLoans() {
+        Loan loan = new Loan();
+        loan.setId(3L);
+        loan.setVersion(0L);
+
+        when(loanRepository.lockAllById(any())).thenReturn(List.of(loan));
+
+        LoanBatchResult result = loanController.renewLoans(List.of(3L)).getBody();
+
+        LocalDate due = LocalDate.now().plusWeeks(1);
+        assertEquals(List.of(new LoanBatchResult.Item(3L, LoanBatchResult.Status.RENEWED, due)), result.items());
+        verify(loanRepository, times(1)).renewAll(List.of(3L), due);
+    }
+
+    @Test
+    void returnLoans_RejectsOversizedBatch() {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i <= LoanService.MAX_BATCH_SIZE; i++) {
+            ids.add(i);
+        }
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> loanController.returnLoans(ids));
+
+        assertEquals(400, exception.getStatusCode().value());
+        verify(loanRepository, never()).lockAllById(any());
+    }
+
+    @Test
+    void getOverdueLoans_FullPageReturnsCompositeCursor() {
+        List<Loan> loans = new ArrayList<>();
+        for (long i = 1; i <= 2; i++) {
+            Loan loan = new Loan();
+            loan.setId(i);
+            loan.setReturnDate(LocalDate.of(2024, 1, (int) i));
+            loans.add(loan);
+        }
+        OverdueCursor after = new OverdueCursor(LocalDate.of(2023, 12, 31), 7L);
+
+        when(loanRepository.findOverdue(any(LocalDate.class), eq(after), eq(Limit.of(2)))).thenReturn(loans);
+
+        ResponseEntity<List<Loan>> response = loanController.getOverdueLoans("2023-12-31:7", 2);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("2024-01-02:2", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getOverdueLoans_InvalidCursor() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> loanController.getOverdueLoans("yesterday", null));
+
+        assertEquals(400, exception.getStatusCode().value());
+        verifyNoInteractions(loanRepository);
+    }
+}
@@ -0,0 +1,41 @@
+import com.example.library.history.LoanHistoryPartitions;
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanHistoryPartitionsTest {
+
+    @Test
+    void plan_CreatesMissingMonthsAhead() {
+        Set<String> existing = Set.of("loan_history_default", "loan_history_y2026m10");
+
+        List<String> statements = LoanHistoryPartitions.plan(YearMonth.of(2026, 10), existing, 2, 0);
+
+        assertEquals(List.of(
+                "CREATE TABLE IF NOT EXISTS loan_history_y2026m11 PARTITION OF loan_history FOR VALUES FROM ('2026-11-01') TO ('2026-12-01')",
+                "CREATE TABLE IF NOT EXISTS loan_history_y2026m12 PARTITION OF loan_history FOR VALUES FROM ('2026-12-01') TO ('2027-01-01')"),
+                statements);
+    }
+
+    @Test
+    void plan_DropsOnlyMonthsPastRetention() {
+        Set<String> existing = Set.of("loan_history_default", "loan_history_y2025m12", "loan_history_y2026m01",
+                "loan_history_y2026m04", "loan_history_y2026m05");
+
+        List<String> statements = LoanHistoryPartitions.plan(YearMonth.of(2026, 4), existing, 1, 3);
+
+        assertEquals(List.of(
+                "DROP TABLE IF EXISTS loan_history_y2025m12"),
+                statements);
+    }
+
+    @Test
+    void monthOf_ParsesPartitionNames() {
+        assertEquals(YearMonth.of(2027, 1), LoanHistoryPartitions.monthOf(LoanHistoryPartitions.partitionName(YearMonth.of(2027, 1))));
+        assertNull(LoanHistoryPartitions.monthOf("loan_history_default"));
+    }
+}
@@ -0,0 +1,102 @@
+import com.example.library.writebehind.JournaledLoan;
+import com.example.library.writebehind.LoanJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoanJournalTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void appendedLoans_AreReadBackInOrderAcrossSegments() {
+        List<JournaledLoan> loans = List.of(loan(1), loan(2), loan(3));
+        try (LoanJournal journal = new LoanJournal(dir, true)) {
+            journal.awaitDurable(journal.append(loans.get(0)));
+            journal.append(loans.get(1));
+            journal.roll();
+            journal.awaitDurable(journal.append(loans.get(2)));
+        }
+
+        assertEquals(2, LoanJournal.segments(dir).size());
+        assertEquals(loans, LoanJournal.read(dir));
+    }
+
+    @Test
+    void deleteThrough_KeepsSegmentsAppendedAfterTheRoll() {
+        try (LoanJournal journal = new LoanJournal(dir, false)) {
+            journal.append(loan(1));
+            long rolled = journal.roll();
+            journal.append(loan(2));
+
+            journal.deleteThrough(rolled);
+        }
+
+        assertEquals(List.of(loan(2)), LoanJournal.read(dir));
+    }
+
+    @Test
+    void reopenedJournal_AppendsToANewSegment() {
+        try (LoanJournal journal = new LoanJournal(dir, false)) {
+            journal.append(loan(1));
+        }
+        try (LoanJournal journal = new LoanJournal(dir, false)) {
+            journal.append(loan(2));
+        }
+
+        assertEquals(2, LoanJournal.segments(dir).size());
+        assertEquals(List.of(loan(1), loan(2)), LoanJournal.read(dir));
+    }
+
+    @Test
+    void tornRecord_IsIgnored() throws Exception {
+        try (LoanJournal journal = new LoanJournal(dir, true)) {
+            journal.append(loan(1));
+        }
+        // A crash halfway through writing the second record
+        Path segment = LoanJournal.segments(dir).get(0);
+        Files.write(segment, new byte[20], StandardOpenOption.APPEND);
+
+        assertEquals(List.of(loan(1)), LoanJournal.read(dir));
+    }
+
+    @Test
+    void corruptRecord_EndsTheSegment() throws Exception {
+        try (LoanJournal journal = new LoanJournal(dir, true)) {
+            journal.append(loan(1));
+            journal.append(loan(2));
+            journal.append(loan(3));
+        }
+        Path segment = LoanJournal.segments(dir).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Flip the second record's book id
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 52 + 2 * Long.BYTES);
+        }
+
+        assertEquals(List.of(loan(1)), LoanJournal.read(dir));
+    }
+
+    @Test
+    void missingDirectory_HasNoSegments() {
+        assertTrue(LoanJournal.segments(dir.resolve("absent")).isEmpty());
+        assertTrue(LoanJournal.read(dir.resolve("absent")).isEmpty());
+    }
+
+    private static JournaledLoan loan(long id) {
+        LocalDate lent = LocalDate.of(2026, 9, 1).plusDays(id);
+        return new JournaledLoan(id, 100 + id, 200 + id, lent, lent.plusWeeks(1),
+                Instant.parse("2026-09-01T08:00:00.123456Z").plus(id, ChronoUnit.SECONDS));
+    }
+}
@@ -0,0 +1,238 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Loan;
+import com.example.library.repository.LoanRepository;
+import com.example.library.writebehind.JournaledLoan;
+import com.example.library.writebehind.LoanJournal;
+import com.example.library.writebehind.LoanWriteBehind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Flushes are triggered by the tests; the scheduled one is pushed out of their way
+@SpringBootTest(classes = LibraryApplication.class, properties = {
+        "library.loans.write-behind.enabled=true",
+        "library.loans.write-behind.interval=PT1H",
+        "library.loans.write-behind.id-block-size=3"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class LoanWriteBehindTest {
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("loan-journal");
+        registry.add("library.loans.write-behind.journal-dir", dir::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LoanWriteBehind loanWriteBehind;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long memberId;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        loanWriteBehind.flush();
+        fixture.reset();
+        jdbcTemplate.update("DELETE FROM loan_history");
+
+        Long authorId = fixture.author("Queued Author").getId();
+        bookId = fixture.book(authorId, "Queued", 10).getId();
+        memberId = fixture.member("queued-" + System.nanoTime()).getId();
+    }
+
+    @Test
+    void checkout_IsAcknowledgedBeforeTheLoanIsWritten() throws Exception {
+        double flushed = meterRegistry.get("library.loans.write-behind.flushed").counter().count();
+
+        long first = checkout();
+        long second = checkout();
+
+        assertNotEquals(first, second);
+        assertFalse(loanRepository.existsById(first));
+        assertEquals(8, availableCopies());
+        assertEquals(2.0, meterRegistry.get("library.loans.write-behind.pending").gauge().value());
+
+        assertEquals(2, loanWriteBehind.flush());
+
+        assertTrue(loanRepository.existsById(first));
+        assertEquals(memberId, loanRepository.findById(second).orElseThrow().getMemberId());
+        assertEquals(1, createdEvents(first));
+        assertEquals(0.0, meterRegistry.get("library.loans.write-behind.pending").gauge().value());
+        assertEquals(flushed + 2, meterRegistry.get("library.loans.write-behind.flushed").counter().count());
+    }
+
+    @Test
+    void queuedLoans_CountAgainstTheMemberLimit() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            checkout();
+        }
+
+        mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isBadRequest());
+        assertEquals(5, availableCopies());
+    }
+
+    @Test
+    void loanBeingCheckedOut_CountsUntilItsTransactionRollsBack() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Loan loan = new Loan();
+            loan.setMemberId(memberId);
+            loan.setBookId(bookId);
+            loan.setLendDate(LocalDate.now());
+            loan.setReturnDate(LocalDate.now().plusWeeks(1));
+            loanWriteBehind.assignId(loan);
+            loanWriteBehind.enqueue(loan, () -> fail("Nothing was journaled"));
+
+            assertEquals(1, loanWriteBehind.countPending(memberId));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, loanWriteBehind.countPending(memberId));
+        assertTrue(loanWriteBehind.pendingLoans().isEmpty());
+    }
+
+    @Test
+    void checkoutThatCannotBeJournaled_IsRefusedAndGivesItsCopyBack() throws Exception {
+        loanWriteBehind.stop();
+        try {
+            mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            loanWriteBehind.start();
+        }
+
+        assertEquals(10, availableCopies());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT loan_count FROM book WHERE id = ?", Long.class, bookId));
+        assertEquals(0, loanWriteBehind.countPending(memberId));
+    }
+
+    @Test
+    void returningAQueuedLoan_WritesItFirst() throws Exception {
+        long loanId = checkout();
+
+        mockMvc.perform(delete("/loans/{id}", loanId)).andExpect(status().isNoContent());
+
+        assertFalse(loanRepository.existsById(loanId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM loan_history WHERE id = ?", Long.class, loanId));
+        assertEquals(1, createdEvents(loanId));
+        assertEquals(10, availableCopies());
+    }
+
+    @Test
+    void recover_InsertsJournaledLoansThatNeverReachedTheDatabase(@TempDir Path crashed) throws Exception {
+        double recovered = meterRegistry.get("library.loans.write-behind.recovered").counter().count();
+        LocalDate today = LocalDate.now();
+        JournaledLoan lost = journaledLoan(today);
+        JournaledLoan flushed = journaledLoan(today);
+        JournaledLoan returned = journaledLoan(today.minusDays(3));
+        try (LoanJournal journal = new LoanJournal(crashed, true)) {
+            journal.append(lost);
+            journal.append(flushed);
+            journal.roll();
+            journal.awaitDurable(journal.append(returned));
+        }
+        // The process died while appending one more loan, whose copy was already taken
+        Path last = LoanJournal.segments(crashed).get(1);
+        Files.write(last, new byte[30], StandardOpenOption.APPEND);
+        jdbcTemplate.update("INSERT INTO loan (id, member_id, book_id, lend_date, return_date, version, last_modified) "
+                + "VALUES (?, ?, ?, ?, ?, 0, ?)", flushed.id(), memberId, bookId, today, today.plusWeeks(1),
+                flushed.lastModified());
+        jdbcTemplate.update("INSERT INTO loan_history (id, member_id, book_id, lend_date, return_date, returned_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", returned.id(), memberId, bookId, returned.lendDate(),
+                returned.returnDate(), Instant.now());
+        jdbcTemplate.update("UPDATE book SET available_copies = 7 WHERE id = ?", bookId);
+
+        assertEquals(1, loanWriteBehind.recover(crashed));
+
+        assertEquals(today, loanRepository.findById(lost.id()).orElseThrow().getLendDate());
+        assertEquals(1, createdEvents(lost.id()));
+        assertEquals(0, createdEvents(flushed.id()) + createdEvents(returned.id()));
+        assertEquals(2, loanRepository.count());
+        assertEquals(8, availableCopies());
+        assertEquals(1, bookUpdatedEvents());
+        assertTrue(LoanJournal.segments(crashed).isEmpty());
+        assertEquals(recovered + 1, meterRegistry.get("library.loans.write-behind.recovered").counter().count());
+    }
+
+    private long checkout() throws Exception {
+        String body = mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private JournaledLoan journaledLoan(LocalDate lendDate) {
+        long id = jdbcTemplate.queryForObject("SELECT nextval('loan_id_seq')", Long.class);
+        return new JournaledLoan(id, memberId, bookId, lendDate, lendDate.plusWeeks(1),
+                Instant.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    // Read past the catalog cache, which the recount at startup has no need to evict
+    private int availableCopies() {
+        return jdbcTemplate.queryForObject("SELECT available_copies FROM book WHERE id = ?", Integer.class, bookId);
+    }
+
+    private long bookUpdatedEvents() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event "
+                + "WHERE aggregate = 'BOOK' AND aggregate_id = ? AND type = 'UPDATED'", Long.class, bookId);
+    }
+
+    private long createdEvents(long loanId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM outbox_event "
+                + "WHERE aggregate = 'LOAN' AND aggregate_id = ? AND type = 'CREATED'", Long.class, loanId);
+    }
+}
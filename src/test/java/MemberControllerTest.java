@@ -1,21 +1,46 @@
 import com.example.library.controller.MemberController;
+import com.example.library.dto.MemberActiveLoans;
+import com.example.library.dto.MemberLoanView;
+import com.example.library.dto.UsernameAvailability;
+import com.example.library.events.Outbox;
 import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.history.LoanHistoryEntry;
+import com.example.library.history.LoanHistoryRepository;
+import com.example.library.index.ActiveLoanIndex;
+import com.example.library.index.TakenUsernames;
+import com.example.library.model.Loan;
 import com.example.library.model.Member;
 import com.example.library.repository.MemberRepository;
 import com.example.library.repository.LoanRepository;
+import com.example.library.service.MemberService;
+import com.example.library.web.JsonStreamWriter;
+import com.example.library.web.KeysetPagination;
+import com.example.library.writebehind.LoanWriteBehind;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class MemberControllerTest {
@@ -26,12 +51,34 @@ class MemberControllerTest {
     @Mock
     private LoanRepository loanRepository;
 
+    @Mock
+    private LoanHistoryRepository loanHistoryRepository;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private ActiveLoanIndex activeLoanIndex;
+
+    @Mock
+    private TakenUsernames takenUsernames;
+
+    @Mock
+    private JsonStreamWriter jsonStreamWriter;
+
+    @Mock
+    private LoanWriteBehind loanWriteBehind;
+
+    @InjectMocks
+    private MemberService memberService;
+
     @InjectMocks
     private MemberController memberController;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(memberController, "memberService", memberService);
     }
 
     @Test
@@ -39,12 +86,45 @@ class MemberControllerTest {
         List<Member> members = new ArrayList<>();
         members.add(new Member());
 
-        when(memberRepository.findAll()).thenReturn(members);
+        when(memberRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(members);
+
+        ResponseEntity<List<Member>> response = memberController.getAllMembers(null, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(1, response.getBody().size());
+        assertNull(response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+        verify(memberRepository, times(1)).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(KeysetPagination.DEFAULT_LIMIT));
+        verify(memberRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllMembers_FullPageReturnsNextCursor() {
+        List<Member> members = new ArrayList<>();
+        for (long i = 11; i <= 12; i++) {
+            Member member = new Member();
+            member.setId(i);
+            members.add(member);
+        }
+
+        when(memberRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(2))).thenReturn(members);
+
+        ResponseEntity<List<Member>> response = memberController.getAllMembers(10L, 2);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(2, response.getBody().size());
+        assertEquals("12", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void streamMembers_UsesCursorStream() {
+        ResponseEntity<StreamingResponseBody> streamed = ResponseEntity.ok(out -> { });
+        when(jsonStreamWriter.<Member>stream(any())).thenReturn(streamed);
 
-        List<Member> result = memberController.getAllMembers();
+        ResponseEntity<StreamingResponseBody> response = memberController.streamMembers();
 
-        assertEquals(1, result.size());
-        verify(memberRepository, times(1)).findAll();
+        assertSame(streamed, response);
+        verify(jsonStreamWriter, times(1)).stream(any());
+        verify(memberRepository, never()).findAll();
     }
 
     @Test
@@ -89,33 +169,181 @@ class MemberControllerTest {
         verify(memberRepository, times(1)).save(any(Member.class));
     }
 
+    @Test
+    void createMember_UsernameTaken_ReturnsBadRequest() {
+        Member member = new Member();
+        member.setUsername("JohnDoe");
+
+        when(memberRepository.save(any(Member.class))).thenThrow(new DataIntegrityViolationException("duplicate",
+                new SQLException("duplicate key value violates unique constraint", "23505")));
+
+        ResponseEntity<?> response = memberController.createMember(member);
+
+        assertEquals(400, response.getStatusCode().value());
+        assertEquals("Username already exists.", response.getBody());
+        verify(memberRepository, never()).existsByUsernameIgnoreCase(anyString());
+        verifyNoInteractions(outbox, takenUsernames);
+    }
+
+    @Test
+    void isUsernameAvailable_UnseenName_SkipsTheDatabase() {
+        when(takenUsernames.isDefinitelyFree("janedoe")).thenReturn(true);
+
+        ResponseEntity<UsernameAvailability> response = memberController.isUsernameAvailable("janedoe");
+
+        assertTrue(response.getBody().available());
+        verifyNoInteractions(memberRepository);
+    }
+
+    @Test
+    void isUsernameAvailable_PossiblyTakenName_IsChecked() {
+        when(memberRepository.existsByUsernameIgnoreCase("JohnDoe")).thenReturn(true);
+
+        ResponseEntity<UsernameAvailability> response = memberController.isUsernameAvailable("JohnDoe");
+
+        assertEquals("JohnDoe", response.getBody().username());
+        assertFalse(response.getBody().available());
+    }
+
+    @Test
+    void isUsernameAvailable_InvalidLength_ThrowsBadRequest() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> memberController.isUsernameAvailable("xy"));
+
+        assertEquals(400, exception.getStatusCode().value());
+        verifyNoInteractions(takenUsernames, memberRepository);
+    }
+
     @Test
     void updateMember_Success() {
         Member member = new Member();
         member.setId(1L);
 
         when(memberRepository.findById(anyLong())).thenReturn(Optional.of(member));
-        when(memberRepository.save(any(Member.class))).thenReturn(member);
 
         Member updatedDetails = new Member();
         updatedDetails.setUsername("newUsername");
-        ResponseEntity<Member> response = memberController.updateMember(1L, updatedDetails);
+        ResponseEntity<Member> response = memberController.updateMember(1L, updatedDetails, null);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("newUsername", response.getBody().getUsername());
-        verify(memberRepository, times(1)).save(member);
+        assertSame(member, response.getBody());
     }
 
     @Test
     void deleteMember_Success() {
-        Member member = new Member();
-        member.setId(1L);
-
-        when(memberRepository.findById(anyLong())).thenReturn(Optional.of(member));
+        when(memberRepository.deleteRowById(1L)).thenReturn(1);
 
         ResponseEntity<Void> response = memberController.deleteMember(1L);
 
         assertEquals(204, response.getStatusCodeValue());
-        verify(memberRepository, times(1)).delete(member);
+        verify(memberRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getMemberLoans_ExpandedWithBookAndAuthor_UsesSingleJoinQuery() {
+        MemberLoanView view = new MemberLoanView(5L, 1L, 7L, LocalDate.now(), LocalDate.now().plusWeeks(1),
+                "Dune", "Science Fiction", null, 3L, "Frank Herbert");
+
+        when(loanRepository.findViewsWithBookAndAuthorByMemberId(1L)).thenReturn(List.of(view));
+
+        ResponseEntity<List<MemberLoanView>> response = memberController.getMemberLoans(1L, Set.of("book", "author"));
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("Dune", response.getBody().get(0).book().title());
+        assertEquals("Frank Herbert", response.getBody().get(0).author().name());
+        verify(memberRepository, never()).existsById(anyLong());
+        verify(loanRepository, never()).findByMemberId(anyLong());
+    }
+
+    @Test
+    void getMemberLoans_WithoutExpand() {
+        MemberLoanView view = new MemberLoanView(5L, 1L, 7L, LocalDate.now(), LocalDate.now().plusWeeks(1));
+
+        when(loanRepository.findViewsByMemberId(1L)).thenReturn(List.of(view));
+
+        ResponseEntity<List<MemberLoanView>> response = memberController.getMemberLoans(1L, null);
+
+        assertEquals(1, response.getBody().size());
+        assertNull(response.getBody().get(0).book());
+        verify(loanRepository, never()).findViewsWithBookByMemberId(anyLong());
+    }
+
+    @Test
+    void getMemberLoans_MemberNotFound() {
+        when(loanRepository.findViewsWithBookByMemberId(1L)).thenReturn(List.of());
+        when(memberRepository.existsById(1L)).thenReturn(false);
+
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
+            memberController.getMemberLoans(1L, Set.of("book"));
+        });
+
+        assertEquals("Member not found with id 1", exception.getMessage());
+    }
+
+    @Test
+    void getMemberLoans_NoneInTheLoanIndex_SkipsTheLoanQuery() {
+        when(activeLoanIndex.countActive(1L)).thenReturn(OptionalInt.of(0));
+        when(memberRepository.existsById(1L)).thenReturn(true);
+
+        ResponseEntity<List<MemberLoanView>> response = memberController.getMemberLoans(1L, Set.of("book"));
+
+        assertTrue(response.getBody().isEmpty());
+        verify(loanRepository, never()).findViewsWithBookByMemberId(anyLong());
+    }
+
+    @Test
+    void getActiveLoans_AnsweredFromTheLoanIndex() {
+        when(activeLoanIndex.activeLoans(1L)).thenReturn(Optional.of(List.of(3L, 8L)));
+
+        MemberActiveLoans active = memberController.getActiveLoans(1L).getBody();
+
+        assertEquals(new MemberActiveLoans(1L, List.of(3L, 8L), 3), active);
+        verify(loanRepository, never()).findByMemberId(anyLong());
+        verify(memberRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    void getActiveLoans_FallsBackToTheDatabaseUntilTheIndexIsLoaded() {
+        Loan loan = new Loan();
+        loan.setId(4L);
+        when(loanRepository.findByMemberId(1L)).thenReturn(List.of(loan));
+
+        assertEquals(List.of(4L), memberController.getActiveLoans(1L).getBody().loanIds());
+    }
+
+    @Test
+    void getActiveLoans_MemberNotFound() {
+        when(activeLoanIndex.activeLoans(1L)).thenReturn(Optional.of(List.of()));
+        when(memberRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> memberController.getActiveLoans(1L));
+    }
+
+    @Test
+    void getMemberHistory_FullPageReturnsNextCursorWithoutETag() {
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        LocalDate to = LocalDate.of(2026, 4, 1);
+        List<LoanHistoryEntry> history = List.of(
+                new LoanHistoryEntry(7L, 1L, 2L, LocalDate.of(2026, 2, 3), LocalDate.of(2026, 2, 10), Instant.EPOCH),
+                new LoanHistoryEntry(9L, 1L, 4L, LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 8), Instant.EPOCH));
+
+        when(loanHistoryRepository.findByMemberId(1L, 5L, from, to, 2)).thenReturn(history);
+
+        ResponseEntity<List<LoanHistoryEntry>> response = memberController.getMemberHistory(1L, 5L, 2, from, to);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(history, response.getBody());
+        assertEquals("9", response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER));
+        assertNull(response.getHeaders().getETag());
+        verify(memberRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    void getMemberHistory_MemberNotFound() {
+        when(loanHistoryRepository.findByMemberId(eq(1L), eq(0L), any(), any(), anyInt())).thenReturn(List.of());
+        when(memberRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () -> memberController.getMemberHistory(1L, null, null, null, null));
     }
 }
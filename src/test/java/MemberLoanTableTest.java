@@ -0,0 +1,85 @@
+import com.example.library.index.MemberLoanTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberLoanTableTest {
+
+    @Test
+    void add_KeepsEachMembersLoansSortedAndUnique() {
+        MemberLoanTable table = new MemberLoanTable();
+
+        assertTrue(table.add(7, 30));
+        assertTrue(table.add(7, 10));
+        assertTrue(table.add(7, 20));
+        assertFalse(table.add(7, 20));
+
+        assertArrayEquals(new long[]{10, 20, 30}, table.get(7));
+        assertEquals(3, table.count(7));
+        assertEquals(0, table.count(8));
+        assertEquals(1, table.members());
+        assertEquals(3, table.loans());
+    }
+
+    @Test
+    void remove_DropsTheMemberWithItsLastLoan() {
+        MemberLoanTable table = new MemberLoanTable();
+        table.add(7, 10);
+        table.add(7, 20);
+
+        assertTrue(table.remove(7, 10));
+        assertFalse(table.remove(7, 10));
+        assertFalse(table.remove(9, 10));
+        assertTrue(table.remove(7, 20));
+
+        assertEquals(0, table.members());
+        assertEquals(0, table.loans());
+        assertEquals(0, table.get(7).length);
+    }
+
+    @Test
+    void randomChanges_MatchAReferenceMapThroughResizesAndRemovals() {
+        MemberLoanTable table = new MemberLoanTable();
+        Map<Long, TreeSet<Long>> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long memberId = 1 + random.nextInt(5_000);
+            long loanId = 1 + random.nextInt(20);
+            TreeSet<Long> loans = expected.computeIfAbsent(memberId, id -> new TreeSet<>());
+            if (random.nextInt(3) == 0) {
+                assertEquals(loans.remove(loanId), table.remove(memberId, loanId));
+            } else {
+                assertEquals(loans.add(loanId), table.add(memberId, loanId));
+            }
+        }
+
+        expected.values().removeIf(TreeSet::isEmpty);
+        assertEquals(expected.size(), table.members());
+        assertEquals(expected.values().stream().mapToLong(TreeSet::size).sum(), table.loans());
+        for (long memberId = 1; memberId <= 5_000; memberId++) {
+            long[] loans = expected.getOrDefault(memberId, new TreeSet<>()).stream().mapToLong(Long::longValue).toArray();
+            assertArrayEquals(loans, table.get(memberId), "member " + memberId);
+        }
+    }
+
+    @Test
+    void memoryBytes_GrowsWithTheLoansHeld() {
+        MemberLoanTable table = new MemberLoanTable();
+        long empty = table.memoryBytes();
+        for (long memberId = 1; memberId <= 1_000; memberId++) {
+            table.add(memberId, memberId * 10);
+        }
+        long filled = table.memoryBytes();
+        for (long memberId = 1; memberId <= 1_000; memberId++) {
+            table.remove(memberId, memberId * 10);
+        }
+
+        assertTrue(filled > empty + 1_000 * 24, "one loan array per member");
+        assertTrue(table.memoryBytes() < filled, "loan arrays are released");
+    }
+}
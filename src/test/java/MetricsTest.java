@@ -0,0 +1,41 @@
+import com.example.library.LibraryApplication;
+import com.example.library.repository.LoanRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@ActiveProfiles("test")
+class MetricsTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Test
+    void repositoryCalls_AreTimedPerMethod() {
+        loanRepository.countByMemberId(1L);
+        loanRepository.countByMemberId(2L);
+
+        Timer timer = meterRegistry.find("spring.data.repository.invocations")
+                .tag("repository", "LoanRepository")
+                .tag("method", "countByMemberId")
+                .timer();
+
+        assertNotNull(timer);
+        assertTrue(timer.count() >= 2);
+    }
+
+    @Test
+    void connectionPool_IsInstrumented() {
+        assertNotNull(meterRegistry.find("hikaricp.connections.active").gauge());
+        assertNotNull(meterRegistry.find("hikaricp.connections.pending").gauge());
+    }
+}
@@ -0,0 +1,58 @@
+import com.example.library.events.ChangeEvent;
+import com.example.library.events.OutboxRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+    private static final Duration SETTLE = Duration.ofSeconds(5);
+
+    @Test
+    void settled_StopsAtANewGap() {
+        List<ChangeEvent> events = List.of(event(11, 1), event(12, 1), event(14, 1));
+
+        assertEquals(List.of(11L, 12L), ids(OutboxRepository.settled(events, 10, NOW, SETTLE, new HashMap<>())));
+    }
+
+    @Test
+    void settled_StopsAtANewGapEvenAfterOldEvents() {
+        // The transaction holding id 12 may have started long before 13 was written
+        List<ChangeEvent> events = List.of(event(11, 30), event(13, 30));
+
+        assertEquals(List.of(11L), ids(OutboxRepository.settled(events, 10, NOW, SETTLE, new HashMap<>())));
+    }
+
+    @Test
+    void settled_SkipsAGapFirstSeenLongerAgoThanTheSettleDelay() {
+        List<ChangeEvent> events = List.of(event(11, 1), event(13, 1), event(15, 1));
+        Map<Long, Instant> gapsFirstSeen = new HashMap<>();
+
+        assertEquals(List.of(11L), ids(OutboxRepository.settled(events, 10, NOW, SETTLE, gapsFirstSeen)));
+        assertEquals(Map.of(12L, NOW, 14L, NOW), gapsFirstSeen);
+
+        Instant later = NOW.plus(SETTLE).plusMillis(1);
+        assertEquals(List.of(11L, 13L, 15L), ids(OutboxRepository.settled(events, 10, later, SETTLE, gapsFirstSeen)));
+    }
+
+    @Test
+    void settled_StopsBeforeTheFirstEventIfItMayBeOvertaken() {
+        assertTrue(OutboxRepository.settled(List.of(event(12, 1)), 10, NOW, SETTLE, new HashMap<>()).isEmpty());
+    }
+
+    private static ChangeEvent event(long id, long secondsAgo) {
+        return new ChangeEvent(id, ChangeEvent.Aggregate.BOOK, 1L, ChangeEvent.Type.UPDATED,
+                NOW.minusSeconds(secondsAgo), null);
+    }
+
+    private static List<Long> ids(List<ChangeEvent> events) {
+        return events.stream().map(ChangeEvent::id).toList();
+    }
+}
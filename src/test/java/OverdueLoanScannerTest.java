@@ -0,0 +1,94 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Loan;
+import com.example.library.overdue.OverdueLoanHandler;
+import com.example.library.overdue.OverdueLoanScanner;
+import com.example.library.overdue.OverdueScanResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {LibraryApplication.class, OverdueLoanScannerTest.RecordingHandlerConfig.class},
+        properties = "library.overdue.scan.batch-size=2")
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class OverdueLoanScannerTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2024, 6, 1);
+
+    @Autowired
+    private OverdueLoanScanner scanner;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private RecordingHandler recordingHandler;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+        recordingHandler.batches.clear();
+    }
+
+    @Test
+    void scan_VisitsEveryOverdueLoanInReturnDateOrderInBoundedBatches() {
+        Loan late1 = loan(AS_OF.minusDays(3));
+        Loan late2 = loan(AS_OF.minusDays(10));
+        Loan late3 = loan(AS_OF.minusDays(3));
+        Loan late4 = loan(AS_OF.minusDays(1));
+        Loan late5 = loan(AS_OF.minusDays(30));
+        loan(AS_OF);
+        loan(AS_OF.plusDays(5));
+
+        OverdueScanResult result = scanner.scan(AS_OF);
+
+        assertEquals(5, result.overdueLoans());
+        assertEquals(3, result.batches());
+        assertEquals(List.of(2, 2, 1), recordingHandler.batches.stream().map(List::size).toList());
+        List<Long> visited = recordingHandler.batches.stream().flatMap(List::stream).map(Loan::getId).toList();
+        assertEquals(List.of(late5.getId(), late2.getId(), late1.getId(), late3.getId(), late4.getId()), visited);
+    }
+
+    @Test
+    void scan_NoOverdueLoans() {
+        loan(AS_OF.plusDays(1));
+
+        OverdueScanResult result = scanner.scan(AS_OF);
+
+        assertEquals(0, result.overdueLoans());
+        assertEquals(0, result.batches());
+        assertTrue(recordingHandler.batches.isEmpty());
+    }
+
+    private Loan loan(LocalDate returnDate) {
+        return fixture.loan(1L, 1L, returnDate.minusWeeks(1), returnDate);
+    }
+
+    static class RecordingHandler implements OverdueLoanHandler {
+        private final List<List<Loan>> batches = new ArrayList<>();
+
+        @Override
+        public void handle(List<Loan> overdueLoans, LocalDate asOf) {
+            batches.add(List.copyOf(overdueLoans));
+        }
+    }
+
+    @TestConfiguration
+    static class RecordingHandlerConfig {
+        @Bean
+        RecordingHandler recordingHandler() {
+            return new RecordingHandler();
+        }
+    }
+}
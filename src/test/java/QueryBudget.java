@@ -0,0 +1,24 @@
+import com.example.library.sql.SqlStatementCounter;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails a test when the wrapped call runs more SQL statements on the test thread than its budget. With
+ * MockMvc this covers the whole request, including statements run while the response body is serialized.
+ */
+final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    static <T> T assertAtMost(long budget, Callable<T> call) throws Exception {
+        SqlStatementCounter.Span span = SqlStatementCounter.start();
+        T result = call.call();
+        long executed = span.count();
+        assertTrue(executed <= budget,
+                () -> "Expected at most " + budget + " SQL statements but " + executed + " were executed");
+        return result;
+    }
+}
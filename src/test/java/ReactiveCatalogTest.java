@@ -0,0 +1,137 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.reactive.ReactiveCatalogServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class, properties = {
+        "library.reactive.enabled=true",
+        "library.reactive.port=0",
+        "library.reactive.page-size=4",
+        "library.reactive.url=r2dbc:h2:mem:///librarydb?options=MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class ReactiveCatalogTest {
+
+    @Autowired
+    private ReactiveCatalogServer server;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    private WebTestClient client;
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + server.getPort()).build();
+
+        Long authorId = fixture.author("Reactive Author").getId();
+        books = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            books.add(fixture.book(authorId, "Reactive Book " + i, "Fiction", new BigDecimal("9.99"), 1));
+        }
+    }
+
+    @Test
+    void books_StreamAsNdjsonToTheEndOfTheTable() {
+        List<Book> streamed = client.get().uri("/books?after={after}", books.get(9).getId())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Book.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(40, streamed.size());
+        Book first = streamed.get(0);
+        Book expected = books.get(10);
+        assertEquals(expected.getId(), first.getId());
+        assertEquals("Reactive Book 10", first.getTitle());
+        assertEquals(0, new BigDecimal("9.99").compareTo(first.getPrice()));
+        assertEquals(expected.getAuthorId(), first.getAuthorId());
+        assertEquals(1, first.getAvailableCopies());
+        assertEquals(books.get(49).getId(), streamed.get(39).getId());
+    }
+
+    @Test
+    void books_AsJsonArrayWithLimit() {
+        client.get().uri("/books?limit=5")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5)
+                .jsonPath("$[0].id").isEqualTo(books.get(0).getId())
+                .jsonPath("$[4].title").isEqualTo("Reactive Book 4")
+                .jsonPath("$[0].version").isEqualTo(0)
+                .jsonPath("$[0].loanCount").isEqualTo(0)
+                .jsonPath("$[0].lastModified").isNotEmpty();
+    }
+
+    @Test
+    void authorsAndLoans_AreStreamed() {
+        Long memberId = fixture.member("reactive-" + System.nanoTime()).getId();
+        fixture.loan(memberId, books.get(0).getId(), LocalDate.of(2026, 1, 5), LocalDate.of(2026, 1, 19));
+
+        List<Author> authors = client.get().uri("/authors").exchange()
+                .returnResult(Author.class).getResponseBody().collectList().block(Duration.ofSeconds(10));
+        List<Loan> loans = client.get().uri("/loans").exchange()
+                .returnResult(Loan.class).getResponseBody().collectList().block(Duration.ofSeconds(10));
+
+        assertEquals(List.of("Reactive Author"), authors.stream().map(Author::getName).toList());
+        assertEquals(LocalDate.of(1970, 1, 1), authors.get(0).getDateOfBirth());
+        assertEquals(1, loans.size());
+        assertEquals(books.get(0).getId(), loans.get(0).getBookId());
+        assertEquals(LocalDate.of(2026, 1, 19), loans.get(0).getReturnDate());
+    }
+
+    @Test
+    void cancelledStream_ReleasesItsConnection() {
+        Flux<Book> body = client.get().uri("/books").exchange()
+                .returnResult(Book.class).getResponseBody();
+
+        assertEquals(books.get(0).getId(), body.blockFirst(Duration.ofSeconds(10)).getId());
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (acquiredConnections() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, acquiredConnections());
+    }
+
+    @Test
+    void malformedCursor_IsRejected() {
+        client.get().uri("/books?after=abc").exchange().expectStatus().isBadRequest();
+    }
+
+    private double acquiredConnections() {
+        return meterRegistry.get("library.reactive.pool.connections").tag("state", "acquired").gauge().value();
+    }
+}
@@ -0,0 +1,87 @@
+import com.example.library.LibraryApplication;
+import com.example.library.datasource.ReplicaHealthMonitor;
+import com.example.library.model.Author;
+import com.example.library.repository.AuthorRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the application with one "replica" that is the same in-memory database as the primary, and tells
+ * the two apart by which Hikari pool handed out the connection.
+ */
+@SpringBootTest(classes = LibraryApplication.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:replicated;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "library.datasource.replica.urls=jdbc:h2:mem:replicated;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "spring.cache.type=none"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReplicaHealthMonitor replicaHealthMonitor;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    private Author author;
+
+    @BeforeEach
+    void setUp() {
+        replicaHealthMonitor.checkReplicas();
+        author = new Author();
+        author.setName("Replicated Author");
+        author.setDateOfBirth(LocalDate.of(1950, 1, 1));
+        author = authorRepository.save(author);
+    }
+
+    @Test
+    void getRequests_ReadFromReplica() throws Exception {
+        long primaryBefore = usage("primary");
+        long replicaBefore = usage("replica-1");
+
+        mockMvc.perform(get("/authors/{id}", author.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/books")).andExpect(status().isOk());
+
+        assertEquals(replicaBefore + 2, usage("replica-1"));
+        assertEquals(primaryBefore, usage("primary"));
+    }
+
+    @Test
+    void writeRequests_StayOnPrimary() throws Exception {
+        long replicaBefore = usage("replica-1");
+
+        mockMvc.perform(put("/authors/{id}", author.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Renamed Author\",\"dateOfBirth\":\"1950-01-01\"}"))
+                .andExpect(status().isOk());
+
+        assertEquals(replicaBefore, usage("replica-1"));
+    }
+
+    private long usage(String pool) {
+        Timer timer = meterRegistry.find("hikaricp.connections.usage").tag("pool", pool).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,172 @@
+import com.example.library.datasource.ReplicaHealthMonitor;
+import com.example.library.datasource.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @Test
+    void readOnlyTransaction_ReadsFromHealthyReplica() {
+        Routing routing = routing(new ReplicaRoutingDataSource.Replica("replica-1", replica));
+        routing.monitor.checkReplicas();
+
+        assertEquals("replica", routing.readOnly());
+        assertEquals("primary", routing.readWrite());
+        assertEquals("primary", routing.jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    void replicaNotYetChecked_ReadsFromPrimary() {
+        Routing routing = routing(new ReplicaRoutingDataSource.Replica("replica-1", replica));
+
+        assertEquals("primary", routing.readOnly());
+    }
+
+    @Test
+    void replicaRefusingConnections_IsMarkedDownAndPrimaryIsUsed() {
+        ReplicaRoutingDataSource.Replica broken = new ReplicaRoutingDataSource.Replica("replica-1", new Unreachable());
+        Routing routing = routing(broken);
+        broken.markUp();
+
+        assertEquals("primary", routing.readOnly());
+        assertFalse(broken.isHealthy());
+
+        routing.monitor.checkReplicas();
+        assertFalse(broken.isHealthy());
+        assertEquals("DOWN: replica unreachable", routing.monitor.health().getDetails().get("replica-1"));
+    }
+
+    @Test
+    void laggingReplica_IsTakenOutOfRotation() {
+        ReplicaRoutingDataSource.Replica lagging = new ReplicaRoutingDataSource.Replica("replica-1", replica);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(lagging));
+        ReplicaHealthMonitor monitor = new ReplicaHealthMonitor(routing, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), "SELECT 30");
+
+        monitor.checkReplicas();
+
+        assertFalse(lagging.isHealthy());
+        assertTrue(lagging.downReason().contains("replication lag"));
+    }
+
+    @Test
+    void readOnlyTransactionsAreSpreadOverReplicas() {
+        Routing routing = routing(new ReplicaRoutingDataSource.Replica("replica-1", replica),
+                new ReplicaRoutingDataSource.Replica("replica-2", database("replica2")));
+        routing.monitor.checkReplicas();
+
+        assertNotEquals(routing.readOnly(), routing.readOnly());
+    }
+
+    @Test
+    void usePrimary_OverridesReadOnlyRouting() {
+        Routing routing = routing(new ReplicaRoutingDataSource.Replica("replica-1", replica));
+        routing.monitor.checkReplicas();
+
+        ReplicaRoutingDataSource.PrimaryScope scope = ReplicaRoutingDataSource.usePrimary();
+        try {
+            assertEquals("primary", routing.readOnly());
+        } finally {
+            scope.close();
+        }
+        assertEquals("replica", routing.readOnly());
+    }
+
+    @Test
+    void connectionWithCredentials_IsRoutedLikeAnyOther() throws SQLException {
+        ReplicaRoutingDataSource.Replica healthy = new ReplicaRoutingDataSource.Replica("replica-1", replica);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(healthy));
+
+        // The in-memory databases were created without a user, so they accept the empty one
+        assertEquals("primary", node(routing.getConnection("", "")));
+        healthy.markUp();
+        assertEquals("replica", node(routing.getConnection("", "")));
+    }
+
+    private Routing routing(ReplicaRoutingDataSource.Replica... replicas) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replicas));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(routing);
+        return new Routing(new ReplicaHealthMonitor(routing, Duration.ofSeconds(1), null, null), dataSource);
+    }
+
+    private static String node(Connection connection) throws SQLException {
+        try (connection; Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+    private static final class Routing {
+        private final ReplicaHealthMonitor monitor;
+        private final JdbcTemplate jdbc;
+        private final DataSourceTransactionManager transactionManager;
+
+        private Routing(ReplicaHealthMonitor monitor, DataSource dataSource) {
+            this.monitor = monitor;
+            this.jdbc = new JdbcTemplate(dataSource);
+            this.transactionManager = new DataSourceTransactionManager(dataSource);
+        }
+
+        private String readOnly() {
+            return inTransaction(true);
+        }
+
+        private String readWrite() {
+            return inTransaction(false);
+        }
+
+        private String inTransaction(boolean readOnly) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(readOnly);
+            return transaction.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+
+    private static final class Unreachable extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            throw new SQLException("replica unreachable");
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
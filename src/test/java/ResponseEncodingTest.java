@@ -0,0 +1,134 @@
+import com.example.library.LibraryApplication;
+import com.example.library.model.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = LibraryApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class ResponseEncodingTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        Long authorId = fixture.author("Encoding Author").getId();
+        for (int i = 0; i < 200; i++) {
+            fixture.book(authorId, "Encoding Book " + i, "Genre " + (i % 5), new BigDecimal("12.50"), 1);
+        }
+    }
+
+    @Test
+    void binaryEncodings_CarryTheSameDocumentAsJson() throws Exception {
+        HttpResponse<byte[]> json = get("application/json", null);
+        List<Book> expected = List.of(objectMapper.readValue(json.body(), Book[].class));
+
+        HttpResponse<byte[]> cbor = get("application/cbor", null);
+        assertEquals("application/cbor", cbor.headers().firstValue("Content-Type").orElseThrow());
+        assertSameBooks(expected, cborConverter.getObjectMapper().readValue(cbor.body(), Book[].class));
+
+        HttpResponse<byte[]> smile = get("application/x-jackson-smile", null);
+        assertEquals("application/x-jackson-smile", smile.headers().firstValue("Content-Type").orElseThrow());
+        assertSameBooks(expected, smileConverter.getObjectMapper().readValue(smile.body(), Book[].class));
+
+        assertTrue(cbor.body().length < json.body().length);
+        assertTrue(smile.body().length < json.body().length);
+    }
+
+    @Test
+    void negotiatedResponses_VaryOnAccept() throws Exception {
+        for (String accept : List.of("application/json", "application/cbor", "*/*")) {
+            HttpResponse<byte[]> response = get(accept, "gzip");
+
+            List<String> vary = response.headers().allValues("Vary").stream()
+                    .flatMap(value -> Arrays.stream(value.split(",")))
+                    .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            assertTrue(vary.contains("accept"), accept + ": " + vary);
+            assertTrue(vary.contains("accept-encoding"), accept + ": " + vary);
+        }
+    }
+
+    @Test
+    void anyAccept_StaysJson() throws Exception {
+        HttpResponse<byte[]> response = get("*/*", null);
+
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElseThrow());
+    }
+
+    @Test
+    void largeResponses_AreGzippedWhenAccepted() throws Exception {
+        HttpResponse<byte[]> plain = get("application/json", null);
+        HttpResponse<byte[]> gzipped = get("application/json", "gzip");
+
+        assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElseThrow());
+        assertArrayEquals(plain.body(), gunzip(gzipped.body()));
+        assertTrue(gzipped.body().length < plain.body().length / 4);
+    }
+
+    private HttpResponse<byte[]> get(String accept, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/books?limit=200"))
+                .header("Accept", accept);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        return response;
+    }
+
+    private static void assertSameBooks(List<Book> expected, Book[] actual) {
+        assertEquals(expected.size(), actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected.get(i).getTitle(), actual[i].getTitle());
+            assertEquals(0, expected.get(i).getPrice().compareTo(actual[i].getPrice()));
+            assertEquals(expected.get(i).getLastModified(), actual[i].getLastModified());
+        }
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
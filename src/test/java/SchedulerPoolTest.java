@@ -0,0 +1,126 @@
+import com.example.library.LibraryApplication;
+import com.example.library.repository.LoanRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Write-behind checkouts are flushed by the scheduler alone here, while a long job holds one of its threads
+@SpringBootTest(classes = {LibraryApplication.class, SchedulerPoolTest.LongJobConfig.class}, properties = {
+        "library.loans.write-behind.enabled=true",
+        "library.loans.write-behind.interval=PT0.1S"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class SchedulerPoolTest {
+
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("loan-journal");
+        registry.add("library.loans.write-behind.journal-dir", dir::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LongJob longJob;
+
+    @Autowired
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @Autowired
+    private ScheduledTaskHolder scheduledTasks;
+
+    private Long memberId;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        Long authorId = fixture.author("Scheduled Author").getId();
+        bookId = fixture.book(authorId, "Scheduled", 10).getId();
+        memberId = fixture.member("scheduled-" + System.nanoTime()).getId();
+    }
+
+    @Test
+    void writeBehindFlush_RunsWhileALongScheduledJobIsInProgress() throws Exception {
+        assertTrue(longJob.started.await(10, TimeUnit.SECONDS));
+
+        String body = mockMvc.perform(post("/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long loanId = objectMapper.readTree(body).get("id").asLong();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!loanRepository.existsById(loanId) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(loanRepository.existsById(loanId));
+        assertFalse(longJob.finished);
+    }
+
+    @Test
+    void schedulerPool_HasAThreadForEveryScheduledTask() {
+        int poolSize = taskScheduler.getScheduledThreadPoolExecutor().getCorePoolSize();
+
+        assertTrue(poolSize >= scheduledTasks.getScheduledTasks().size(),
+                poolSize + " scheduler threads for " + scheduledTasks.getScheduledTasks().size() + " tasks");
+    }
+
+    // Stands in for the overdue scan or a partition rebuild: holds a scheduler thread for a minute after startup
+    static class LongJob {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean finished;
+
+        @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+        public void run() throws InterruptedException {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            finished = true;
+        }
+    }
+
+    @TestConfiguration
+    static class LongJobConfig {
+        @Bean
+        LongJob longJob() {
+            return new LongJob();
+        }
+    }
+}
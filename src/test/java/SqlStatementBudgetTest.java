@@ -0,0 +1,191 @@
+import com.example.library.LibraryApplication;
+import com.example.library.history.LoanHistoryEntry;
+import com.example.library.history.LoanHistoryRepository;
+import com.example.library.model.Loan;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.LoanRepository;
+import com.example.library.web.SqlStatementCountFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LibraryFixture.class)
+class SqlStatementBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LibraryFixture fixture;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private LoanHistoryRepository loanHistoryRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Long memberId;
+    private Long bookId;
+    private Long authorId;
+    private Long loanId;
+
+    @BeforeEach
+    void setUp() {
+        fixture.reset();
+
+        authorId = fixture.author("Budget Author").getId();
+        for (int i = 0; i < 5; i++) {
+            bookId = fixture.book(authorId, "Budget Book " + i, 10).getId();
+        }
+        for (int i = 0; i < 5; i++) {
+            memberId = fixture.member("budget-" + i).getId();
+            loanId = fixture.loan(memberId, bookId, LocalDate.now(), LocalDate.now().plusWeeks(1)).getId();
+        }
+    }
+
+    @Test
+    void listEndpoints_RunOneStatementPerPage() throws Exception {
+        for (String path : new String[]{"/members", "/books", "/authors", "/loans"}) {
+            QueryBudget.assertAtMost(1, () -> mockMvc.perform(get(path)))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(SqlStatementCountFilter.HEADER, "1"));
+        }
+    }
+
+    @Test
+    void memberLoansWithBookAndAuthor_RunsOneStatement() throws Exception {
+        QueryBudget.assertAtMost(1, () -> mockMvc.perform(get("/members/{id}/loans", memberId)
+                        .param("expand", "book", "author")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "1"));
+    }
+
+    @Test
+    void checkout_StaysWithinBudget() throws Exception {
+        // lock member, count loans, insert loan, take a copy, record the event
+        QueryBudget.assertAtMost(5, () -> mockMvc.perform(post("/loans")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId + "}")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "5"));
+    }
+
+    @Test
+    void loanRenewal_LoadsOnlyTheLoan() throws Exception {
+        // load loan, update loan, record the event; member and book are unchanged, so neither is looked up
+        QueryBudget.assertAtMost(3, () -> mockMvc.perform(put("/loans/{id}", loanId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"memberId\":" + memberId + ",\"bookId\":" + bookId
+                                + ",\"lendDate\":\"2024-01-01\",\"returnDate\":\"2024-02-01\"}")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void bookUpdateWithSameAuthor_SkipsAuthorLookup() throws Exception {
+        // load book, update book, record the event
+        QueryBudget.assertAtMost(3, () -> mockMvc.perform(put("/books/{id}", bookId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Renamed\",\"genre\":\"Fiction\",\"price\":10,\"authorId\":"
+                                + authorId + "}")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void memberRegistration_RunsOneInsertPlusItsEvent() throws Exception {
+        // the unique index on lower(username) replaces the lookup for a taken name
+        QueryBudget.assertAtMost(2, () -> mockMvc.perform(post("/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"budget-signup\",\"email\":\"signup@example.com\"}")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "2"));
+        QueryBudget.assertAtMost(1, () -> mockMvc.perform(post("/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"Budget-Signup\",\"email\":\"signup@example.com\"}")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void deletes_RunOneStatementPlusTheirEvent() throws Exception {
+        QueryBudget.assertAtMost(2, () -> mockMvc.perform(delete("/books/{id}", bookId)))
+                .andExpect(status().isNoContent());
+        QueryBudget.assertAtMost(2, () -> mockMvc.perform(delete("/members/{id}", memberId)))
+                .andExpect(status().isNoContent());
+        QueryBudget.assertAtMost(1, () -> mockMvc.perform(delete("/authors/{id}", authorId)))
+                .andExpect(status().isNoContent());
+        QueryBudget.assertAtMost(1, () -> mockMvc.perform(delete("/authors/{id}", authorId)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void basketReturn_RunsFiveStatementsForAnySize() throws Exception {
+        List<Long> basket = new ArrayList<>();
+        List<Long> books = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Long id = fixture.book(authorId, "Basket Book " + i, 2).getId();
+            bookRepository.decrementAvailableCopies(id);
+            books.add(id);
+            basket.add(fixture.loan(memberId, id, LocalDate.now(), LocalDate.now().plusWeeks(1)).getId());
+        }
+        basket.add(-1L);
+
+        // lock the loans, put every copy back, copy them to the history, delete them, record their events
+        QueryBudget.assertAtMost(5, () -> mockMvc.perform(post("/loans/return")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(basket.toString())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(8))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[8].status").value("NOT_FOUND"));
+
+        for (Long id : books) {
+            assertEquals(2, bookRepository.findCurrentById(id).orElseThrow().getAvailableCopies());
+        }
+        assertTrue(loanRepository.findAllById(basket).isEmpty());
+        assertEquals(basket.subList(0, 8), loanHistoryRepository.findByMemberId(memberId, 0, null, null, 100).stream()
+                .map(LoanHistoryEntry::loanId)
+                .filter(basket::contains)
+                .toList());
+    }
+
+    @Test
+    void basketRenewal_RunsThreeStatements() throws Exception {
+        List<Long> basket = loanRepository.findByMemberId(memberId).stream().map(Loan::getId).toList();
+
+        // lock the loans, move their due dates, record their events
+        QueryBudget.assertAtMost(3, () -> mockMvc.perform(post("/loans/renew")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(basket.toString())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status").value("RENEWED"));
+
+        Loan renewed = loanRepository.findById(basket.get(0)).orElseThrow();
+        assertEquals(LocalDate.now().plusWeeks(1), renewed.getReturnDate());
+        assertEquals(1L, renewed.getVersion());
+    }
+}
@@ -0,0 +1,107 @@
+import com.example.library.LibraryApplication;
+import com.example.library.index.TakenUsernames;
+import com.example.library.model.Member;
+import com.example.library.repository.MemberRepository;
+import com.example.library.web.SqlStatementCountFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LibraryApplication.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UsernameAvailabilityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private TakenUsernames takenUsernames;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        username = "Signup-" + System.nanoTime();
+    }
+
+    @Test
+    void unseenUsername_IsReportedFreeWithoutAQuery() throws Exception {
+        double answeredFree = lookups("free");
+
+        mockMvc.perform(get("/members/username-available").param("username", username))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "0"))
+                .andExpect(jsonPath("$.username").value(username))
+                .andExpect(jsonPath("$.available").value(true));
+
+        assertEquals(answeredFree + 1, lookups("free"));
+    }
+
+    @Test
+    void registeredUsername_IsTakenInAnyLetterCase() throws Exception {
+        register(username).andExpect(status().isOk());
+
+        mockMvc.perform(get("/members/username-available").param("username", username.toUpperCase()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatementCountFilter.HEADER, "1"))
+                .andExpect(jsonPath("$.available").value(false));
+        register(username.toLowerCase())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Username already exists."));
+
+        assertEquals(1, memberRepository.findAll().stream()
+                .filter(member -> member.getUsername().equalsIgnoreCase(username))
+                .count());
+    }
+
+    @Test
+    void rebuild_PicksUpUsernamesWrittenBehindTheFilter() throws Exception {
+        // As if registered by another instance
+        Member member = new Member();
+        member.setUsername(username);
+        memberRepository.save(member);
+
+        takenUsernames.rebuild();
+
+        mockMvc.perform(get("/members/username-available").param("username", username))
+                .andExpect(jsonPath("$.available").value(false));
+    }
+
+    @Test
+    void usernameOfInvalidLength_IsRejected() throws Exception {
+        mockMvc.perform(get("/members/username-available").param("username", "xy"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private ResultActions register(String name) throws Exception {
+        return mockMvc.perform(post("/members")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"" + name + "\",\"email\":\"signup@example.com\"}"));
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("library.members.username-filter.lookups").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,46 @@
+import com.example.library.index.UsernameBloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsernameBloomFilterTest {
+
+    @Test
+    void addedNames_AreAlwaysFoundInAnyLetterCase() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("Member-" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("member-" + i));
+            assertTrue(filter.mightContain("MEMBER-" + i));
+        }
+    }
+
+    @Test
+    void falsePositives_StayNearTheTargetRateAtCapacity() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("taken-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("free-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1_500, falsePositives + " false positives");
+        assertEquals(7, filter.hashes());
+        assertTrue(filter.memoryBytes() < 128 * 1024, filter.memoryBytes() + " bytes");
+    }
+
+    @Test
+    void emptyFilter_ContainsNothing() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(0, 0.01);
+
+        assertFalse(filter.mightContain("anyone"));
+        assertEquals(1, filter.capacity());
+    }
+}